@@ -1,9 +1,13 @@
+import org.springframework.boot.gradle.tasks.aot.ProcessAot
 import org.springframework.boot.gradle.tasks.bundling.BootBuildImage
+import org.springframework.boot.gradle.tasks.bundling.BootJar
 
 plugins {
     java
     id("org.springframework.boot") version "4.0.2"
+    id("org.springframework.boot.aot") version "4.0.2"
     id("io.spring.dependency-management") version "1.1.7"
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.execodex"
@@ -41,6 +45,12 @@ dependencies {
     implementation("software.amazon.awssdk:s3")
     implementation("software.amazon.awssdk:netty-nio-client")
 
+    // in-memory caches
+    implementation("com.github.ben-manes.caffeine:caffeine")
+
+    // zstd codec of the optional object compression
+    implementation("com.github.luben:zstd-jni:1.5.6-9")
+
     //documentation
     implementation("org.springdoc:springdoc-openapi-starter-webflux-ui:3.0.1")
     testImplementation("org.springframework.boot:spring-boot-starter-test")
@@ -55,9 +65,58 @@ tasks.withType<Test> {
     useJUnitPlatform()
 }
 
+// Benchmarks: ./gradlew jmh (microbenchmarks), ./gradlew loadTest (end-to-end against an in-process fake S3) and
+// ./gradlew startupBenchmark (time to ready of the boot jar)
+jmh {
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("reports/jmh/results.json")
+    profilers = listOf("gc")
+}
+
+tasks.register<JavaExec>("loadTest") {
+    group = "benchmark"
+    description = "Runs the end-to-end load harness and writes build/reports/load/results.json"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "com.execodex.app.bench.LoadHarness"
+    args(layout.buildDirectory.file("reports/load/results.json").get().asFile.path)
+    jvmArgs("-Xmx2g")
+}
+
+tasks.register<JavaExec>("startupBenchmark") {
+    group = "benchmark"
+    description = "Measures time to ready with and without the fast-startup settings and writes build/reports/startup/results.json"
+    val bootJar = tasks.named<BootJar>("bootJar")
+    dependsOn(bootJar)
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "com.execodex.app.bench.StartupBenchmark"
+    args(layout.buildDirectory.file("reports/startup/results.json").get().asFile.path,
+        bootJar.get().archiveFile.get().asFile.path)
+    // the Postgres the application migrates, the compose.yml one unless -Pbenchmark.db.url=... is given
+    listOf("benchmark.db.url", "benchmark.db.user", "benchmark.db.password").forEach { key ->
+        project.findProperty(key)?.let { systemProperty(key, it) }
+    }
+}
+
+// Spring AOT freezes bean definitions at build time, including which springdoc beans startup.lazy makes lazy
+tasks.named<ProcessAot>("processAot") {
+    args("--startup.lazy=true")
+}
+
 tasks.named<BootBuildImage>("bootBuildImage") {
     val tag = project.findProperty("imageTag")?.toString() ?: "latest"
 
     imageName.set("gluonstream/be-minio:$tag")
     tags.set(listOf("gluonstream/be-minio:latest"))
+
+    // Fast startup: the image runs the Spring AOT classes and a JDK AOT cache (or CDS archive with
+    // -PstartupCache=cds) recorded by a training run that refreshes the context without Postgres or MinIO.
+    // -PstartupCache=none builds a plain image.
+    val startupCache = project.findProperty("startupCache")?.toString() ?: "aot"
+    environment.put("BP_JVM_VERSION", "25")
+    if (startupCache != "none") {
+        environment.put("BP_SPRING_AOT_ENABLED", "true")
+        environment.put(if (startupCache == "cds") "BP_JVM_CDS_ENABLED" else "BP_JVM_AOTCACHE_ENABLED", "true")
+        environment.put("CDS_TRAINING_JAVA_TOOL_OPTIONS",
+            "-Dstartup.migrations=skip -Dspring.docker.compose.enabled=false")
+    }
 }
@@ -0,0 +1,63 @@
+package com.execodex.app.bench;
+
+import com.execodex.app.configs.MinioReadProperties;
+import com.execodex.app.service.ContentStore;
+import com.execodex.app.service.HedgedReads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.time.Duration;
+
+/**
+ * SDK clients configured like {@code MinioConfig}, pointed at a {@link FakeS3Server}.
+ */
+final class BenchClients {
+
+    private static final StaticCredentialsProvider CREDENTIALS =
+            StaticCredentialsProvider.create(AwsBasicCredentials.create("bench", "bench-secret"));
+
+    private BenchClients() {
+    }
+
+    static S3AsyncClient s3AsyncClient(URI endpoint) {
+        return S3AsyncClient.builder()
+                .endpointOverride(endpoint)
+                .credentialsProvider(CREDENTIALS)
+                .region(Region.US_EAST_1)
+                .forcePathStyle(true)
+                .build();
+    }
+
+    /**
+     * Reads with the application defaults but without hedging, so benchmarks measure single requests.
+     */
+    static HedgedReads hedgedReads(S3AsyncClient s3AsyncClient) {
+        MinioReadProperties properties = new MinioReadProperties(Duration.ofSeconds(5), false, 0.95,
+                Duration.ofMillis(5), Duration.ofSeconds(1), 0.1);
+        return new HedgedReads(s3AsyncClient, properties, new SimpleMeterRegistry());
+    }
+
+    /**
+     * Deduplication off, as by default, so no database is needed.
+     */
+    static ContentStore contentStore(S3AsyncClient s3AsyncClient) {
+        return new ContentStore(s3AsyncClient, null, null, new SimpleMeterRegistry(), false, ".blobs/");
+    }
+
+    static S3Presigner s3Presigner(URI endpoint) {
+        return S3Presigner.builder()
+                .endpointOverride(endpoint)
+                .credentialsProvider(CREDENTIALS)
+                .region(Region.US_EAST_1)
+                .serviceConfiguration(S3Configuration.builder()
+                        .pathStyleAccessEnabled(true)
+                        .build())
+                .build();
+    }
+}
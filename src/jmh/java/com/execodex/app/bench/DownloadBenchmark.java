@@ -0,0 +1,58 @@
+package com.execodex.app.bench;
+
+import com.execodex.app.service.ObjectDownloadService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Download streaming, as a single ranged GET and as parallel chunked GETs reassembled in order.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class DownloadBenchmark {
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private FakeS3Server fakeS3;
+    private S3AsyncClient s3AsyncClient;
+    private ObjectDownloadService downloadService;
+    private long bytes;
+    private String eTag;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fakeS3 = FakeS3Server.start();
+        s3AsyncClient = BenchClients.s3AsyncClient(fakeS3.endpoint());
+        downloadService = new ObjectDownloadService(s3AsyncClient, BenchClients.hedgedReads(s3AsyncClient), parallel,
+                DataSize.ofMegabytes(16), DataSize.ofMegabytes(8), 4);
+        bytes = Payloads.bytes(size);
+        fakeS3.seed("bench", "object", bytes);
+        eTag = downloadService.head("bench", "object").block().eTag();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        s3AsyncClient.close();
+        fakeS3.close();
+    }
+
+    @Benchmark
+    public long download() {
+        return downloadService.fetch("bench", "object", eTag, 0, bytes - 1)
+                .map(ByteBuffer::remaining)
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
@@ -0,0 +1,413 @@
+package com.execodex.app.bench;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process stand-in for the subset of the S3 API this service uses, listening on the loopback interface.
+ * <p>
+ * Object bytes are never stored: uploads are drained while their MD5 and length are recorded, and
+ * downloads are generated from {@link Payloads}. ETags are therefore only consistent for objects whose
+ * content is a {@link Payloads} payload, which is what the benchmarks upload. Requests are not
+ * authenticated.
+ */
+public final class FakeS3Server implements AutoCloseable {
+
+    private static final Pattern XML_KEY = Pattern.compile("<Key>(.*?)</Key>", Pattern.DOTALL);
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME.withZone(ZoneOffset.UTC);
+
+    private final HttpServer server;
+    private final ConcurrentSkipListMap<String, StoredObject> objects = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<String, NavigableMap<Integer, StoredObject>> uploads = new ConcurrentHashMap<>();
+
+    private FakeS3Server(HttpServer server) {
+        this.server = server;
+    }
+
+    public static FakeS3Server start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        FakeS3Server fake = new FakeS3Server(server);
+        server.createContext("/", fake::handle);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+        return fake;
+    }
+
+    public URI endpoint() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+    }
+
+    /**
+     * Registers an object of {@code size} payload bytes without going through HTTP.
+     */
+    public void seed(String bucket, String key, long size) {
+        objects.put(bucket + "/" + key,
+                new StoredObject(size, "\"" + Payloads.md5(size) + "\"", Instant.now(), "application/octet-stream"));
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath().substring(1);
+            int slash = path.indexOf('/');
+            String bucket = slash < 0 ? path : path.substring(0, slash);
+            String key = slash < 0 || slash == path.length() - 1 ? null : path.substring(slash + 1);
+            Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+
+            switch (exchange.getRequestMethod()) {
+                case "PUT" -> {
+                    if (key == null) {
+                        drain(exchange, null);
+                        respond(exchange, 200, null);
+                    } else if (query.containsKey("uploadId")) {
+                        uploadPart(exchange, query.get("uploadId"), Integer.parseInt(query.get("partNumber")));
+                    } else {
+                        putObject(exchange, bucket, key);
+                    }
+                }
+                case "POST" -> {
+                    if (key == null && query.containsKey("delete")) {
+                        deleteObjects(exchange, bucket);
+                    } else if (query.containsKey("uploads")) {
+                        createUpload(exchange, bucket, key);
+                    } else {
+                        completeUpload(exchange, bucket, key, query.get("uploadId"));
+                    }
+                }
+                case "DELETE" -> {
+                    drain(exchange, null);
+                    if (query.containsKey("uploadId")) {
+                        uploads.remove(query.get("uploadId"));
+                    } else if (key != null) {
+                        objects.remove(bucket + "/" + key);
+                    }
+                    exchange.sendResponseHeaders(204, -1);
+                }
+                case "HEAD" -> headObject(exchange, bucket, key);
+                case "GET" -> {
+                    if (key == null) {
+                        listObjects(exchange, bucket, query);
+                    } else {
+                        getObject(exchange, bucket, key);
+                    }
+                }
+                default -> respond(exchange, 405, null);
+            }
+        } catch (RuntimeException e) {
+            respond(exchange, 500, error("InternalError", String.valueOf(e.getMessage())));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void putObject(HttpExchange exchange, String bucket, String key) throws IOException {
+        MessageDigest md5 = Payloads.md5Digest();
+        long size = drain(exchange, md5);
+        String eTag = "\"" + HexFormat.of().formatHex(md5.digest()) + "\"";
+        objects.put(bucket + "/" + key, new StoredObject(size, eTag, Instant.now(), contentType(exchange)));
+        exchange.getResponseHeaders().set("ETag", eTag);
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void createUpload(HttpExchange exchange, String bucket, String key) throws IOException {
+        drain(exchange, null);
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new ConcurrentSkipListMap<>());
+        respond(exchange, 200, "<InitiateMultipartUploadResult><Bucket>" + xml(bucket) + "</Bucket><Key>"
+                + xml(key) + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+    }
+
+    private void uploadPart(HttpExchange exchange, String uploadId, int partNumber) throws IOException {
+        MessageDigest md5 = Payloads.md5Digest();
+        long size = drain(exchange, md5);
+        NavigableMap<Integer, StoredObject> parts = uploads.get(uploadId);
+        if (parts == null) {
+            respond(exchange, 404, error("NoSuchUpload", uploadId));
+            return;
+        }
+        String eTag = "\"" + HexFormat.of().formatHex(md5.digest()) + "\"";
+        parts.put(partNumber, new StoredObject(size, eTag, Instant.now(), null));
+        exchange.getResponseHeaders().set("ETag", eTag);
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void completeUpload(HttpExchange exchange, String bucket, String key, String uploadId) throws IOException {
+        drain(exchange, null);
+        NavigableMap<Integer, StoredObject> parts = uploadId == null ? null : uploads.remove(uploadId);
+        if (parts == null) {
+            respond(exchange, 404, error("NoSuchUpload", String.valueOf(uploadId)));
+            return;
+        }
+        MessageDigest md5 = Payloads.md5Digest();
+        long size = 0;
+        for (StoredObject part : parts.values()) {
+            md5.update(HexFormat.of().parseHex(part.eTag().replace("\"", "")));
+            size += part.size();
+        }
+        String eTag = "\"" + HexFormat.of().formatHex(md5.digest()) + "-" + parts.size() + "\"";
+        objects.put(bucket + "/" + key, new StoredObject(size, eTag, Instant.now(), "application/octet-stream"));
+        respond(exchange, 200, "<CompleteMultipartUploadResult><Bucket>" + xml(bucket) + "</Bucket><Key>"
+                + xml(key) + "</Key><ETag>" + xml(eTag) + "</ETag></CompleteMultipartUploadResult>");
+    }
+
+    private void deleteObjects(HttpExchange exchange, String bucket) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        copyBody(exchange, body);
+        StringBuilder result = new StringBuilder("<DeleteResult>");
+        Matcher matcher = XML_KEY.matcher(body.toString(StandardCharsets.UTF_8));
+        while (matcher.find()) {
+            objects.remove(bucket + "/" + matcher.group(1));
+            result.append("<Deleted><Key>").append(matcher.group(1)).append("</Key></Deleted>");
+        }
+        respond(exchange, 200, result.append("</DeleteResult>").toString());
+    }
+
+    private void headObject(HttpExchange exchange, String bucket, String key) throws IOException {
+        StoredObject object = key == null ? null : objects.get(bucket + "/" + key);
+        if (object == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        objectHeaders(exchange.getResponseHeaders(), object);
+        exchange.getResponseHeaders().set("Content-Length", Long.toString(object.size()));
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    private void getObject(HttpExchange exchange, String bucket, String key) throws IOException {
+        StoredObject object = objects.get(bucket + "/" + key);
+        if (object == null) {
+            respond(exchange, 404, error("NoSuchKey", key));
+            return;
+        }
+        String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+        if (ifMatch != null && !ifMatch.equals(object.eTag())) {
+            respond(exchange, 412, error("PreconditionFailed", key));
+            return;
+        }
+
+        long start = 0;
+        long end = object.size() - 1;
+        int status = 200;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", 2);
+            if (bounds[0].isEmpty()) {
+                start = Math.max(0, object.size() - Long.parseLong(bounds[1]));
+            } else {
+                start = Long.parseLong(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    end = Math.min(end, Long.parseLong(bounds[1]));
+                }
+            }
+            status = 206;
+            exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + object.size());
+        }
+
+        long length = end - start + 1;
+        objectHeaders(exchange.getResponseHeaders(), object);
+        exchange.sendResponseHeaders(status, length > 0 ? length : -1);
+        if (length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                Payloads.write(out, start, length);
+            }
+        }
+    }
+
+    private void listObjects(HttpExchange exchange, String bucket, Map<String, String> query) throws IOException {
+        String prefix = query.getOrDefault("prefix", "");
+        String delimiter = query.get("delimiter");
+        int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+        String after = query.getOrDefault("continuation-token", query.getOrDefault("start-after", ""));
+
+        String bucketPrefix = bucket + "/";
+        StringBuilder contents = new StringBuilder();
+        Set<String> commonPrefixes = new LinkedHashSet<>();
+        int count = 0;
+        String last = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : objects.tailMap(bucketPrefix + after, false).entrySet()) {
+            if (!entry.getKey().startsWith(bucketPrefix + prefix)) {
+                if (entry.getKey().startsWith(bucketPrefix)) {
+                    continue;
+                }
+                break;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            String key = entry.getKey().substring(bucketPrefix.length());
+            int delimiterIndex = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+            if (delimiterIndex >= 0) {
+                String commonPrefix = key.substring(0, delimiterIndex + delimiter.length());
+                if (commonPrefixes.add(commonPrefix)) {
+                    count++;
+                }
+                last = key;
+                continue;
+            }
+            StoredObject object = entry.getValue();
+            contents.append("<Contents><Key>").append(xml(key)).append("</Key><LastModified>")
+                    .append(object.lastModified()).append("</LastModified><ETag>").append(xml(object.eTag()))
+                    .append("</ETag><Size>").append(object.size()).append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+            count++;
+            last = key;
+        }
+
+        StringBuilder result = new StringBuilder("<ListBucketResult><Name>").append(xml(bucket)).append("</Name>")
+                .append("<Prefix>").append(xml(prefix)).append("</Prefix>")
+                .append("<KeyCount>").append(count).append("</KeyCount>")
+                .append("<MaxKeys>").append(maxKeys).append("</MaxKeys>")
+                .append("<IsTruncated>").append(truncated).append("</IsTruncated>");
+        if (truncated) {
+            result.append("<NextContinuationToken>").append(xml(last)).append("</NextContinuationToken>");
+        }
+        result.append(contents);
+        commonPrefixes.forEach(commonPrefix ->
+                result.append("<CommonPrefixes><Prefix>").append(xml(commonPrefix)).append("</Prefix></CommonPrefixes>"));
+        respond(exchange, 200, result.append("</ListBucketResult>").toString());
+    }
+
+    /**
+     * Reads the request body, decoding {@code aws-chunked} framing when the SDK signs the payload in chunks.
+     */
+    private static long drain(HttpExchange exchange, MessageDigest md5) throws IOException {
+        Headers headers = exchange.getRequestHeaders();
+        String contentSha = headers.getFirst("x-amz-content-sha256");
+        boolean awsChunked = contentSha != null && contentSha.startsWith("STREAMING-");
+        try (InputStream in = exchange.getRequestBody()) {
+            long size = awsChunked ? readAwsChunked(in, md5) : read(in, md5, Long.MAX_VALUE);
+            in.transferTo(OutputStream.nullOutputStream());
+            return size;
+        }
+    }
+
+    private static long readAwsChunked(InputStream in, MessageDigest md5) throws IOException {
+        long total = 0;
+        while (true) {
+            String header = readLine(in);
+            int extension = header.indexOf(';');
+            long chunkSize = Long.parseLong((extension < 0 ? header : header.substring(0, extension)).trim(), 16);
+            if (chunkSize == 0) {
+                return total;
+            }
+            total += read(in, md5, chunkSize);
+            readLine(in);
+        }
+    }
+
+    private static long read(InputStream in, MessageDigest md5, long limit) throws IOException {
+        byte[] buffer = new byte[Payloads.BLOCK_SIZE];
+        long total = 0;
+        while (total < limit) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - total));
+            if (read < 0) {
+                break;
+            }
+            if (md5 != null) {
+                md5.update(buffer, 0, read);
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private static void copyBody(HttpExchange exchange, OutputStream target) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            in.transferTo(target);
+        }
+    }
+
+    private static void objectHeaders(Headers headers, StoredObject object) {
+        headers.set("ETag", object.eTag());
+        headers.set("Last-Modified", HTTP_DATE.format(object.lastModified()));
+        headers.set("Content-Type", object.contentType() == null ? "application/octet-stream" : object.contentType());
+        headers.set("Accept-Ranges", "bytes");
+    }
+
+    private static void respond(HttpExchange exchange, int status, String xmlBody) throws IOException {
+        if (xmlBody == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xmlBody).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String error(String code, String message) {
+        return "<Error><Code>" + code + "</Code><Message>" + xml(message) + "</Message></Error>";
+    }
+
+    private static String contentType(HttpExchange exchange) {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        return contentType == null ? "application/octet-stream" : contentType;
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            query.put(name, value);
+        }
+        return query;
+    }
+
+    private static String xml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private record StoredObject(long size, String eTag, Instant lastModified, String contentType) {
+    }
+}
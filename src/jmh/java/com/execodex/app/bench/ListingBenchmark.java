@@ -0,0 +1,48 @@
+package com.execodex.app.bench;
+
+import com.execodex.app.service.ObjectListingService;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Paginated listing of a bucket, following continuation tokens through every page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class ListingBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int objects;
+
+    private FakeS3Server fakeS3;
+    private S3AsyncClient s3AsyncClient;
+    private ObjectListingService listingService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fakeS3 = FakeS3Server.start();
+        s3AsyncClient = BenchClients.s3AsyncClient(fakeS3.endpoint());
+        listingService = new ObjectListingService(BenchClients.hedgedReads(s3AsyncClient),
+                BenchClients.contentStore(s3AsyncClient), "_derivatives/");
+        for (int i = 0; i < objects; i++) {
+            fakeS3.seed("bench", "objects/%08d".formatted(i), 1024);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        s3AsyncClient.close();
+        fakeS3.close();
+    }
+
+    @Benchmark
+    public long list() {
+        return listingService.list("bench", "objects/", null, null, null).count().block();
+    }
+}
@@ -0,0 +1,214 @@
+package com.execodex.app.bench;
+
+import com.execodex.app.AppApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * End-to-end load test of the {@code /api/minio} routes.
+ * <p>
+ * Boots the application on a random port against a {@link FakeS3Server}, so neither MinIO nor the network is
+ * needed, then drives uploads, downloads, listings and presigns through HTTP for object sizes from 1 KB to
+ * 1 GB. For every scenario it reports throughput, p50/p99 latency and the bytes allocated by the JVM
+ * (application, fake S3 and load client together), prints a table and writes the results as JSON to the
+ * path given as first argument.
+ */
+public final class LoadHarness {
+
+    private static final String BUCKET = "bench";
+    private static final String[] SIZES = {"1KB", "64KB", "1MB", "16MB", "256MB", "1GB"};
+    private static final long BYTES_PER_SCENARIO = 2L * 1024 * 1024 * 1024;
+
+    private final WebClient webClient;
+    private final FakeS3Server fakeS3;
+    private final List<Result> results = new ArrayList<>();
+
+    private LoadHarness(WebClient webClient, FakeS3Server fakeS3) {
+        this.webClient = webClient;
+        this.fakeS3 = fakeS3;
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path output = Path.of(args.length > 0 ? args[0] : "build/reports/load/results.json");
+
+        try (FakeS3Server fakeS3 = FakeS3Server.start();
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(AppApplication.class)
+                     .properties(
+                             "server.port=0",
+                             "spring.docker.compose.enabled=false",
+                             "spring.liquibase.enabled=false",
+                             "minio.metadata.enabled=false",
+                             "minio.transfer.resume-on-startup=false",
+                             "minio.upload.resumable.reaper-enabled=false",
+                             "minio.events.enabled=false",
+                             // measures raw throughput; admission control would hold back the 1 GB scenarios
+                             "minio.admission.enabled=false",
+                             "minio.internal-url=" + fakeS3.endpoint(),
+                             "minio.external-url=" + fakeS3.endpoint())
+                     .run()) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            WebClient webClient = WebClient.builder().baseUrl("http://localhost:" + port).build();
+
+            LoadHarness harness = new LoadHarness(webClient, fakeS3);
+            harness.runAll();
+            harness.write(output);
+        }
+    }
+
+    private void runAll() {
+        for (String size : SIZES) {
+            long bytes = Payloads.bytes(size);
+            int requests = (int) Math.clamp(BYTES_PER_SCENARIO / bytes, 4, 2000);
+            int concurrency = Math.min(16, requests);
+
+            run("upload", size, bytes, requests, concurrency, () -> upload(size, bytes));
+
+            fakeS3.seed(BUCKET, "download-" + size, bytes);
+            run("download", size, bytes, requests, concurrency, () -> download("download-" + size));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            fakeS3.seed(BUCKET, "list/%08d".formatted(i), 1024);
+        }
+        run("list", "10000 keys", 0, 50, 4, this::list);
+
+        run("presign", "-", 0, 20_000, 64, this::presign);
+    }
+
+    private Mono<Long> upload(String size, long bytes) {
+        MultipartBodyBuilder body = new MultipartBodyBuilder();
+        body.asyncPart("file", Payloads.dataBuffers(bytes), DataBuffer.class)
+                .filename("upload-" + size)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM);
+
+        return webClient.post()
+                .uri("/api/minio/{bucket}/upload", BUCKET)
+                .body(BodyInserters.fromMultipartData(body.build()))
+                .retrieve()
+                .toBodilessEntity()
+                .thenReturn(bytes);
+    }
+
+    private Mono<Long> download(String key) {
+        return webClient.get()
+                .uri("/api/minio/{bucket}/download/{filename}", BUCKET, key)
+                .retrieve()
+                .bodyToFlux(DataBuffer.class)
+                .map(buffer -> {
+                    long length = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return length;
+                })
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> list() {
+        return webClient.get()
+                .uri(uri -> uri.path("/api/minio/{bucket}/objects").queryParam("prefix", "list/").build(BUCKET))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(String.class)
+                .count();
+    }
+
+    private Mono<Long> presign() {
+        return webClient.get()
+                .uri("/api/minio/{bucket}/link2/{filename}", BUCKET, "gallery/image.jpg")
+                .retrieve()
+                .bodyToMono(String.class)
+                .thenReturn(0L);
+    }
+
+    private void run(String operation, String size, long bytes, int requests, int concurrency,
+                     Supplier<Mono<Long>> call) {
+        // one untimed request to warm up connections and JIT for this path
+        call.get().onErrorResume(e -> Mono.empty()).block();
+
+        Histogram latencies = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(10), 3);
+        AtomicLong errors = new AtomicLong();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        Flux.range(0, requests)
+                .flatMap(i -> Mono.defer(() -> {
+                    long requestStart = System.nanoTime();
+                    return call.get()
+                            .doOnSuccess(ignored -> latencies.recordValue(System.nanoTime() - requestStart))
+                            .onErrorResume(e -> {
+                                errors.incrementAndGet();
+                                return Mono.empty();
+                            });
+                }), concurrency)
+                .then()
+                .block();
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long allocated = allocatedBytes() - allocatedBefore;
+        Result result = new Result(operation, size, requests, concurrency, errors.get(),
+                requests / seconds,
+                bytes * (requests - errors.get()) / seconds / (1024 * 1024),
+                latencies.getValueAtPercentile(50) / 1e6,
+                latencies.getValueAtPercentile(99) / 1e6,
+                latencies.getMaxValue() / 1e6,
+                allocated / Math.max(requests, 1),
+                allocated / seconds / (1024 * 1024));
+        results.add(result);
+        System.out.println(result.line());
+    }
+
+    private void write(Path output) throws IOException {
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        String json = results.stream()
+                .map(Result::json)
+                .collect(Collectors.joining(",\n  ", "[\n  ", "\n]\n"));
+        Files.writeString(output, json);
+        System.out.println("Results written to " + output.toAbsolutePath());
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+
+    private record Result(String operation, String size, int requests, int concurrency, long errors,
+                          double opsPerSecond, double mbPerSecond, double p50Millis, double p99Millis,
+                          double maxMillis, long allocatedBytesPerOp, double allocationMbPerSecond) {
+
+        String line() {
+            return String.format(Locale.ROOT,
+                    "%-9s %-11s %6d req  %9.1f op/s  %8.1f MB/s  p50 %9.2f ms  p99 %9.2f ms  %12d B/op  %8.1f MB/s alloc  %d errors",
+                    operation, size, requests, opsPerSecond, mbPerSecond, p50Millis, p99Millis,
+                    allocatedBytesPerOp, allocationMbPerSecond, errors);
+        }
+
+        String json() {
+            return String.format(Locale.ROOT,
+                    "{\"operation\":\"%s\",\"size\":\"%s\",\"requests\":%d,\"concurrency\":%d,\"errors\":%d,"
+                            + "\"opsPerSecond\":%.3f,\"mbPerSecond\":%.3f,\"p50Millis\":%.3f,\"p99Millis\":%.3f,"
+                            + "\"maxMillis\":%.3f,\"allocatedBytesPerOp\":%d,\"allocationMbPerSecond\":%.3f}",
+                    operation, size, requests, concurrency, errors, opsPerSecond, mbPerSecond, p50Millis,
+                    p99Millis, maxMillis, allocatedBytesPerOp, allocationMbPerSecond);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.execodex.app.bench;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deterministic object content for benchmarks. An object of {@code n} bytes is the first {@code n} bytes
+ * of an endless repetition of {@link #BLOCK}, so payloads of any size can be produced and verified
+ * without holding them in memory.
+ */
+public final class Payloads {
+
+    static final int BLOCK_SIZE = 64 * 1024;
+    static final byte[] BLOCK = new byte[BLOCK_SIZE];
+
+    private static final DefaultDataBufferFactory BUFFER_FACTORY = new DefaultDataBufferFactory();
+    private static final Map<Long, String> MD5_BY_SIZE = new ConcurrentHashMap<>();
+
+    static {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            BLOCK[i] = (byte) (i * 31 + 7);
+        }
+    }
+
+    private Payloads() {
+    }
+
+    public static long bytes(String size) {
+        return DataSize.parse(size).toBytes();
+    }
+
+    /**
+     * The payload as a stream of buffers that share {@link #BLOCK}, so producing it allocates almost nothing.
+     */
+    public static Flux<DataBuffer> dataBuffers(long size) {
+        long blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        return Flux.range(0, (int) blocks)
+                .map(index -> {
+                    int length = (int) Math.min(BLOCK_SIZE, size - (long) index * BLOCK_SIZE);
+                    return BUFFER_FACTORY.wrap(ByteBuffer.wrap(BLOCK, 0, length).asReadOnlyBuffer());
+                });
+    }
+
+    /**
+     * Writes {@code length} bytes of the payload starting at {@code offset}.
+     */
+    static void write(OutputStream out, long offset, long length) throws IOException {
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            int blockOffset = (int) (position % BLOCK_SIZE);
+            int chunk = (int) Math.min(BLOCK_SIZE - blockOffset, end - position);
+            out.write(BLOCK, blockOffset, chunk);
+            position += chunk;
+        }
+    }
+
+    /**
+     * Hex MD5 of a payload of {@code size} bytes, which is the ETag S3 reports for a single-part upload.
+     */
+    static String md5(long size) {
+        return MD5_BY_SIZE.computeIfAbsent(size, s -> {
+            MessageDigest digest = md5Digest();
+            long remaining = s;
+            while (remaining > 0) {
+                int chunk = (int) Math.min(BLOCK_SIZE, remaining);
+                digest.update(BLOCK, 0, chunk);
+                remaining -= chunk;
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        });
+    }
+
+    static MessageDigest md5Digest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
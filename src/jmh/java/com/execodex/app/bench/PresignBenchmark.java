@@ -0,0 +1,50 @@
+package com.execodex.app.bench;
+
+import com.execodex.app.domain.PresignedLink;
+import com.execodex.app.metrics.BucketTags;
+import com.execodex.app.metrics.S3OperationMetrics;
+import com.execodex.app.service.PresignService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Presigning with a warm cache (same key every time) and with a cold one (cache disabled).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class PresignBenchmark {
+
+    @Param({"0", "10000"})
+    public long cacheSize;
+
+    private S3Presigner s3Presigner;
+    private PresignService presignService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        s3Presigner = BenchClients.s3Presigner(URI.create("http://localhost:9000"));
+        S3OperationMetrics operationMetrics = new S3OperationMetrics(meterRegistry, new BucketTags(List.of("bench")));
+        presignService = new PresignService(s3Presigner, operationMetrics, meterRegistry, cacheSize, 0.5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        s3Presigner.close();
+    }
+
+    @Benchmark
+    public PresignedLink presign() {
+        return presignService.presign("bench", "gallery/image-0001.jpg", Duration.ofMinutes(10));
+    }
+}
@@ -0,0 +1,230 @@
+package com.execodex.app.bench;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Time-to-ready of the packaged application, before and after the fast-startup settings.
+ * <p>
+ * Extracts the boot jar given as second argument the way the image runs it, then launches it in a fresh JVM
+ * per run against a {@link FakeS3Server} and a real Postgres, and measures the time from launch until the
+ * readiness probe answers. The database is {@code benchmark.db.url} (JDBC, the compose.yml Postgres by default)
+ * with {@code benchmark.db.user} and {@code benchmark.db.password}; the application works in a schema of its
+ * own that is dropped before every run of the defaults, so each of those runs applies the whole changelog.
+ * The other scenarios start as replicas do once a migration job has run, with {@code startup.migrations=skip}
+ * against the schema the defaults left behind: {@code startup.lazy}, Spring AOT on top, and a JDK AOT cache
+ * recorded by a training run on top of that (JDK 25 and later). Each scenario is run {@value #RUNS} times.
+ * Prints the median, min and max per scenario and writes them as JSON to the path given as first argument.
+ */
+public final class StartupBenchmark {
+
+    private static final int RUNS = 5;
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+    private static final String JAVA = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    private static final String SCHEMA = "startup_benchmark";
+    private static final String DB_URL = System.getProperty("benchmark.db.url", "jdbc:postgresql://localhost:5432/appdb");
+    private static final String DB_USER = System.getProperty("benchmark.db.user", "appuser");
+    private static final String DB_PASSWORD = System.getProperty("benchmark.db.password", "apppass");
+
+    private final Path jar;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+    private final List<Result> results = new ArrayList<>();
+    private final FakeS3Server fakeS3;
+
+    private StartupBenchmark(Path jar, FakeS3Server fakeS3) {
+        this.jar = jar;
+        this.fakeS3 = fakeS3;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path output = Path.of(args.length > 0 ? args[0] : "build/reports/startup/results.json");
+        Path bootJar = Path.of(args.length > 1 ? args[1] : "build/libs/app-1.0.2.jar");
+
+        Path extracted = output.toAbsolutePath().getParent().resolve("app");
+        try (FakeS3Server fakeS3 = FakeS3Server.start()) {
+            StartupBenchmark benchmark = new StartupBenchmark(extract(bootJar, extracted), fakeS3);
+            benchmark.runAll(extracted.resolve("app.aot"));
+            benchmark.write(output);
+        }
+    }
+
+    private void runAll(Path aotCache) throws Exception {
+        run("defaults", true, List.of(), List.of());
+        run("lazy", false, List.of(), List.of("--startup.migrations=skip", "--startup.lazy=true"));
+        run("lazy+spring-aot", false, List.of("-Dspring.aot.enabled=true"),
+                List.of("--startup.migrations=skip", "--startup.lazy=true"));
+
+        if (Runtime.version().feature() < 25) {
+            System.out.println("Skipping the AOT cache scenario, it needs JDK 25 or later");
+            return;
+        }
+        // the training run records the classes loaded and linked while the context refreshes, as the image build does
+        Files.deleteIfExists(aotCache);
+        Process training = launch(List.of("-Dspring.aot.enabled=true", "-XX:AOTCacheOutput=" + aotCache,
+                "-Dspring.context.exit=onRefresh"), List.of("--startup.migrations=skip", "--startup.lazy=true"), freePort());
+        if (!training.waitFor(TIMEOUT.toSeconds(), TimeUnit.SECONDS) || training.exitValue() != 0 || !Files.exists(aotCache)) {
+            training.destroyForcibly();
+            System.out.println("Skipping the AOT cache scenario, the training run failed");
+            return;
+        }
+        run("lazy+spring-aot+aot-cache", false, List.of("-Dspring.aot.enabled=true", "-XX:AOTCache=" + aotCache),
+                List.of("--startup.migrations=skip", "--startup.lazy=true"));
+    }
+
+    // freshSchema: every run starts from an empty schema and migrates it
+    private void run(String scenario, boolean freshSchema, List<String> jvmArgs, List<String> appArgs)
+            throws Exception {
+        // one untimed run so the page cache holds the jars for every scenario alike
+        if (freshSchema) {
+            resetSchema();
+        }
+        timeToReady(jvmArgs, appArgs);
+
+        long[] millis = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            if (freshSchema) {
+                resetSchema();
+            }
+            millis[i] = timeToReady(jvmArgs, appArgs);
+        }
+        Arrays.sort(millis);
+        Result result = new Result(scenario, RUNS, millis[RUNS / 2], millis[0], millis[RUNS - 1]);
+        results.add(result);
+        System.out.println(result.line());
+    }
+
+    private long timeToReady(List<String> jvmArgs, List<String> appArgs) throws Exception {
+        int port = freePort();
+        // readiness includes the migrations, liveness would answer before the schema is usable
+        HttpRequest probe = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health/readiness"))
+                .timeout(Duration.ofSeconds(1))
+                .build();
+        long start = System.nanoTime();
+        Process process = launch(jvmArgs, appArgs, port);
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + process.exitValue());
+                }
+                try {
+                    if (httpClient.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return (System.nanoTime() - start) / 1_000_000;
+                    }
+                } catch (ConnectException e) {
+                    // not listening yet
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("Application not ready within " + TIMEOUT);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private Process launch(List<String> jvmArgs, List<String> appArgs, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(JAVA);
+        command.addAll(jvmArgs);
+        command.addAll(List.of("-jar", jar.toString(),
+                "--server.port=" + port,
+                "--spring.docker.compose.enabled=false",
+                "--spring.r2dbc.url=" + r2dbcUrl(),
+                "--spring.r2dbc.username=" + DB_USER,
+                "--spring.r2dbc.password=" + DB_PASSWORD,
+                "--spring.liquibase.url=" + DB_URL,
+                "--spring.liquibase.user=" + DB_USER,
+                "--spring.liquibase.password=" + DB_PASSWORD,
+                "--spring.liquibase.default-schema=" + SCHEMA,
+                "--minio.internal-url=" + fakeS3.endpoint(),
+                "--minio.external-url=" + fakeS3.endpoint()));
+        command.addAll(appArgs);
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+    }
+
+    private static void resetSchema() throws SQLException {
+        try (Connection connection = DriverManager.getConnection(DB_URL, DB_USER, DB_PASSWORD);
+             Statement statement = connection.createStatement()) {
+            statement.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+            statement.execute("CREATE SCHEMA " + SCHEMA);
+        }
+    }
+
+    // the same database over R2DBC, with the benchmark schema first on the search path
+    private static String r2dbcUrl() {
+        String url = "r2dbc:" + DB_URL.substring("jdbc:".length());
+        return url + (url.contains("?") ? "&" : "?") + "schema=" + SCHEMA;
+    }
+
+    // the JDK only caches classes from plain jars, so the boot jar is extracted as the image build does
+    private static Path extract(Path bootJar, Path destination) throws Exception {
+        if (Files.exists(destination)) {
+            try (Stream<Path> paths = Files.walk(destination)) {
+                for (Path path : paths.sorted((a, b) -> b.getNameCount() - a.getNameCount()).toList()) {
+                    Files.delete(path);
+                }
+            }
+        }
+        Process extract = new ProcessBuilder(JAVA, "-Djarmode=tools", "-jar", bootJar.toString(),
+                "extract", "--destination", destination.toString())
+                .inheritIO()
+                .start();
+        if (extract.waitFor() != 0) {
+            throw new IllegalStateException("Could not extract " + bootJar);
+        }
+        return destination.resolve(bootJar.getFileName());
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void write(Path output) throws IOException {
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        String json = results.stream()
+                .map(Result::json)
+                .collect(Collectors.joining(",\n  ", "[\n  ", "\n]\n"));
+        Files.writeString(output, json);
+        System.out.println("Results written to " + output.toAbsolutePath());
+    }
+
+    private record Result(String scenario, int runs, long medianMillis, long minMillis, long maxMillis) {
+
+        String line() {
+            return String.format(Locale.ROOT, "%-26s %2d runs  median %6d ms  min %6d ms  max %6d ms",
+                    scenario, runs, medianMillis, minMillis, maxMillis);
+        }
+
+        String json() {
+            return String.format(Locale.ROOT,
+                    "{\"scenario\":\"%s\",\"runs\":%d,\"medianMillis\":%d,\"minMillis\":%d,\"maxMillis\":%d}",
+                    scenario, runs, medianMillis, minMillis, maxMillis);
+        }
+    }
+}
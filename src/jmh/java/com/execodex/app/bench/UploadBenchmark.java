@@ -0,0 +1,51 @@
+package com.execodex.app.bench;
+
+import com.execodex.app.domain.UploadedObject;
+import com.execodex.app.service.MultipartUploadService;
+import com.execodex.app.service.MultipartUploads;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.util.unit.DataSize;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streaming upload pipeline: part splitting plus single PUT or parallel multipart upload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class UploadBenchmark {
+
+    @Param({"1KB", "1MB", "64MB", "1GB"})
+    public String size;
+
+    private FakeS3Server fakeS3;
+    private S3AsyncClient s3AsyncClient;
+    private MultipartUploadService uploadService;
+    private long bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fakeS3 = FakeS3Server.start();
+        s3AsyncClient = BenchClients.s3AsyncClient(fakeS3.endpoint());
+        uploadService = new MultipartUploadService(s3AsyncClient, new MultipartUploads(s3AsyncClient),
+                DataSize.ofMegabytes(8), 4);
+        bytes = Payloads.bytes(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        s3AsyncClient.close();
+        fakeS3.close();
+    }
+
+    @Benchmark
+    public UploadedObject upload() {
+        return uploadService.upload("bench", "upload-" + size, "application/octet-stream",
+                Payloads.dataBuffers(bytes)).block();
+    }
+}
@@ -0,0 +1,362 @@
+package com.execodex.app.configs;
+
+import com.execodex.app.metrics.BucketTags;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Admission control in front of the {@code /api/minio/{bucket}} routes.
+ * <p>
+ * A request is admitted while the in-flight requests stay below the global limit and the bucket's limit, and
+ * its declared body size ({@code Content-Length}) fits into the global and per-bucket byte budgets; a body of
+ * unknown length is charged {@code minio.admission.unknown-body-size}. A single body larger than a budget is
+ * admitted once nothing else holds bytes of it. Requests that do not fit wait in
+ * a queue of {@code minio.admission.queue-size}; when the queue is full they get 429, and after
+ * {@code minio.admission.max-wait} in the queue 503, both with {@code Retry-After}. A request holds its permit
+ * until its response has been written, so downloads count for as long as they stream. Responses that stream
+ * for as long as a listing, ZIP archive, transfer or bulk delete runs give their permit back once they start,
+ * so a few of them cannot hold the limit for minutes. Waiting requests are admitted when a permit is released
+ * and when the limit grows.
+ * <p>
+ * The global request limit adapts to MinIO: as an {@link ExecutionInterceptor} on the {@code S3AsyncClient}
+ * this class feeds the time to response headers of every attempt without a large request body into a
+ * {@link GradientLimit}, and 503 responses from MinIO cut the limit.
+ * <p>
+ * Meters: {@code minio.admission.requests} (by {@code bucket}, see {@link BucketTags}, and {@code outcome}:
+ * accepted, queued, rejected, timed_out), {@code minio.admission.wait}, {@code minio.admission.limit},
+ * {@code minio.admission.in.flight}, {@code minio.admission.in.flight.bytes}, {@code minio.admission.queued}
+ * and {@code minio.admission.overload}.
+ */
+@Component
+public class AdmissionControl implements WebFilter, ExecutionInterceptor {
+
+    private static final PathPattern BUCKET_ROUTES = PathPatternParser.defaultInstance.parse("/api/minio/{bucket}/{*path}");
+    // the bucket itself is the full listing of getAllFiles
+    private static final List<PathPattern> STREAMING_ROUTES = Stream.of("", "/objects", "/zip", "/copy", "/rename",
+                    "/delete")
+            .map(route -> PathPatternParser.defaultInstance.parse("/api/minio/{bucket}" + route))
+            .toList();
+    private static final Set<HttpMethod> BODY_METHODS = Set.of(HttpMethod.POST, HttpMethod.PUT, HttpMethod.PATCH);
+    // uploads stream their body before the response comes back, which says nothing about MinIO's load
+    private static final long MAX_SAMPLED_BODY = 64 * 1024;
+    private static final ExecutionAttribute<Long> ATTEMPT_START = new ExecutionAttribute<>("AdmissionAttemptStart");
+
+    private final AdmissionProperties properties;
+    private final GradientLimit limit;
+    private final MeterRegistry meterRegistry;
+    private final BucketTags bucketTags;
+    private final long retryAfterSeconds;
+    private final Usage global = new Usage();
+    private final Map<String, Usage> buckets = new HashMap<>();
+    private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong inFlightBytes = new AtomicLong();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Timer waitTimer;
+    private final Counter overload;
+
+    public AdmissionControl(AdmissionProperties properties, MeterRegistry meterRegistry, BucketTags bucketTags) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.bucketTags = bucketTags;
+        this.limit = new GradientLimit(properties.initialLimit(), properties.minLimit(), properties.maxLimit(),
+                properties.latencyTolerance());
+        this.retryAfterSeconds = Math.max(1, (properties.retryAfter().toMillis() + 999) / 1000);
+        this.waitTimer = Timer.builder("minio.admission.wait")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.overload = Counter.builder("minio.admission.overload").register(meterRegistry);
+
+        Gauge.builder("minio.admission.limit", limit, GradientLimit::limit).register(meterRegistry);
+        Gauge.builder("minio.admission.in.flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("minio.admission.in.flight.bytes", inFlightBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("minio.admission.queued", queued, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        PathContainer path = exchange.getRequest().getPath().pathWithinApplication();
+        PathPattern.PathMatchInfo match = properties.enabled() ? BUCKET_ROUTES.matchAndExtract(path) : null;
+        if (match == null) {
+            return chain.filter(exchange);
+        }
+        String bucket = match.getUriVariables().get("bucket");
+        long bytes = declaredBytes(exchange);
+        boolean streaming = STREAMING_ROUTES.stream().anyMatch(route -> route.matches(path));
+
+        return admit(bucket, bytes)
+                .flatMap(permit -> {
+                    if (streaming) {
+                        exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() -> release(permit)));
+                    }
+                    return chain.filter(exchange).doFinally(signal -> release(permit));
+                })
+                .onErrorResume(Rejected.class, e -> reject(exchange, e));
+    }
+
+    // a chunked body would otherwise pass every byte budget for free
+    private long declaredBytes(ServerWebExchange exchange) {
+        long contentLength = exchange.getRequest().getHeaders().getContentLength();
+        if (contentLength >= 0) {
+            return contentLength;
+        }
+        return BODY_METHODS.contains(exchange.getRequest().getMethod())
+                ? properties.unknownBodySize().toBytes()
+                : 0;
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        long body = context.asyncRequestBody()
+                .flatMap(requestBody -> requestBody.contentLength())
+                .orElse(0L);
+        if (body <= MAX_SAMPLED_BODY) {
+            executionAttributes.putAttribute(ATTEMPT_START, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+        int status = context.httpResponse().statusCode();
+        if (status == 503 || status == 429) {
+            limit.onOverload();
+            overload.increment();
+            return;
+        }
+        Long start = executionAttributes.getAttribute(ATTEMPT_START);
+        if (start != null && status < 500) {
+            int before = limit.limit();
+            limit.onSample(System.nanoTime() - start, inFlight.get());
+            if (limit.limit() > before) {
+                admitWaiting();
+            }
+        }
+    }
+
+    private Mono<Permit> admit(String bucket, long bytes) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(bucket, bytes, sink, System.nanoTime());
+            Permit permit = null;
+            boolean waiting = false;
+            synchronized (this) {
+                if (queue.isEmpty() && fits(bucket, bytes)) {
+                    permit = acquire(bucket, bytes);
+                } else if (queue.size() < properties.queueSize()) {
+                    queue.addLast(waiter);
+                    queued.incrementAndGet();
+                    waiting = true;
+                }
+            }
+
+            if (permit != null) {
+                count(bucket, "accepted");
+                sink.success(permit);
+            } else if (!waiting) {
+                count(bucket, "rejected");
+                sink.error(new Rejected(HttpStatus.TOO_MANY_REQUESTS, "too many requests waiting"));
+            } else {
+                count(bucket, "queued");
+                Disposable timeout = Mono.delay(properties.maxWait()).subscribe(tick -> expire(waiter));
+                sink.onCancel(() -> cancel(waiter));
+                sink.onDispose(timeout);
+            }
+        });
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (!queue.remove(waiter)) {
+                return;
+            }
+            queued.decrementAndGet();
+        }
+        count(waiter.bucket, "timed_out");
+        waiter.sink.error(new Rejected(HttpStatus.SERVICE_UNAVAILABLE, "no capacity within " + properties.maxWait()));
+    }
+
+    // a client that went away while queued; if it was admitted in the meantime, its permit is returned
+    private void cancel(Waiter waiter) {
+        Permit permit;
+        synchronized (this) {
+            if (queue.remove(waiter)) {
+                queued.decrementAndGet();
+                return;
+            }
+            permit = waiter.permit;
+        }
+        if (permit != null) {
+            release(permit);
+        }
+    }
+
+    private void release(Permit permit) {
+        if (!permit.released().compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (this) {
+            global.remove(permit.bytes());
+            Usage usage = buckets.get(permit.bucket());
+            usage.remove(permit.bytes());
+            if (usage.requests == 0) {
+                buckets.remove(permit.bucket());
+            }
+            inFlight.decrementAndGet();
+            inFlightBytes.addAndGet(-permit.bytes());
+        }
+        admitWaiting();
+    }
+
+    private void admitWaiting() {
+        List<Waiter> admitted = new ArrayList<>();
+        synchronized (this) {
+            // first come, first served, except that a waiter held back only by its own bucket lets others pass
+            Iterator<Waiter> waiting = queue.iterator();
+            while (waiting.hasNext()) {
+                Waiter waiter = waiting.next();
+                if (!fitsGlobally(waiter.bytes)) {
+                    break;
+                }
+                if (fitsBucket(waiter.bucket, waiter.bytes)) {
+                    waiting.remove();
+                    queued.decrementAndGet();
+                    waiter.permit = acquire(waiter.bucket, waiter.bytes);
+                    admitted.add(waiter);
+                }
+            }
+        }
+
+        for (Waiter waiter : admitted) {
+            waitTimer.record(System.nanoTime() - waiter.since, TimeUnit.NANOSECONDS);
+            count(waiter.bucket, "accepted");
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    private boolean fits(String bucket, long bytes) {
+        return fitsGlobally(bytes) && fitsBucket(bucket, bytes);
+    }
+
+    private boolean fitsGlobally(long bytes) {
+        return global.requests < limit.limit() && global.fits(bytes, properties.maxBytes().toBytes());
+    }
+
+    private boolean fitsBucket(String bucket, long bytes) {
+        Usage usage = buckets.get(bucket);
+        return usage == null
+                || (usage.requests < Math.min(properties.bucketMaxRequests(), limit.limit())
+                && usage.fits(bytes, properties.bucketMaxBytes().toBytes()));
+    }
+
+    private Permit acquire(String bucket, long bytes) {
+        global.add(bytes);
+        buckets.computeIfAbsent(bucket, b -> new Usage()).add(bytes);
+        inFlight.incrementAndGet();
+        inFlightBytes.addAndGet(bytes);
+        return new Permit(bucket, bytes, new AtomicBoolean());
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, Rejected rejected) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(rejected.status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+        byte[] body = ("Error: " + rejected.getMessage()).getBytes(StandardCharsets.UTF_8);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+    }
+
+    private void count(String bucket, String outcome) {
+        Counter.builder("minio.admission.requests")
+                .tag("bucket", bucketTags.tag(bucket))
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // guarded by the AdmissionControl monitor
+    private static final class Usage {
+
+        private int requests;
+        private long bytes;
+
+        void add(long requestBytes) {
+            requests++;
+            bytes += requestBytes;
+        }
+
+        void remove(long requestBytes) {
+            requests--;
+            bytes -= requestBytes;
+        }
+
+        boolean fits(long requestBytes, long budget) {
+            return requestBytes == 0 || bytes == 0 || bytes + requestBytes <= budget;
+        }
+    }
+
+    private record Permit(String bucket, long bytes, AtomicBoolean released) {
+    }
+
+    private static final class Waiter {
+
+        private final String bucket;
+        private final long bytes;
+        private final MonoSink<Permit> sink;
+        private final long since;
+        // set under the AdmissionControl monitor when the waiter leaves the queue admitted
+        private Permit permit;
+
+        Waiter(String bucket, long bytes, MonoSink<Permit> sink, long since) {
+            this.bucket = bucket;
+            this.bytes = bytes;
+            this.sink = sink;
+            this.since = since;
+        }
+    }
+
+    private static final class Rejected extends RuntimeException {
+
+        private final HttpStatus status;
+
+        Rejected(HttpStatus status, String message) {
+            super(message, null, false, false);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.execodex.app.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Admission control of the {@code /api/minio/{bucket}} routes (see {@link AdmissionControl}).
+ *
+ * @param initialLimit       in-flight requests allowed at startup, before latency has been observed
+ * @param minLimit           lower bound of the adaptive in-flight request limit
+ * @param maxLimit           upper bound of the adaptive in-flight request limit
+ * @param latencyTolerance   how far MinIO latency may rise above its baseline before the limit shrinks
+ * @param bucketMaxRequests  in-flight requests per bucket, never more than the global limit
+ * @param maxBytes           declared request body bytes in flight
+ * @param bucketMaxBytes     declared request body bytes in flight per bucket
+ * @param unknownBodySize    bytes charged to an upload that declares no {@code Content-Length}
+ * @param queueSize          requests that may wait for admission; further requests get 429
+ * @param maxWait            how long a request waits for admission before it gets 503
+ * @param retryAfter         value of the {@code Retry-After} header on rejections
+ */
+@ConfigurationProperties("minio.admission")
+public record AdmissionProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("64") int initialLimit,
+        @DefaultValue("8") int minLimit,
+        @DefaultValue("512") int maxLimit,
+        @DefaultValue("1.5") double latencyTolerance,
+        @DefaultValue("128") int bucketMaxRequests,
+        @DefaultValue("2GB") DataSize maxBytes,
+        @DefaultValue("1GB") DataSize bucketMaxBytes,
+        @DefaultValue("64MB") DataSize unknownBodySize,
+        @DefaultValue("256") int queueSize,
+        @DefaultValue("2s") Duration maxWait,
+        @DefaultValue("1s") Duration retryAfter
+) {
+}
@@ -0,0 +1,66 @@
+package com.execodex.app.configs;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Remembers the authentication converted from a JWT until the token expires, so the claims are walked and
+ * the authorities allocated once per token rather than once per request.
+ * <p>
+ * Entries are keyed by issuer and {@code jti}, or by the raw token when it has no id. Tokens without an
+ * expiry are converted on every request.
+ */
+public class CachingJwtAuthenticationConverter implements Converter<Jwt, Mono<AbstractAuthenticationToken>> {
+
+    private final Converter<Jwt, Mono<AbstractAuthenticationToken>> delegate;
+    private final Cache<TokenKey, CachedAuthentication> cache;
+
+    public CachingJwtAuthenticationConverter(Converter<Jwt, Mono<AbstractAuthenticationToken>> delegate,
+                                             MeterRegistry meterRegistry,
+                                             long maxSize) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((TokenKey key, CachedAuthentication cached) ->
+                        Duration.between(Instant.now(), cached.expiresAt())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "jwtAuthentications");
+    }
+
+    @Override
+    public Mono<AbstractAuthenticationToken> convert(Jwt jwt) {
+        Instant expiresAt = jwt.getExpiresAt();
+        if (expiresAt == null) {
+            return delegate.convert(jwt);
+        }
+        TokenKey key = TokenKey.of(jwt);
+        CachedAuthentication cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached.authentication());
+        }
+        return delegate.convert(jwt)
+                .doOnNext(authentication -> cache.put(key, new CachedAuthentication(authentication, expiresAt)));
+    }
+
+    private record TokenKey(String issuer, String id) {
+
+        static TokenKey of(Jwt jwt) {
+            String issuer = jwt.getIssuer() == null ? null : jwt.getIssuer().toString();
+            return new TokenKey(issuer, jwt.getId() != null ? jwt.getId() : jwt.getTokenValue());
+        }
+    }
+
+    private record CachedAuthentication(AbstractAuthenticationToken authentication, Instant expiresAt) {
+    }
+}
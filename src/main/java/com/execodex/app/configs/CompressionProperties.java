@@ -0,0 +1,36 @@
+package com.execodex.app.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional compression of uploads before they are stored in MinIO (see {@code CompressionService}).
+ *
+ * @param enabled      compress uploads at all
+ * @param codec        codec of buckets without an entry in {@code buckets}: gzip, zstd or none
+ * @param buckets      codec per bucket, overriding {@code codec}
+ * @param contentTypes media types that are compressed, wildcards allowed
+ * @param gzipLevel    gzip compression level, 1 to 9
+ * @param zstdLevel    zstd compression level, 1 to 19
+ * @param bufferSize   size of the buffers written by the compressing and decompressing streams
+ * @param prefetch     buffers of input requested ahead of the codec
+ * @param maxStreams   streams compressed or decompressed at once, each on a thread of its own; further ones are
+ *                     refused
+ */
+@ConfigurationProperties("minio.compression")
+public record CompressionProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("gzip") String codec,
+        Map<String, String> buckets,
+        @DefaultValue({"application/json", "application/*+json", "application/x-ndjson", "text/*"}) List<String> contentTypes,
+        @DefaultValue("6") int gzipLevel,
+        @DefaultValue("3") int zstdLevel,
+        @DefaultValue("64KB") DataSize bufferSize,
+        @DefaultValue("4") int prefetch,
+        @DefaultValue("64") int maxStreams
+) {
+}
@@ -0,0 +1,65 @@
+package com.execodex.app.configs;
+
+/**
+ * Concurrency limit that follows MinIO latency, in the style of a gradient limiter.
+ * <p>
+ * Two moving averages of the request latency are kept: a short one reacting within a few dozen samples and a
+ * long one acting as the baseline. While the short average stays within {@code tolerance} of the baseline the
+ * limit grows additively by about the square root of itself; once it rises above that, the limit shrinks in
+ * proportion to the gradient {@code tolerance * long / short}, down to half per update. Overload responses
+ * from MinIO cut the limit multiplicatively. Samples taken while less than half of the limit is in use do
+ * not grow it, so a quiet period does not leave an inflated limit behind.
+ */
+final class GradientLimit {
+
+    private static final double SHORT_ALPHA = 0.1;
+    private static final double LONG_ALPHA = 0.005;
+    private static final double SMOOTHING = 0.2;
+    private static final double OVERLOAD_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private double limit;
+    private double shortRtt;
+    private double longRtt;
+
+    GradientLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.tolerance = Math.max(tolerance, 1.0);
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized void onSample(long rttNanos, int inFlight) {
+        if (rttNanos <= 0) {
+            return;
+        }
+        if (longRtt == 0) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+            return;
+        }
+        shortRtt += (rttNanos - shortRtt) * SHORT_ALPHA;
+        longRtt += (rttNanos - longRtt) * LONG_ALPHA;
+        // after a latency spike the baseline would otherwise take hundreds of samples to come back down
+        if (longRtt > 2 * shortRtt) {
+            longRtt *= 0.95;
+        }
+        if (inFlight < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.clamp(tolerance * longRtt / shortRtt, 0.5, 1.0);
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.clamp(limit * (1 - SMOOTHING) + target * SMOOTHING, minLimit, maxLimit);
+    }
+
+    synchronized void onOverload() {
+        limit = Math.max(minLimit, limit * OVERLOAD_BACKOFF);
+    }
+}
@@ -0,0 +1,30 @@
+package com.execodex.app.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Image derivatives served by {@code GET /api/minio/{bucket}/image/{filename}} (see {@code ImageDerivativeService}).
+ *
+ * @param derivativePrefix key prefix under which derivatives are stored in the source's bucket
+ * @param maxSourceSize    largest source object that is decoded
+ * @param maxPixels        largest source image, in pixels, that is decoded
+ * @param maxDimension     largest width or height a derivative may ask for
+ * @param quality          JPEG quality, 1 to 100, when the request does not give one
+ * @param workers          threads reading, decoding and encoding images; each holds a source of up to
+ *                         {@code maxSourceSize} and its decoded image of up to {@code maxPixels} at 4 bytes per
+ *                         pixel, so together they bound the heap taken
+ * @param queue            derivatives waiting for a worker before further requests are turned away
+ */
+@ConfigurationProperties("minio.images")
+public record ImageProperties(
+        @DefaultValue("_derivatives/") String derivativePrefix,
+        @DefaultValue("32MB") DataSize maxSourceSize,
+        @DefaultValue("16000000") long maxPixels,
+        @DefaultValue("4096") int maxDimension,
+        @DefaultValue("80") int quality,
+        @DefaultValue("2") int workers,
+        @DefaultValue("256") int queue
+) {
+}
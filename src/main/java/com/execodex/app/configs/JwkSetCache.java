@@ -0,0 +1,137 @@
+package com.execodex.app.configs;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the issuer's JWK set in memory for JWT signature verification.
+ * <p>
+ * The set is fetched once the application has started and then refreshed every
+ * {@code security.jwks.refresh-interval}, so rotated keys are usually known before the first token signed
+ * with them arrives. A token with an unknown key id triggers an immediate refresh, at most once per
+ * {@code security.jwks.min-refresh-interval}. A fetch that takes longer than {@code security.jwks.fetch-timeout}
+ * fails, so a hung issuer cannot hold up the tokens waiting on it. Until the first fetch succeeds
+ * {@link #isLoaded()} is {@code false}, which the {@code jwks} health indicator reports without taking the
+ * instance out of readiness (see {@link SecConfigs#jwksHealthIndicator}). Concurrent refreshes share one request.
+ */
+@Component
+public class JwkSetCache implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(JwkSetCache.class);
+
+    private final WebClient webClient;
+    private final String jwkSetUri;
+    private final Duration refreshInterval;
+    private final Duration minRefreshInterval;
+    private final Duration fetchTimeout;
+    private final AtomicReference<JWKSet> keys = new AtomicReference<>();
+    private final AtomicReference<Mono<JWKSet>> inFlight = new AtomicReference<>();
+    private volatile Instant lastRefresh = Instant.EPOCH;
+    private volatile Disposable refresher;
+
+    public JwkSetCache(WebClient.Builder webClientBuilder,
+                       @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri}") String jwkSetUri,
+                       @Value("${security.jwks.refresh-interval:5m}") Duration refreshInterval,
+                       @Value("${security.jwks.min-refresh-interval:30s}") Duration minRefreshInterval,
+                       @Value("${security.jwks.fetch-timeout:5s}") Duration fetchTimeout) {
+        this.webClient = webClientBuilder.build();
+        this.jwkSetUri = jwkSetUri;
+        this.refreshInterval = refreshInterval;
+        this.minRefreshInterval = minRefreshInterval;
+        this.fetchTimeout = fetchTimeout;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void start() {
+        // the first tick fires immediately; a failed fetch keeps the previous keys and is retried next tick
+        refresher = Flux.interval(Duration.ZERO, refreshInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh().onErrorResume(e -> Mono.empty()), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (refresher != null) {
+            refresher.dispose();
+        }
+    }
+
+    public boolean isLoaded() {
+        return keys.get() != null;
+    }
+
+    /**
+     * When the keys were last loaded, {@link Instant#EPOCH} before the first successful fetch.
+     */
+    public Instant lastRefresh() {
+        return lastRefresh;
+    }
+
+    /**
+     * JWK source for {@code NimbusReactiveJwtDecoder.withJwkSource}: the keys matching the token's header,
+     * refreshing the set once if none match.
+     */
+    public Flux<JWK> select(SignedJWT jwt) {
+        JWKSelector selector = new JWKSelector(JWKMatcher.forJWSHeader(jwt.getHeader()));
+        JWKSet current = keys.get();
+        List<JWK> matches = current == null ? List.of() : selector.select(current);
+        if (!matches.isEmpty()) {
+            return Flux.fromIterable(matches);
+        }
+        if (current != null && Instant.now().isBefore(lastRefresh.plus(minRefreshInterval))) {
+            return Flux.empty();
+        }
+        return refresh().flatMapIterable(selector::select);
+    }
+
+    Mono<JWKSet> refresh() {
+        Mono<JWKSet> existing = inFlight.get();
+        if (existing != null) {
+            return existing;
+        }
+        Mono<JWKSet> fetch = webClient.get()
+                .uri(jwkSetUri)
+                .retrieve()
+                .bodyToMono(String.class)
+                .timeout(fetchTimeout)
+                .map(JwkSetCache::parse)
+                .doOnNext(set -> {
+                    keys.set(set);
+                    lastRefresh = Instant.now();
+                    log.debug("Loaded {} keys from {}", set.getKeys().size(), jwkSetUri);
+                })
+                .doOnError(e -> log.warn("Could not load JWK set from {}: {}", jwkSetUri, e.getMessage()))
+                .doFinally(signal -> inFlight.set(null))
+                .cache();
+        return inFlight.compareAndSet(null, fetch) ? fetch : refresh();
+    }
+
+    private static JWKSet parse(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid JWK set: " + e.getMessage(), e);
+        }
+    }
+}
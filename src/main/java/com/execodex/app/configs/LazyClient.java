@@ -0,0 +1,66 @@
+package com.execodex.app.configs;
+
+import software.amazon.awssdk.utils.SdkAutoCloseable;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+/**
+ * An SDK client that is only built on its first call, for {@code startup.lazy}.
+ * <p>
+ * Building an S3 client or presigner loads the SDK's endpoint rules, signers and the Netty transport, which
+ * is a noticeable share of startup; behind this proxy it happens on the first request that needs the client
+ * instead. Closing a client that was never used does not build it.
+ */
+final class LazyClient<T extends SdkAutoCloseable> implements InvocationHandler {
+
+    private final Class<T> type;
+    private final Supplier<T> factory;
+    private volatile T client;
+
+    private LazyClient(Class<T> type, Supplier<T> factory) {
+        this.type = type;
+        this.factory = factory;
+    }
+
+    static <T extends SdkAutoCloseable> T of(Class<T> type, Supplier<T> factory) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new LazyClient<>(type, factory)));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> "lazy " + type.getSimpleName();
+            };
+        }
+        if (method.getName().equals("close") && method.getParameterCount() == 0 && client == null) {
+            return null;
+        }
+        try {
+            return method.invoke(client(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private T client() {
+        T current = client;
+        if (current == null) {
+            synchronized (this) {
+                current = client;
+                if (current == null) {
+                    current = factory.get();
+                    client = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,117 @@
+package com.execodex.app.configs;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * When Liquibase migrates the schema ({@code startup.migrations}).
+ * <p>
+ * {@code run} migrates while the context starts, as Spring Boot does by default. {@code skip} leaves the schema
+ * alone, for replicas started after a migration job has already applied the changelog. {@code defer} starts
+ * without waiting for Liquibase and migrates on a background thread once the application is ready; until it
+ * has finished {@link #isMigrated()} is {@code false}, which keeps the readiness probe down (see
+ * {@link StartupConfig#migrationsHealthIndicator}). Background jobs that touch the database meanwhile fail
+ * their first runs and retry on their next tick.
+ * <p>
+ * Unlike {@code spring.liquibase.enabled}, which Spring AOT fixes at build time, the mode is read when the
+ * application starts, so one image serves the migration job and the replicas.
+ */
+@Component
+public class LiquibaseStartup implements BeanPostProcessor, ApplicationListener<ApplicationReadyEvent>, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LiquibaseStartup.class);
+
+    private final Mode mode;
+    private final List<SpringLiquibase> deferred = new CopyOnWriteArrayList<>();
+    private volatile boolean migrated;
+    private volatile String failure;
+    private volatile Disposable migration;
+
+    public LiquibaseStartup(@Value("${startup.migrations:run}") String mode) {
+        this.mode = Mode.parse(mode);
+        this.migrated = this.mode != Mode.DEFER;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof SpringLiquibase liquibase && mode != Mode.RUN) {
+            // SpringLiquibase migrates in afterPropertiesSet, which runs right after this
+            liquibase.setShouldRun(false);
+            if (mode == Mode.DEFER) {
+                deferred.add(liquibase);
+            } else {
+                log.info("Skipping Liquibase migrations (startup.migrations=skip)");
+            }
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        if (mode != Mode.DEFER || migration != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        migration = Mono.fromCallable(() -> {
+                    for (SpringLiquibase liquibase : deferred) {
+                        liquibase.setShouldRun(true);
+                        liquibase.afterPropertiesSet();
+                    }
+                    return deferred.size();
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(count -> {
+                    migrated = true;
+                    log.info("Deferred Liquibase migrations finished in {} ms",
+                            (System.nanoTime() - start) / 1_000_000);
+                }, e -> {
+                    failure = e.getMessage();
+                    log.error("Deferred Liquibase migrations failed", e);
+                });
+    }
+
+    public boolean isMigrated() {
+        return migrated;
+    }
+
+    /**
+     * Why the deferred migrations failed, {@code null} while they run or after they succeeded.
+     */
+    public String failure() {
+        return failure;
+    }
+
+    @Override
+    public void destroy() {
+        Disposable current = migration;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    enum Mode {
+        RUN, SKIP, DEFER;
+
+        static Mode parse(String value) {
+            try {
+                return valueOf(value.strip().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown startup.migrations " + value + ", expected run, skip or defer");
+            }
+        }
+    }
+}
@@ -1,18 +1,34 @@
 package com.execodex.app.configs;
 
+import com.execodex.app.metrics.S3ConnectionPoolMetrics;
+import com.execodex.app.metrics.S3OperationMetrics;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ReflectiveChannelFactory;
+import io.netty.channel.socket.SocketChannel;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import reactor.netty.http.HttpResources;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.retry.AwsRetryStrategy;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.retries.api.BackoffStrategy;
+import software.amazon.awssdk.retries.api.RetryStrategy;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.utils.SdkAutoCloseable;
 
 import java.net.URI;
+import java.util.function.Supplier;
 
 @Configuration
+@EnableConfigurationProperties({MinioHttpProperties.class, MinioReadProperties.class, AdmissionProperties.class,
+        CompressionProperties.class, ImageProperties.class})
 public class MinioConfig {
 
     @Value("${minio.internal-url}")
@@ -27,20 +43,33 @@ public class MinioConfig {
     @Value("${minio.secret-key}")
     private String secretKey;
 
+    // built on first use, see LazyClient
+    @Value("${startup.lazy:false}")
+    private boolean lazy;
+
     @Bean
-    public S3AsyncClient s3AsyncClient() {
-        return S3AsyncClient.builder()
+    public S3AsyncClient s3AsyncClient(MinioHttpProperties httpProperties,
+                                       S3ConnectionPoolMetrics poolMetrics,
+                                       S3OperationMetrics operationMetrics,
+                                       AdmissionControl admissionControl) {
+        return client(S3AsyncClient.class, () -> S3AsyncClient.builder()
                 .endpointOverride(URI.create(internalUrl))
                 .credentialsProvider(StaticCredentialsProvider.create(
                         AwsBasicCredentials.create(accessKey, secretKey)))
                 .region(Region.US_EAST_1) // MinIO typically doesn't care about region, but SDK requires it
                 .forcePathStyle(true) // Required for MinIO
-                .build();
+                .httpClientBuilder(nettyHttpClient(httpProperties))
+                .overrideConfiguration(config -> config
+                        .retryStrategy(retryStrategy(httpProperties))
+                        .addMetricPublisher(poolMetrics)
+                        .addExecutionInterceptor(operationMetrics)
+                        .addExecutionInterceptor(admissionControl))
+                .build());
     }
 
     @Bean
     public S3Presigner s3Presigner() {
-        return S3Presigner.builder()
+        return client(S3Presigner.class, () -> S3Presigner.builder()
                 .endpointOverride(URI.create(externalUrl))
                 .credentialsProvider(StaticCredentialsProvider.create(
                         AwsBasicCredentials.create(accessKey, secretKey)))
@@ -48,6 +77,48 @@ public class MinioConfig {
                 .serviceConfiguration(S3Configuration.builder()
                         .pathStyleAccessEnabled(true)
                         .build())
+                .build());
+    }
+
+    private <T extends SdkAutoCloseable> T client(Class<T> type, Supplier<T> factory) {
+        return lazy ? LazyClient.of(type, factory) : factory.get();
+    }
+
+    // full jitter spreads retries of calls that failed together; the token bucket is the retry budget
+    private static RetryStrategy retryStrategy(MinioHttpProperties properties) {
+        BackoffStrategy backoff = BackoffStrategy.exponentialDelay(properties.retryBaseDelay(), properties.retryMaxDelay());
+        return AwsRetryStrategy.standardRetryStrategy().toBuilder()
+                .maxAttempts(Math.max(properties.maxAttempts(), 1))
+                .backoffStrategy(backoff)
+                .throttlingBackoffStrategy(backoff)
+                .circuitBreakerEnabled(properties.retryBudget())
                 .build();
     }
+
+    private static NettyNioAsyncHttpClient.Builder nettyHttpClient(MinioHttpProperties properties) {
+        NettyNioAsyncHttpClient.Builder builder = NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(properties.maxConcurrency())
+                .maxPendingConnectionAcquires(properties.maxPendingAcquires())
+                .connectionAcquisitionTimeout(properties.acquireTimeout())
+                .connectionTimeout(properties.connectTimeout())
+                .readTimeout(properties.readTimeout())
+                .writeTimeout(properties.writeTimeout())
+                .connectionMaxIdleTime(properties.maxIdleTime())
+                .tcpKeepAlive(properties.tcpKeepAlive());
+        if (properties.timeToLive() != null) {
+            builder.connectionTimeToLive(properties.timeToLive());
+        }
+
+        if (properties.shareEventLoop()) {
+            // The global Reactor Netty loops are the ones the WebFlux server runs on; the SDK does not close
+            // an event loop group it was given.
+            var loopResources = HttpResources.get();
+            EventLoopGroup eventLoopGroup = loopResources.onServer(true);
+            Class<? extends SocketChannel> channelType = loopResources.onChannelClass(SocketChannel.class, eventLoopGroup);
+            builder.eventLoopGroup(SdkEventLoopGroup.create(eventLoopGroup, new ReflectiveChannelFactory<>(channelType)));
+        } else if (properties.eventLoopThreads() > 0) {
+            builder.eventLoopGroupBuilder(SdkEventLoopGroup.builder().numberOfThreads(properties.eventLoopThreads()));
+        }
+        return builder;
+    }
 }
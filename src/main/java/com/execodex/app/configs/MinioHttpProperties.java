@@ -0,0 +1,40 @@
+package com.execodex.app.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Netty transport and retry settings of the {@code S3AsyncClient}. Transport defaults match the SDK defaults.
+ *
+ * @param maxConcurrency     maximum number of open connections to MinIO
+ * @param maxPendingAcquires maximum number of requests waiting for a connection
+ * @param acquireTimeout     how long a request may wait for a connection
+ * @param timeToLive         maximum lifetime of a pooled connection, unlimited when not set
+ * @param shareEventLoop     run the client on the Reactor Netty event loop used by WebFlux
+ * @param eventLoopThreads   size of the client's own event loop group, SDK default when 0
+ * @param maxAttempts        attempts per call including the first, with full-jitter exponential backoff
+ * @param retryBaseDelay     base delay of the retry backoff
+ * @param retryMaxDelay      maximum delay between two attempts
+ * @param retryBudget        share retries through the SDK token bucket, which stops retrying when most calls fail
+ */
+@ConfigurationProperties("minio.http")
+public record MinioHttpProperties(
+        @DefaultValue("50") int maxConcurrency,
+        @DefaultValue("10000") int maxPendingAcquires,
+        @DefaultValue("10s") Duration acquireTimeout,
+        @DefaultValue("2s") Duration connectTimeout,
+        @DefaultValue("30s") Duration readTimeout,
+        @DefaultValue("30s") Duration writeTimeout,
+        @DefaultValue("5s") Duration maxIdleTime,
+        Duration timeToLive,
+        @DefaultValue("false") boolean tcpKeepAlive,
+        @DefaultValue("false") boolean shareEventLoop,
+        @DefaultValue("0") int eventLoopThreads,
+        @DefaultValue("3") int maxAttempts,
+        @DefaultValue("25ms") Duration retryBaseDelay,
+        @DefaultValue("1s") Duration retryMaxDelay,
+        @DefaultValue("true") boolean retryBudget
+) {
+}
@@ -0,0 +1,28 @@
+package com.execodex.app.configs;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Tail-latency settings of idempotent MinIO reads ({@code HeadObject}, the first byte of {@code GetObject} and
+ * {@code ListObjectsV2} pages), see {@code HedgedReads}.
+ *
+ * @param attemptTimeout  how long a single attempt may take before the SDK retries it, unlimited when not set
+ * @param hedgeEnabled    send a second request when the first is slower than usual
+ * @param hedgePercentile latency percentile of recent reads after which the hedge is sent
+ * @param hedgeMinDelay   lower bound of the hedge delay
+ * @param hedgeMaxDelay   upper bound of the hedge delay
+ * @param hedgeMaxRatio   hedges allowed per read, so a slow MinIO is not hit with twice the load
+ */
+@ConfigurationProperties("minio.read")
+public record MinioReadProperties(
+        @DefaultValue("5s") Duration attemptTimeout,
+        @DefaultValue("true") boolean hedgeEnabled,
+        @DefaultValue("0.95") double hedgePercentile,
+        @DefaultValue("5ms") Duration hedgeMinDelay,
+        @DefaultValue("1s") Duration hedgeMaxDelay,
+        @DefaultValue("0.1") double hedgeMaxRatio
+) {
+}
@@ -0,0 +1,79 @@
+package com.execodex.app.configs;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.ReactiveHealthIndicator;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.MethodMetadata;
+import reactor.core.publisher.Mono;
+
+/**
+ * Fast-startup settings ({@code startup.*}): when migrations run (see {@link LiquibaseStartup}) and, with
+ * {@code startup.lazy}, which components are only created on first use. The S3 client and presigner are
+ * proxied in {@link MinioConfig}; the springdoc beans are marked lazy here, so the OpenAPI document and the
+ * Swagger UI are set up by the first request for them.
+ */
+@Configuration
+public class StartupConfig {
+
+    // Included in the readiness group, so with startup.migrations=defer traffic waits for the schema
+    @Bean
+    ReactiveHealthIndicator migrationsHealthIndicator(LiquibaseStartup liquibaseStartup) {
+        return () -> Mono.fromSupplier(() -> {
+            if (liquibaseStartup.isMigrated()) {
+                return Health.up().build();
+            }
+            String failure = liquibaseStartup.failure();
+            return failure != null
+                    ? Health.down().withDetail("error", failure).build()
+                    : Health.outOfService().withDetail("reason", "Deferred migrations still running").build();
+        });
+    }
+
+    // static, as it post-processes bean definitions before this configuration is instantiated; under Spring AOT
+    // it runs at build time, so processAot is given startup.lazy (see build.gradle.kts)
+    @Bean
+    static BeanFactoryPostProcessor lazyOpenApi() {
+        return new LazyOpenApi();
+    }
+
+    static final class LazyOpenApi implements BeanFactoryPostProcessor, EnvironmentAware {
+
+        private boolean lazy;
+
+        @Override
+        public void setEnvironment(Environment environment) {
+            this.lazy = environment.getProperty("startup.lazy", Boolean.class, false);
+        }
+
+        @Override
+        public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) {
+            if (!lazy) {
+                return;
+            }
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                if (source(definition).startsWith("org.springdoc.")) {
+                    definition.setLazyInit(true);
+                }
+            }
+        }
+
+        private static String source(BeanDefinition definition) {
+            if (definition instanceof AnnotatedBeanDefinition annotated) {
+                MethodMetadata factoryMethod = annotated.getFactoryMethodMetadata();
+                if (factoryMethod != null) {
+                    return factoryMethod.getDeclaringClassName();
+                }
+            }
+            String className = definition.getBeanClassName();
+            return className != null ? className : "";
+        }
+    }
+}
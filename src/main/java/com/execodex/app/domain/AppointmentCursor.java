@@ -0,0 +1,40 @@
+package com.execodex.app.domain;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position in the appointment keyset order {@code (start_date NULLS LAST, id)}, exchanged with clients as an
+ * opaque token.
+ */
+public record AppointmentCursor(
+        LocalDateTime startDate,
+        long id
+) {
+
+    public static AppointmentCursor of(Appointment appointment) {
+        return new AppointmentCursor(appointment.startDate(), appointment.id());
+    }
+
+    public String encode() {
+        String value = (startDate == null ? "" : startDate.toString()) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not produced by {@link #encode()}
+     */
+    public static AppointmentCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('|');
+            String startDate = value.substring(0, separator);
+            return new AppointmentCursor(
+                    startDate.isEmpty() ? null : LocalDateTime.parse(startDate),
+                    Long.parseLong(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+}
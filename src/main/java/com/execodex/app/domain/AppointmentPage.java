@@ -0,0 +1,9 @@
+package com.execodex.app.domain;
+
+import java.util.List;
+
+public record AppointmentPage(
+        List<Appointment> items,
+        String nextCursor
+) {
+}
@@ -0,0 +1,29 @@
+package com.execodex.app.domain;
+
+import java.time.LocalDateTime;
+
+/**
+ * Half-open time window {@code [from, to)} for appointment range queries.
+ */
+public record AppointmentWindow(
+        LocalDateTime from,
+        LocalDateTime to,
+        Match match
+) {
+
+    public enum Match {
+        /** Appointments whose start date lies in the window. */
+        STARTS,
+        /** Appointments whose {@code [startDate, startDate + duration)} intersects the window. */
+        OVERLAPS
+    }
+
+    public AppointmentWindow {
+        if (from == null || to == null || match == null) {
+            throw new IllegalArgumentException("from, to and match are required");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+    }
+}
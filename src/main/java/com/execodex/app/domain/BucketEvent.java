@@ -0,0 +1,20 @@
+package com.execodex.app.domain;
+
+import java.time.Instant;
+
+/**
+ * A change of one object. {@code type} is {@code created} or {@code deleted}; {@code source} is {@code api} for
+ * changes made through this service and {@code minio} for changes reported by MinIO's webhook.
+ * {@code sequence} increases across all buckets and is the position a feed resumes after.
+ */
+public record BucketEvent(
+        long sequence,
+        String bucket,
+        String key,
+        String type,
+        Long size,
+        String eTag,
+        String source,
+        Instant at
+) {
+}
@@ -0,0 +1,9 @@
+package com.execodex.app.domain;
+
+import java.util.List;
+
+public record BulkDeleteRequest(
+        List<String> keys,
+        String prefix
+) {
+}
@@ -0,0 +1,13 @@
+package com.execodex.app.domain;
+
+import java.util.List;
+
+/**
+ * Objects to download as one ZIP archive: the given keys, or every object under {@code prefix}.
+ */
+public record BundleRequest(
+        List<String> keys,
+        String prefix,
+        String name
+) {
+}
@@ -0,0 +1,8 @@
+package com.execodex.app.domain;
+
+public record DeleteResult(
+        String key,
+        boolean deleted,
+        String error
+) {
+}
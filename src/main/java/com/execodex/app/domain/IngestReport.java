@@ -0,0 +1,21 @@
+package com.execodex.app.domain;
+
+import java.util.List;
+
+/**
+ * Outcome of a bulk appointment import. {@code errors} holds the first rejected rows only; {@code rejected}
+ * counts all of them.
+ */
+public record IngestReport(
+        long received,
+        long inserted,
+        long rejected,
+        List<IngestError> errors
+) {
+
+    public record IngestError(
+            long line,
+            String message
+    ) {
+    }
+}
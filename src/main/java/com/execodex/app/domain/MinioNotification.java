@@ -0,0 +1,26 @@
+package com.execodex.app.domain;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * The parts of a MinIO bucket notification (S3 event format) used by the change feed. Object keys arrive
+ * URL-encoded.
+ */
+public record MinioNotification(
+        @JsonProperty("Records") List<Record> records
+) {
+
+    public record Record(String eventName, String eventTime, S3 s3) {
+    }
+
+    public record S3(Bucket bucket, S3Object object) {
+    }
+
+    public record Bucket(String name) {
+    }
+
+    public record S3Object(String key, Long size, String eTag) {
+    }
+}
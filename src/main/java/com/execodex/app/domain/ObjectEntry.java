@@ -0,0 +1,16 @@
+package com.execodex.app.domain;
+
+import java.time.Instant;
+
+/**
+ * One line of an object listing. Common prefixes (when a delimiter is used) are returned with
+ * {@code prefix = true} and without size, ETag or last-modified.
+ */
+public record ObjectEntry(
+        String key,
+        Long size,
+        String eTag,
+        Instant lastModified,
+        boolean prefix
+) {
+}
@@ -0,0 +1,17 @@
+package com.execodex.app.domain;
+
+import java.time.Instant;
+import java.util.List;
+
+public record ObjectMetadata(
+        String bucket,
+        String key,
+        long size,
+        String eTag,
+        String contentType,
+        List<String> tags,
+        String uploader,
+        Instant createdAt,
+        Instant updatedAt
+) {
+}
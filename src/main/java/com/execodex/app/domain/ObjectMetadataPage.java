@@ -0,0 +1,9 @@
+package com.execodex.app.domain;
+
+import java.util.List;
+
+public record ObjectMetadataPage(
+        List<ObjectMetadata> items,
+        String nextCursor
+) {
+}
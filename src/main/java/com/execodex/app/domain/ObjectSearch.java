@@ -0,0 +1,18 @@
+package com.execodex.app.domain;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Filters of a metadata search; {@code null} or empty filters are ignored. {@code tags} must all match and
+ * {@code from}/{@code to} bound the last upload time as {@code [from, to)}.
+ */
+public record ObjectSearch(
+        String bucket,
+        List<String> tags,
+        String prefix,
+        String uploader,
+        Instant from,
+        Instant to
+) {
+}
@@ -0,0 +1,10 @@
+package com.execodex.app.domain;
+
+import java.time.Duration;
+import java.util.List;
+
+public record PresignBatchRequest(
+        List<String> keys,
+        Duration duration
+) {
+}
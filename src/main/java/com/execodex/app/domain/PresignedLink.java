@@ -0,0 +1,10 @@
+package com.execodex.app.domain;
+
+import java.time.Instant;
+
+public record PresignedLink(
+        String key,
+        String url,
+        Instant expiresAt
+) {
+}
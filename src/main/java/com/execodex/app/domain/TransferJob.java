@@ -0,0 +1,23 @@
+package com.execodex.app.domain;
+
+import java.time.Instant;
+import java.util.UUID;
+
+public record TransferJob(
+        UUID id,
+        String sourceBucket,
+        String sourcePrefix,
+        String targetBucket,
+        String targetPrefix,
+        boolean deleteSource,
+        String state,
+        String checkpoint,
+        long copied,
+        long deleted,
+        long failed,
+        long bytes,
+        String error,
+        Instant createdAt,
+        Instant updatedAt
+) {
+}
@@ -0,0 +1,19 @@
+package com.execodex.app.domain;
+
+import java.util.UUID;
+
+/**
+ * Progress of a transfer job after one object was copied, failed or deleted ({@code key} is {@code null}
+ * for job-level events). The counters are totals for the whole job.
+ */
+public record TransferProgress(
+        UUID jobId,
+        String state,
+        String key,
+        long copied,
+        long deleted,
+        long failed,
+        long bytes,
+        String error
+) {
+}
@@ -0,0 +1,12 @@
+package com.execodex.app.domain;
+
+/**
+ * Copies or renames the objects under {@code sourcePrefix} (the whole bucket when empty) to
+ * {@code targetPrefix} in {@code targetBucket} (the source bucket when empty).
+ */
+public record TransferRequest(
+        String targetBucket,
+        String sourcePrefix,
+        String targetPrefix
+) {
+}
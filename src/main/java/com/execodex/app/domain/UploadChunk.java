@@ -0,0 +1,7 @@
+package com.execodex.app.domain;
+
+public record UploadChunk(
+        long offset,
+        long size
+) {
+}
@@ -0,0 +1,24 @@
+package com.execodex.app.domain;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * State of a resumable upload. {@code chunks} are the chunks received so far, by offset; a client resuming
+ * an upload sends the ones that are missing.
+ */
+public record UploadSession(
+        UUID id,
+        String bucket,
+        String key,
+        String contentType,
+        Long size,
+        long chunkSize,
+        String state,
+        long receivedBytes,
+        List<UploadChunk> chunks,
+        Instant createdAt,
+        Instant updatedAt
+) {
+}
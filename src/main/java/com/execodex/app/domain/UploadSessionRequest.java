@@ -0,0 +1,13 @@
+package com.execodex.app.domain;
+
+/**
+ * Starts a resumable upload of {@code key}. {@code size} is optional; when given, the upload can only be
+ * completed with exactly that many bytes. {@code chunkSize} defaults to the configured chunk size.
+ */
+public record UploadSessionRequest(
+        String key,
+        Long size,
+        String contentType,
+        Long chunkSize
+) {
+}
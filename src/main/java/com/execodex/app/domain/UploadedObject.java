@@ -0,0 +1,10 @@
+package com.execodex.app.domain;
+
+public record UploadedObject(
+        String bucket,
+        String key,
+        String contentType,
+        long size,
+        String eTag
+) {
+}
@@ -1,39 +1,125 @@
 package com.execodex.app.handler;
 
+import com.execodex.app.domain.BucketEvent;
+import com.execodex.app.domain.BulkDeleteRequest;
+import com.execodex.app.domain.BundleRequest;
+import com.execodex.app.domain.DeleteResult;
+import com.execodex.app.domain.MinioNotification;
+import com.execodex.app.domain.ObjectEntry;
+import com.execodex.app.domain.ObjectSearch;
+import com.execodex.app.domain.PresignBatchRequest;
+import com.execodex.app.domain.PresignedLink;
+import com.execodex.app.domain.TransferProgress;
+import com.execodex.app.domain.TransferRequest;
+import com.execodex.app.domain.UploadSessionRequest;
+import com.execodex.app.domain.UploadedObject;
+import com.execodex.app.service.BucketEventService;
+import com.execodex.app.service.BulkDeleteService;
+import com.execodex.app.service.CompressionService;
+import com.execodex.app.service.ContentStore;
+import com.execodex.app.service.DiskObjectCache;
+import com.execodex.app.service.ImageDerivativeService;
+import com.execodex.app.service.MultipartUploadService;
+import com.execodex.app.service.ObjectMetadataService;
+import com.execodex.app.service.ObjectDownloadService;
+import com.execodex.app.service.ObjectListingService;
+import com.execodex.app.service.PresignService;
+import com.execodex.app.service.ResumableUploadService;
+import com.execodex.app.service.TransferService;
+import com.execodex.app.service.ZipBundleService;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.codec.multipart.FilePartEvent;
+import org.springframework.http.codec.multipart.PartEvent;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import software.amazon.awssdk.awscore.presigner.PresignedRequest;
-import software.amazon.awssdk.core.async.AsyncRequestBody;
-import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.*;
-import software.amazon.awssdk.services.s3.presigner.S3Presigner;
-import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
-import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 public class BucketHandler {
 
+    private static final int MAX_BATCH_KEYS = 1000;
+    private static final Duration DEFAULT_LINK_DURATION = Duration.ofMinutes(10);
+
     private final S3AsyncClient s3AsyncClient;
-    private final S3Presigner s3Presigner;
+    private final PresignService presignService;
+    private final MultipartUploadService multipartUploadService;
+    private final ObjectDownloadService objectDownloadService;
+    private final ObjectListingService objectListingService;
+    private final DiskObjectCache diskObjectCache;
+    private final BulkDeleteService bulkDeleteService;
+    private final ContentStore contentStore;
+    private final ObjectMetadataService objectMetadataService;
+    private final ZipBundleService zipBundleService;
+    private final TransferService transferService;
+    private final ResumableUploadService resumableUploadService;
+    private final CompressionService compressionService;
+    private final BucketEventService bucketEventService;
+    private final ImageDerivativeService imageDerivativeService;
     private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
 
-    public BucketHandler(S3AsyncClient s3AsyncClient, S3Presigner s3Presigner) {
+    public BucketHandler(S3AsyncClient s3AsyncClient, PresignService presignService,
+                         MultipartUploadService multipartUploadService,
+                         ObjectDownloadService objectDownloadService,
+                         ObjectListingService objectListingService,
+                         DiskObjectCache diskObjectCache,
+                         BulkDeleteService bulkDeleteService,
+                         ContentStore contentStore,
+                         ObjectMetadataService objectMetadataService,
+                         ZipBundleService zipBundleService,
+                         TransferService transferService,
+                         ResumableUploadService resumableUploadService,
+                         CompressionService compressionService,
+                         BucketEventService bucketEventService,
+                         ImageDerivativeService imageDerivativeService) {
         this.s3AsyncClient = s3AsyncClient;
-        this.s3Presigner = s3Presigner;
+        this.presignService = presignService;
+        this.multipartUploadService = multipartUploadService;
+        this.objectDownloadService = objectDownloadService;
+        this.objectListingService = objectListingService;
+        this.diskObjectCache = diskObjectCache;
+        this.bulkDeleteService = bulkDeleteService;
+        this.contentStore = contentStore;
+        this.objectMetadataService = objectMetadataService;
+        this.zipBundleService = zipBundleService;
+        this.transferService = transferService;
+        this.resumableUploadService = resumableUploadService;
+        this.compressionService = compressionService;
+        this.bucketEventService = bucketEventService;
+        this.imageDerivativeService = imageDerivativeService;
     }
 
     public Mono<ServerResponse> createBucket(ServerRequest serverRequest) {
@@ -60,34 +146,38 @@ public class BucketHandler {
 
     public Mono<ServerResponse> uploadFile(ServerRequest serverRequest) {
         String bucket = serverRequest.pathVariable("bucket");
-        List<String> tag = serverRequest.headers().header("X-tag");
-        //we will put in the DB later
-
-        return serverRequest.multipartData()
-                .flatMapMany(parts -> Flux.fromIterable(parts.get("file")))
-                .cast(FilePart.class)
-                .flatMap(filePart -> DataBufferUtils.join(filePart.content())
-                        .flatMap(dataBuffer -> {
-                            String filename = filePart.filename();
-                            long contentLength = dataBuffer.readableByteCount();
-
-                            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                                    .bucket(bucket)
-                                    .key(filename)
-                                    .contentLength(contentLength)
-                                    .contentType(Optional.ofNullable(filePart.headers().getContentType())
-                                            .map(MediaType::toString)
-                                            .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE))
-                                    .build();
-
-                            AsyncRequestBody asyncRequestBody = AsyncRequestBody.fromByteBuffer(dataBuffer.asByteBuffer());
-
-                            return Mono.fromFuture(s3AsyncClient.putObject(putObjectRequest, asyncRequestBody))
-                                    .doFinally(signalType -> DataBufferUtils.release(dataBuffer))
-                                    .thenReturn(filename);
+        List<String> tags = tags(serverRequest);
+
+        return uploader(serverRequest).flatMap(uploader -> serverRequest.body(BodyExtractors.toPartEvents())
+                        .windowUntil(PartEvent::isLast)
+                        .concatMap(partEvents -> partEvents.switchOnFirst((signal, events) -> {
+                            if (signal.get() instanceof FilePartEvent fileEvent && "file".equals(fileEvent.name())) {
+                                String contentType = Optional.ofNullable(fileEvent.headers().getContentType())
+                                        .map(MediaType::toString)
+                                        .orElse(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+                                Flux<DataBuffer> content = events.map(PartEvent::content);
+                                CompressionService.Codec codec = compressionService.codecFor(bucket, contentType);
+                                String contentEncoding = null;
+                                if (codec != null) {
+                                    content = compressionService.compress(codec, content);
+                                    contentEncoding = codec.encoding();
+                                }
+                                return contentStore.isEnabled()
+                                        ? contentStore.upload(bucket, fileEvent.filename(), contentType, contentEncoding, content)
+                                        : multipartUploadService.upload(bucket, fileEvent.filename(), contentType, contentEncoding, content);
+                            }
+                            return events.doOnNext(event -> DataBufferUtils.release(event.content()))
+                                    .then(Mono.<UploadedObject>empty());
                         }))
-                .collectList()
+                        .concatMap(object -> objectMetadataService.record(object, tags, uploader.orElse(null))
+                                .then(bucketEventService.created(object))
+                                .thenReturn(object.key()))
+                        .collectList())
                 .flatMap(filenames -> ServerResponse.ok().bodyValue("Uploaded files: " + String.join(", ", filenames)))
+                .onErrorResume(IllegalArgumentException.class, e -> ServerResponse.badRequest().bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(RejectedExecutionException.class, e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .bodyValue("Error: " + e.getMessage()))
                 .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
     }
 
@@ -95,24 +185,221 @@ public class BucketHandler {
         String bucket = serverRequest.pathVariable("bucket");
         String filename = serverRequest.pathVariable("filename");
 
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(bucket)
-                .key(filename)
-                .build();
+        return contentStore.resolve(bucket, filename)
+                .flatMap(objectKey -> objectDownloadService.head(bucket, objectKey)
+                        .flatMap(head -> serverRequest.checkNotModified(head.lastModified(), head.eTag())
+                                .switchIfEmpty(Mono.defer(() -> writeObject(serverRequest, bucket, objectKey, filename, head)))))
+                .onErrorResume(e -> e instanceof S3Exception s3 && s3.statusCode() == 404,
+                        e -> ServerResponse.status(404).bodyValue("File not found: " + e.getMessage()))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
 
-        return Mono.fromFuture(s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toPublisher()))
-                .flatMap(responsePublisher -> {
-                    GetObjectResponse getObjectResponse = responsePublisher.response();
-                    Flux<DataBuffer> dataBufferFlux = Flux.from(responsePublisher)
-                            .map(bufferFactory::wrap);
-
-                    return ServerResponse.ok()
-                            .contentType(MediaType.parseMediaType(getObjectResponse.contentType()))
-                            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                            .contentLength(getObjectResponse.contentLength())
-                            .body(dataBufferFlux, DataBuffer.class);
+    /**
+     * A resized or re-encoded copy of an image: {@code w} and/or {@code h}, {@code fit} (contain, cover or fill),
+     * {@code format} (jpeg or png) and {@code q}. The derivative is generated on the first request and stored in
+     * MinIO; it is streamed like a download, or with {@code redirect=true} answered by a redirect to a presigned
+     * link.
+     */
+    public Mono<ServerResponse> getImage(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        String filename = serverRequest.pathVariable("filename");
+        ImageDerivativeService.Spec spec;
+        try {
+            spec = imageDerivativeService.spec(serverRequest.queryParam("w").orElse(null),
+                    serverRequest.queryParam("h").orElse(null),
+                    serverRequest.queryParam("fit").orElse(null),
+                    serverRequest.queryParam("format").orElse(null),
+                    serverRequest.queryParam("q").orElse(null));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Error: " + e.getMessage());
+        }
+        boolean redirect = serverRequest.queryParam("redirect").map(Boolean::parseBoolean).orElse(false);
+
+        return contentStore.resolve(bucket, filename)
+                .flatMap(objectKey -> imageDerivativeService.derivative(bucket, objectKey, spec))
+                .flatMap(derivative -> {
+                    HeadObjectResponse head = derivative.head();
+                    if (redirect) {
+                        PresignedLink link = presignService.presign(bucket, derivative.key(), DEFAULT_LINK_DURATION);
+                        return ServerResponse.temporaryRedirect(URI.create(link.url())).build();
+                    }
+                    return serverRequest.checkNotModified(head.lastModified(), head.eTag())
+                            .switchIfEmpty(Mono.defer(() -> writeObject(serverRequest, bucket, derivative.key(),
+                                    derivative.filename(filename), head)));
                 })
-                .onErrorResume(e -> ServerResponse.status(404).bodyValue("File not found: " + e.getMessage()));
+                .onErrorResume(IllegalArgumentException.class,
+                        e -> ServerResponse.badRequest().bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(e -> e instanceof S3Exception s3 && s3.statusCode() == 404,
+                        e -> ServerResponse.status(404).bodyValue("File not found: " + e.getMessage()))
+                .onErrorResume(RejectedExecutionException.class, e -> ServerResponse.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .bodyValue("Error: too many images being resized"))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    /**
+     * @param objectKey the MinIO key holding the content
+     * @param filename  the name the client asked for, used in {@code Content-Disposition}
+     */
+    private Mono<ServerResponse> writeObject(ServerRequest serverRequest, String bucket, String objectKey,
+                                             String filename, HeadObjectResponse head) {
+        MediaType contentType = Optional.ofNullable(head.contentType())
+                .map(MediaType::parseMediaType)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM);
+
+        CompressionService.Codec codec = CompressionService.Codec.of(head);
+        if (codec != null) {
+            return writeCompressedObject(serverRequest, bucket, objectKey, filename, head, contentType, codec);
+        }
+
+        if (diskObjectCache.isCacheable(head)) {
+            // a hit is served as a file resource: ranges are handled by the resource writer and sent with
+            // zero-copy; a miss is streamed from MinIO while the cache fills in the background
+            return diskObjectCache.get(bucket, objectKey, head)
+                    .flatMap(lease -> objectResponse(HttpStatus.OK, filename, head)
+                            .contentType(contentType)
+                            .body(leased(lease))
+                            .doOnError(e -> lease.release()))
+                    .switchIfEmpty(Mono.defer(() ->
+                            streamObject(serverRequest, bucket, objectKey, filename, head, contentType)));
+        }
+        return streamObject(serverRequest, bucket, objectKey, filename, head, contentType);
+    }
+
+    // the cached file stays in place until it has been written out
+    private static BodyInserter<Resource, ReactiveHttpOutputMessage> leased(DiskObjectCache.Lease lease) {
+        BodyInserter<Resource, ReactiveHttpOutputMessage> file =
+                BodyInserters.fromResource(new FileSystemResource(lease.path()));
+        return (message, context) -> file.insert(message, context).doFinally(signal -> lease.release());
+    }
+
+    private Mono<ServerResponse> streamObject(ServerRequest serverRequest, String bucket, String objectKey,
+                                              String filename, HeadObjectResponse head, MediaType contentType) {
+        long length = head.contentLength();
+        List<HttpRange> ranges = requestedRanges(serverRequest);
+
+        if (ranges.isEmpty()) {
+            return objectResponse(HttpStatus.OK, filename, head)
+                    .contentType(contentType)
+                    .contentLength(length)
+                    .body(objectBody(bucket, objectKey, head, new ByteSpan(0, length - 1)), DataBuffer.class);
+        }
+
+        List<ByteSpan> spans = ByteSpan.resolve(ranges, length);
+        if (spans.isEmpty()) {
+            return ServerResponse.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + length)
+                    .build();
+        }
+
+        if (spans.size() == 1) {
+            ByteSpan span = spans.getFirst();
+            return objectResponse(HttpStatus.PARTIAL_CONTENT, filename, head)
+                    .contentType(contentType)
+                    .contentLength(span.length())
+                    .header(HttpHeaders.CONTENT_RANGE, span.contentRange(length))
+                    .body(objectBody(bucket, objectKey, head, span), DataBuffer.class);
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        Flux<DataBuffer> body = Flux.fromIterable(spans)
+                .concatMap(span -> Flux.concat(
+                        Mono.fromSupplier(() -> asciiBuffer("\r\n--" + boundary
+                                + "\r\n" + HttpHeaders.CONTENT_TYPE + ": " + contentType
+                                + "\r\n" + HttpHeaders.CONTENT_RANGE + ": " + span.contentRange(length)
+                                + "\r\n\r\n")),
+                        objectBody(bucket, objectKey, head, span)))
+                .concatWith(Mono.fromSupplier(() -> asciiBuffer("\r\n--" + boundary + "--\r\n")));
+
+        return objectResponse(HttpStatus.PARTIAL_CONTENT, filename, head)
+                .contentType(MediaType.parseMediaType("multipart/byteranges; boundary=" + boundary))
+                .body(body, DataBuffer.class);
+    }
+
+    /**
+     * Objects stored compressed are sent whole, ignoring {@code Range}: as they are when the client accepts their
+     * encoding, otherwise decompressed on the fly, without a length and with a weak ETag.
+     */
+    private Mono<ServerResponse> writeCompressedObject(ServerRequest serverRequest, String bucket, String objectKey,
+                                                       String filename, HeadObjectResponse head, MediaType contentType,
+                                                       CompressionService.Codec codec) {
+        Flux<DataBuffer> stored = objectBody(bucket, objectKey, head, new ByteSpan(0, head.contentLength() - 1));
+        ServerResponse.BodyBuilder response = objectResponse(HttpStatus.OK, filename, head)
+                .contentType(contentType)
+                .headers(headers -> {
+                    headers.set(HttpHeaders.ACCEPT_RANGES, "none");
+                    headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                });
+
+        if (CompressionService.accepts(serverRequest.headers().header(HttpHeaders.ACCEPT_ENCODING), codec)) {
+            return response
+                    .header(HttpHeaders.CONTENT_ENCODING, codec.encoding())
+                    .contentLength(head.contentLength())
+                    .body(stored, DataBuffer.class);
+        }
+        return response
+                .eTag("W/" + head.eTag())
+                .body(compressionService.decompress(codec, stored), DataBuffer.class);
+    }
+
+    private ServerResponse.BodyBuilder objectResponse(HttpStatus status, String filename, HeadObjectResponse head) {
+        return ServerResponse.status(status)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .eTag(head.eTag())
+                .lastModified(head.lastModified());
+    }
+
+    private Flux<DataBuffer> objectBody(String bucket, String objectKey, HeadObjectResponse head, ByteSpan span) {
+        return objectDownloadService.fetch(bucket, objectKey, head.eTag(), span.start(), span.end())
+                .map(bufferFactory::wrap);
+    }
+
+    private DataBuffer asciiBuffer(String value) {
+        return bufferFactory.wrap(value.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static List<HttpRange> requestedRanges(ServerRequest serverRequest) {
+        try {
+            return serverRequest.headers().range();
+        } catch (IllegalArgumentException e) {
+            // RFC 9110: an invalid Range header is ignored and the full representation is served
+            return List.of();
+        }
+    }
+
+    /**
+     * Streams a ZIP of the objects named by repeated {@code key} query parameters, or of everything under
+     * {@code prefix}. {@code POST} takes the same selection as a {@link BundleRequest} body.
+     */
+    public Mono<ServerResponse> downloadZip(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        Mono<BundleRequest> request = serverRequest.method() == HttpMethod.POST
+                ? serverRequest.bodyToMono(BundleRequest.class)
+                : Mono.just(new BundleRequest(serverRequest.queryParams().get("key"),
+                serverRequest.queryParam("prefix").orElse(null),
+                serverRequest.queryParam("name").orElse(null)));
+
+        return request.flatMap(bundle -> {
+            List<String> keys = Optional.ofNullable(bundle.keys()).orElse(List.of());
+            if (keys.isEmpty() == (bundle.prefix() == null)) {
+                return ServerResponse.badRequest().bodyValue("Error: give either keys or a prefix");
+            }
+            if (keys.size() > MAX_BATCH_KEYS) {
+                return ServerResponse.badRequest().bodyValue("Error: at most " + MAX_BATCH_KEYS + " keys per request");
+            }
+            Flux<DataBuffer> archive = keys.isEmpty()
+                    ? zipBundleService.bundlePrefix(bucket, bundle.prefix())
+                    : zipBundleService.bundle(bucket, Flux.fromIterable(keys));
+            String filename = Optional.ofNullable(bundle.name()).filter(StringUtils::hasText).orElse(bucket) + ".zip";
+            return ServerResponse.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename(filename, StandardCharsets.UTF_8)
+                            .build()
+                            .toString())
+                    .body(archive, DataBuffer.class);
+        }).onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
     }
 
     public Mono<ServerResponse> deleteFile(ServerRequest serverRequest) {
@@ -122,28 +409,108 @@ public class BucketHandler {
                 .bucket(bucket)
                 .key(filename)
                 .build();
-        return Mono.fromFuture(s3AsyncClient.deleteObject(deleteObjectRequest))
-                .flatMap(responsePublisher -> ServerResponse.accepted().build())
+        if (contentStore.isBlobKey(filename)) {
+            return ServerResponse.badRequest().bodyValue("Error: deduplicated content is deleted with its references");
+        }
+        // a content reference only drops its blob once no other key refers to it
+        return contentStore.release(bucket, List.of(filename))
+                .hasElements()
+                .flatMap(released -> released
+                        ? Mono.empty()
+                        : Mono.fromFuture(() -> s3AsyncClient.deleteObject(deleteObjectRequest)).then())
+                .then(objectMetadataService.remove(bucket, List.of(filename)))
+                .then(bucketEventService.deleted(bucket, List.of(filename)))
+                .then(ServerResponse.accepted().build())
                 .onErrorResume(e -> ServerResponse.status(404).bodyValue("File not found: " + e.getMessage()));
 
 
     }
 
+    public Mono<ServerResponse> deleteFiles(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        boolean keyPerLine = serverRequest.headers().contentType()
+                .filter(MediaType.TEXT_PLAIN::isCompatibleWith)
+                .isPresent();
+
+        if (keyPerLine) {
+            return deleteResults(serverRequest,
+                    bulkDeleteService.delete(bucket, serverRequest.bodyToFlux(String.class).filter(StringUtils::hasText)));
+        }
+        return serverRequest.bodyToMono(BulkDeleteRequest.class)
+                .flatMap(request -> {
+                    if (!StringUtils.hasText(request.prefix())) {
+                        return deleteResults(serverRequest, bulkDeleteService.delete(bucket,
+                                Flux.fromIterable(Optional.ofNullable(request.keys()).orElse(List.of()))));
+                    }
+                    // refused before the response starts streaming
+                    if (contentStore.isBlobKey(request.prefix())) {
+                        return ServerResponse.badRequest()
+                                .bodyValue("Error: prefix " + request.prefix() + " holds deduplicated content");
+                    }
+                    return deleteResults(serverRequest, bulkDeleteService.deletePrefix(bucket, request.prefix()));
+                })
+                .switchIfEmpty(Mono.defer(() -> deleteResults(serverRequest, Flux.empty())));
+    }
+
+    private static Mono<ServerResponse> deleteResults(ServerRequest serverRequest, Flux<DeleteResult> results) {
+        return ServerResponse.ok()
+                .contentType(streamingMediaType(serverRequest))
+                .body(results, DeleteResult.class);
+    }
+
     public Mono<ServerResponse> getAllFiles(ServerRequest serverRequest) {
         String bucket = serverRequest.pathVariable("bucket");
 
-        ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
-                .bucket(bucket)
-                .build();
+        Flux<String> keys = objectListingService.list(bucket, null, null, null, null)
+                .map(ObjectEntry::key);
 
-        return Mono.fromFuture(s3AsyncClient.listObjectsV2(listRequest))
-                .map(response -> response.contents().stream()
-                        .map(S3Object::key)
-                        .toList())
-                .flatMap(keys -> ServerResponse.ok().bodyValue(keys))
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(keys, String.class)
                 .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
     }
 
+    public Mono<ServerResponse> listObjects(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        Integer maxKeys;
+        try {
+            maxKeys = serverRequest.queryParam("maxKeys").map(Integer::valueOf).orElse(null);
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().bodyValue("Error: maxKeys must be a number");
+        }
+        if (maxKeys != null && maxKeys <= 0) {
+            return ServerResponse.badRequest().bodyValue("Error: maxKeys must be positive");
+        }
+
+        Flux<ObjectEntry> entries = objectListingService.list(bucket,
+                serverRequest.queryParam("prefix").orElse(null),
+                serverRequest.queryParam("delimiter").orElse(null),
+                serverRequest.queryParam("startAfter").orElse(null),
+                maxKeys);
+
+        return ServerResponse.ok()
+                .contentType(streamingMediaType(serverRequest))
+                .body(entries, ObjectEntry.class);
+    }
+
+    public Mono<ServerResponse> searchObjects(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        try {
+            ObjectSearch search = new ObjectSearch(bucket,
+                    serverRequest.queryParams().getOrDefault("tag", List.of()),
+                    serverRequest.queryParam("prefix").orElse(null),
+                    serverRequest.queryParam("uploader").orElse(null),
+                    serverRequest.queryParam("from").map(Instant::parse).orElse(null),
+                    serverRequest.queryParam("to").map(Instant::parse).orElse(null));
+            int pageSize = objectMetadataService.pageSize(serverRequest.queryParam("size").map(Integer::valueOf).orElse(null));
+            return objectMetadataService.search(search, serverRequest.queryParam("cursor").orElse(null), pageSize)
+                    .flatMap(page -> ServerResponse.ok().bodyValue(page))
+                    .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return ServerResponse.badRequest().bodyValue("Error: " + e.getMessage());
+        }
+    }
+
     public Mono<ServerResponse> getPresignedUrl(ServerRequest serverRequest) {
         String bucket = serverRequest.pathVariable("bucket");
         String filename = serverRequest.pathVariable("filename");
@@ -155,25 +522,278 @@ public class BucketHandler {
         }
         Duration durationValue = Duration.parse(duration);
 
+        return contentStore.resolve(bucket, filename)
+                .map(objectKey -> presignService.presign(bucket, objectKey, durationValue))
+                .map(PresignedLink::url)
+                .flatMap(url -> ServerResponse.ok().bodyValue(url))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
 
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                .bucket(bucket)
-                .key(filename)
-                .build();
+    public Mono<ServerResponse> getPresignedUrls(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
 
-        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                .signatureDuration(durationValue)
-                .getObjectRequest(getObjectRequest)
-                .build();
+        return serverRequest.bodyToMono(PresignBatchRequest.class)
+                .flatMap(batch -> {
+                    List<String> keys = Optional.ofNullable(batch.keys()).orElse(List.of());
+                    if (keys.size() > MAX_BATCH_KEYS) {
+                        return ServerResponse.badRequest()
+                                .bodyValue("Error: at most " + MAX_BATCH_KEYS + " keys per request");
+                    }
+                    Duration duration = Optional.ofNullable(batch.duration()).orElse(DEFAULT_LINK_DURATION);
+                    return Flux.fromIterable(keys)
+                            .flatMapSequential(key -> contentStore.resolve(bucket, key)
+                                    .map(objectKey -> presignService.presign(bucket, objectKey, duration))
+                                    .map(link -> new PresignedLink(key, link.url(), link.expiresAt())))
+                            .collectList()
+                            .flatMap(links -> ServerResponse.ok().bodyValue(links));
+                })
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    /**
+     * Tags from the {@code X-tag} header, which may be repeated or hold a comma-separated list.
+     */
+    private static List<String> tags(ServerRequest serverRequest) {
+        return serverRequest.headers().header("X-tag").stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::strip)
+                .filter(StringUtils::hasText)
+                .distinct()
+                .toList();
+    }
+
+    // the routes are public, so an upload only has an uploader when it carries a bearer token
+    private static Mono<Optional<String>> uploader(ServerRequest serverRequest) {
+        return serverRequest.principal()
+                .ofType(JwtAuthenticationToken.class)
+                .map(token -> Optional.ofNullable(token.getToken().getClaimAsString("preferred_username"))
+                        .orElse(token.getName()))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    /**
+     * Copies a bucket or prefix server-side and streams the job's progress. The job carries on when the
+     * client disconnects and can be followed again under the returned location.
+     */
+    public Mono<ServerResponse> copyObjects(ServerRequest serverRequest) {
+        return transfer(serverRequest, false);
+    }
+
+    /**
+     * Like {@link #copyObjects}, then deletes the sources once every copy is verified. Renaming a whole
+     * bucket to another bucket also deletes the source bucket.
+     */
+    public Mono<ServerResponse> renameObjects(ServerRequest serverRequest) {
+        return transfer(serverRequest, true);
+    }
+
+    public Mono<ServerResponse> getTransfer(ServerRequest serverRequest) {
+        UUID id;
+        try {
+            id = UUID.fromString(serverRequest.pathVariable("id"));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Error: invalid transfer id");
+        }
+        List<MediaType> accept = serverRequest.headers().accept();
+        if (accept.contains(MediaType.TEXT_EVENT_STREAM) || accept.contains(MediaType.APPLICATION_NDJSON)) {
+            return ServerResponse.ok()
+                    .contentType(streamingMediaType(serverRequest))
+                    .body(transferService.progress(id), TransferProgress.class);
+        }
+        return transferService.find(id)
+                .flatMap(job -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(job))
+                .switchIfEmpty(ServerResponse.notFound().build())
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    public Mono<ServerResponse> resumeTransfer(ServerRequest serverRequest) {
+        UUID id;
+        try {
+            id = UUID.fromString(serverRequest.pathVariable("id"));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Error: invalid transfer id");
+        }
+        return transferService.resume(id)
+                .flatMap(job -> ServerResponse.accepted()
+                        .contentType(streamingMediaType(serverRequest))
+                        .body(transferService.progress(job.id()), TransferProgress.class))
+                .onErrorResume(NoSuchElementException.class, e -> ServerResponse.status(404).bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(IllegalStateException.class, e -> ServerResponse.status(409).bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    private Mono<ServerResponse> transfer(ServerRequest serverRequest, boolean deleteSource) {
+        String bucket = serverRequest.pathVariable("bucket");
+
+        return serverRequest.bodyToMono(TransferRequest.class)
+                .defaultIfEmpty(new TransferRequest(null, null, null))
+                .flatMap(request -> transferService.start(bucket, request, deleteSource))
+                .flatMap(job -> ServerResponse.accepted()
+                        .location(serverRequest.uriBuilder().replacePath("/api/transfers/{id}").build(job.id()))
+                        .contentType(streamingMediaType(serverRequest))
+                        .body(transferService.progress(job.id()), TransferProgress.class))
+                .onErrorResume(IllegalArgumentException.class, e -> ServerResponse.badRequest().bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(IllegalStateException.class, e -> ServerResponse.status(409).bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    /**
+     * Starts a resumable upload; the response's location is where its chunks are sent.
+     */
+    public Mono<ServerResponse> createUploadSession(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        List<String> tags = tags(serverRequest);
+
+        return serverRequest.bodyToMono(UploadSessionRequest.class)
+                .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("key is required")))
+                .zipWith(uploader(serverRequest))
+                .flatMap(request -> resumableUploadService.create(bucket, request.getT1(), tags,
+                        request.getT2().orElse(null)))
+                .flatMap(session -> ServerResponse.created(serverRequest.uriBuilder().path("/{id}").build(session.id()))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(session))
+                .onErrorResume(IllegalArgumentException.class, e -> ServerResponse.badRequest().bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    /**
+     * The session and the chunks received so far, so an interrupted client knows what to send again.
+     */
+    public Mono<ServerResponse> getUploadSession(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        UUID id;
+        try {
+            id = UUID.fromString(serverRequest.pathVariable("id"));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Error: invalid upload id");
+        }
+        return resumableUploadService.find(bucket, id)
+                .flatMap(session -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(session))
+                .switchIfEmpty(ServerResponse.notFound().build())
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    /**
+     * Streams the request body as the chunk at {@code ?offset=}; the body needs a {@code Content-Length}.
+     */
+    public Mono<ServerResponse> uploadChunk(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        UUID id;
+        long offset;
+        try {
+            id = UUID.fromString(serverRequest.pathVariable("id"));
+            offset = Long.parseLong(serverRequest.queryParam("offset").orElse(""));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Error: invalid upload id or offset");
+        }
+        long length = serverRequest.headers().contentLength().orElse(-1);
+        if (length < 0) {
+            return ServerResponse.status(HttpStatus.LENGTH_REQUIRED).bodyValue("Error: Content-Length is required");
+        }
 
-        return Mono.fromCallable(() -> s3Presigner
-                        .presignGetObject(presignRequest))
-                .filter(PresignedRequest::isBrowserExecutable)
-                .map(PresignedGetObjectRequest::url)
-                .flatMap(url -> ServerResponse.ok().bodyValue(url.toString()))
+        return resumableUploadService.uploadChunk(bucket, id, offset, length, serverRequest.bodyToFlux(DataBuffer.class))
+                .flatMap(session -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(session))
+                .onErrorResume(NoSuchElementException.class, e -> ServerResponse.status(404).bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(IllegalArgumentException.class, e -> ServerResponse.badRequest().bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(IllegalStateException.class, e -> ServerResponse.status(409).bodyValue("Error: " + e.getMessage()))
                 .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
     }
 
-    // In the future, implement renameBucket method
+    public Mono<ServerResponse> completeUploadSession(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        UUID id;
+        try {
+            id = UUID.fromString(serverRequest.pathVariable("id"));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Error: invalid upload id");
+        }
+        return resumableUploadService.complete(bucket, id)
+                .flatMap(object -> ServerResponse.ok().contentType(MediaType.APPLICATION_JSON).bodyValue(object))
+                .onErrorResume(NoSuchElementException.class, e -> ServerResponse.status(404).bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(IllegalStateException.class, e -> ServerResponse.status(409).bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
 
+    public Mono<ServerResponse> abortUploadSession(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        UUID id;
+        try {
+            id = UUID.fromString(serverRequest.pathVariable("id"));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Error: invalid upload id");
+        }
+        return resumableUploadService.abort(bucket, id)
+                .then(ServerResponse.noContent().build())
+                .onErrorResume(NoSuchElementException.class, e -> ServerResponse.status(404).bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(IllegalStateException.class, e -> ServerResponse.status(409).bodyValue("Error: " + e.getMessage()))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    /**
+     * Streams created and deleted events of the bucket, optionally under {@code prefix}. A client resumes with
+     * {@code after} or {@code Last-Event-ID} set to the last sequence it received; as server-sent events the
+     * sequence is the event id, so a reconnecting EventSource resumes by itself. A sequence whose following
+     * events are no longer kept is answered with 410 Gone.
+     */
+    public Mono<ServerResponse> watchBucket(ServerRequest serverRequest) {
+        String bucket = serverRequest.pathVariable("bucket");
+        Long after;
+        try {
+            after = serverRequest.queryParam("after")
+                    .or(() -> Optional.ofNullable(serverRequest.headers().firstHeader("Last-Event-ID")))
+                    .map(Long::valueOf)
+                    .orElse(null);
+        } catch (NumberFormatException e) {
+            return ServerResponse.badRequest().bodyValue("Error: after must be a sequence number");
+        }
+
+        Flux<BucketEvent> events = bucketEventService.events(bucket, serverRequest.queryParam("prefix").orElse(null), after);
+        if (after == null) {
+            return eventStream(serverRequest, events);
+        }
+        // refused before the stream starts, so the client knows to list the bucket again instead of resuming
+        return bucketEventService.retains(after)
+                .flatMap(retained -> retained
+                        ? eventStream(serverRequest, events)
+                        : ServerResponse.status(HttpStatus.GONE)
+                                .bodyValue("Error: events after " + after + " are no longer kept, list the bucket again"))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    private static Mono<ServerResponse> eventStream(ServerRequest serverRequest, Flux<BucketEvent> events) {
+        if (streamingMediaType(serverRequest).equals(MediaType.APPLICATION_NDJSON)) {
+            return ServerResponse.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(events, BucketEvent.class);
+        }
+        return ServerResponse.ok()
+                .contentType(MediaType.TEXT_EVENT_STREAM)
+                .body(BodyInserters.fromServerSentEvents(events.map(event -> ServerSentEvent.builder(event)
+                        .id(String.valueOf(event.sequence()))
+                        .event(event.type())
+                        .build())));
+    }
+
+    /**
+     * Receives MinIO bucket notifications ({@code notify_webhook}) as a second source of bucket events.
+     */
+    public Mono<ServerResponse> receiveMinioEvents(ServerRequest serverRequest) {
+        if (!bucketEventService.isWebhookEnabled()) {
+            return ServerResponse.notFound().build();
+        }
+        if (!bucketEventService.isWebhookAuthorized(serverRequest.headers().firstHeader(HttpHeaders.AUTHORIZATION))) {
+            return ServerResponse.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return serverRequest.bodyToMono(MinioNotification.class)
+                .flatMap(bucketEventService::notified)
+                .then(ServerResponse.ok().build())
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
+    }
+
+    private static MediaType streamingMediaType(ServerRequest serverRequest) {
+        return serverRequest.headers().accept().contains(MediaType.TEXT_EVENT_STREAM)
+                ? MediaType.TEXT_EVENT_STREAM
+                : MediaType.APPLICATION_NDJSON;
+    }
 }
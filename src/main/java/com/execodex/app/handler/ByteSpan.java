@@ -0,0 +1,40 @@
+package com.execodex.app.handler;
+
+import org.springframework.http.HttpRange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An inclusive byte range of an object whose length is known.
+ */
+record ByteSpan(long start, long end) {
+
+    long length() {
+        return end - start + 1;
+    }
+
+    String contentRange(long objectLength) {
+        return "bytes " + start + "-" + end + "/" + objectLength;
+    }
+
+    /**
+     * Resolves the requested ranges against the object length, dropping the unsatisfiable ones.
+     * An empty result means the whole request must be answered with 416.
+     */
+    static List<ByteSpan> resolve(List<HttpRange> ranges, long objectLength) {
+        List<ByteSpan> spans = new ArrayList<>(ranges.size());
+        for (HttpRange range : ranges) {
+            try {
+                long start = range.getRangeStart(objectLength);
+                long end = Math.min(range.getRangeEnd(objectLength), objectLength - 1);
+                if (start < objectLength && start <= end) {
+                    spans.add(new ByteSpan(start, end));
+                }
+            } catch (IllegalArgumentException e) {
+                // unsatisfiable range, skip it
+            }
+        }
+        return spans;
+    }
+}
@@ -1,24 +1,37 @@
 package com.execodex.app.handler;
 
 import com.execodex.app.domain.Appointment;
+import com.execodex.app.domain.AppointmentCursor;
+import com.execodex.app.domain.AppointmentWindow;
+import com.execodex.app.service.AppointmentIngestService;
 import com.execodex.app.service.AppointmentService;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.time.Duration;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 
 @Component
 public class GreetingHandler {
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
     private final AppointmentService appointmentService;
+    private final AppointmentIngestService appointmentIngestService;
 
-    public GreetingHandler(AppointmentService appointmentService) {
+    public GreetingHandler(AppointmentService appointmentService, AppointmentIngestService appointmentIngestService) {
         this.appointmentService = appointmentService;
+        this.appointmentIngestService = appointmentIngestService;
     }
 
     public Mono<ServerResponse> handleGreetings(ServerRequest request) {
@@ -26,14 +39,61 @@ public class GreetingHandler {
     }
 
     public Mono<ServerResponse> handleAppointment(ServerRequest serverRequest) {
-        //
-        Flux<Appointment> allAppointments = appointmentService
-                .getAllAppointments()
-                .doOnNext(System.out::println)
-                .delayElements(Duration.ofMillis(400));
+        AppointmentCursor after;
+        int pageSize;
+        try {
+            after = serverRequest.queryParam("cursor")
+                    .or(() -> Optional.ofNullable(serverRequest.headers().firstHeader("Last-Event-ID")))
+                    .map(AppointmentCursor::decode)
+                    .orElse(null);
+            pageSize = appointmentService.pageSize(serverRequest.queryParam("size").map(Integer::valueOf).orElse(null));
+        } catch (IllegalArgumentException e) {
+            return ServerResponse.badRequest().bodyValue("Error: " + e.getMessage());
+        }
+
+        List<MediaType> accept = serverRequest.headers().accept();
+        if (accept.contains(MediaType.APPLICATION_JSON)) {
+            return appointmentService.getAppointmentPage(after, pageSize)
+                    .flatMap(page -> ServerResponse.ok().bodyValue(page));
+        }
+
+        Flux<Appointment> appointments = appointmentService.streamAppointments(after, pageSize);
+        if (accept.contains(MediaType.APPLICATION_NDJSON)) {
+            return ServerResponse.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(appointments, Appointment.class);
+        }
+        // the event id is the resume cursor, so a reconnecting EventSource continues via Last-Event-ID
         return ServerResponse.ok()
                 .contentType(MediaType.TEXT_EVENT_STREAM)
-                .body(allAppointments, Appointment.class);
+                .body(BodyInserters.fromServerSentEvents(appointments.map(appointment -> ServerSentEvent.builder(appointment)
+                        .id(AppointmentCursor.of(appointment).encode())
+                        .build())));
+    }
+
+    public Mono<ServerResponse> handleAppointmentWindow(ServerRequest serverRequest) {
+        AppointmentWindow window;
+        try {
+            window = new AppointmentWindow(
+                    serverRequest.queryParam("from").map(LocalDateTime::parse).orElse(null),
+                    serverRequest.queryParam("to").map(LocalDateTime::parse).orElse(null),
+                    AppointmentWindow.Match.valueOf(serverRequest.queryParam("match").orElse("overlaps").toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return ServerResponse.badRequest().bodyValue("Error: " + e.getMessage());
+        }
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(appointmentService.findInWindow(window), Appointment.class);
+    }
+
+    public Mono<ServerResponse> handleAppointmentImport(ServerRequest serverRequest) {
+        AppointmentIngestService.Format format = serverRequest.headers().contentType()
+                .filter(contentType -> contentType.isCompatibleWith(TEXT_CSV))
+                .map(contentType -> AppointmentIngestService.Format.CSV)
+                .orElse(AppointmentIngestService.Format.NDJSON);
+        return appointmentIngestService.ingest(serverRequest.bodyToFlux(String.class), format)
+                .flatMap(report -> ServerResponse.ok().bodyValue(report))
+                .onErrorResume(e -> ServerResponse.status(500).bodyValue("Error: " + e.getMessage()));
     }
 
     public Mono<ServerResponse> handleHello(ServerRequest serverRequest) {
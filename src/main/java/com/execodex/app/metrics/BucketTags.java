@@ -0,0 +1,33 @@
+package com.execodex.app.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Values of the {@code bucket} meter tag. Bucket names come from request paths, so only the buckets listed in
+ * {@code minio.metrics.buckets} are tagged by name and every other bucket as {@value #OTHER}; otherwise each
+ * made-up name in a request would register meters of its own.
+ */
+@Component
+public class BucketTags {
+
+    static final String OTHER = "other";
+
+    private final Set<String> buckets;
+
+    public BucketTags(@Value("${minio.metrics.buckets:${minio.bucket-name:}}") List<String> buckets) {
+        this.buckets = buckets.stream()
+                .map(String::strip)
+                .filter(StringUtils::hasText)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public String tag(String bucket) {
+        return buckets.contains(bucket) ? bucket : OTHER;
+    }
+}
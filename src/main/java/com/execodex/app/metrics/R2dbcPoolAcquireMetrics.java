@@ -0,0 +1,101 @@
+package com.execodex.app.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times connection acquisition from every R2DBC {@link ConnectionPool} as {@code r2dbc.pool.acquire}, tagged
+ * with the pool bean name and the outcome, so waits for a free connection show up next to the pool gauges
+ * ({@code r2dbc.pool.acquired}, {@code pending}, {@code idle}, ...) that Spring Boot already publishes.
+ * <p>
+ * The pool is wrapped rather than replaced; the wrapper is {@link Wrapped}, which Spring Boot unwraps to bind
+ * those gauges.
+ */
+@Component
+public class R2dbcPoolAcquireMetrics implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public R2dbcPoolAcquireMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof ConnectionPool pool) {
+            return new TimedConnectionFactory(pool, beanName, meterRegistry);
+        }
+        return bean;
+    }
+
+    static final class TimedConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+        private final ConnectionPool pool;
+        private final String name;
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        TimedConnectionFactory(ConnectionPool pool, String name, ObjectProvider<MeterRegistry> meterRegistry) {
+            this.pool = pool;
+            this.name = name;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public Publisher<? extends Connection> create() {
+            return Mono.defer(() -> {
+                long start = System.nanoTime();
+                return pool.create()
+                        .doFinally(signal -> record(signal, System.nanoTime() - start));
+            });
+        }
+
+        @Override
+        public ConnectionFactoryMetadata getMetadata() {
+            return pool.getMetadata();
+        }
+
+        @Override
+        public ConnectionFactory unwrap() {
+            return pool;
+        }
+
+        @Override
+        public void dispose() {
+            pool.dispose();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return pool.isDisposed();
+        }
+
+        private void record(SignalType signal, long nanos) {
+            String outcome = switch (signal) {
+                case ON_COMPLETE -> "success";
+                case CANCEL -> "cancelled";
+                default -> "error";
+            };
+            meterRegistry.ifAvailable(registry -> Timer.builder("r2dbc.pool.acquire")
+                    .description("Time spent waiting for a pooled connection")
+                    .tag("name", name)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry)
+                    .record(nanos, TimeUnit.NANOSECONDS));
+        }
+    }
+}
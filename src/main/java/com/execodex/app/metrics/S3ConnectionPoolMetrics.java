@@ -0,0 +1,96 @@
+package com.execodex.app.metrics;
+
+import io.micrometer.core.instrument.Clock;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.distribution.TimeWindowMax;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.MetricRecord;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Publishes the Netty connection pool state of the S3 client as gauges.
+ * <p>
+ * The SDK reports pool concurrency with every request's metrics rather than on demand. The {@code leased} and
+ * {@code pending} gauges show the highest value reported within the last {@code minio.metrics.pool-peak-window},
+ * so a burst between two scrapes is not hidden by the quiet request after it. Reading does not reset them, so
+ * every scraper sees the same peak; without requests they fall back to the last reported value.
+ * {@code idle} and {@code max} show the value reported by the most recent request.
+ */
+@Component
+public class S3ConnectionPoolMetrics implements MetricPublisher {
+
+    private final Peak leased;
+    private final Peak pending;
+    private final AtomicInteger idle = new AtomicInteger();
+    private final AtomicInteger max = new AtomicInteger();
+
+    public S3ConnectionPoolMetrics(MeterRegistry meterRegistry,
+                                   @Value("${minio.metrics.pool-peak-window:2m}") Duration peakWindow) {
+        Clock clock = meterRegistry.config().clock();
+        this.leased = new Peak(clock, peakWindow);
+        this.pending = new Peak(clock, peakWindow);
+        gauge(meterRegistry, "leased", leased, Peak::read);
+        gauge(meterRegistry, "pending", pending, Peak::read);
+        gauge(meterRegistry, "idle", idle, AtomicInteger::get);
+        gauge(meterRegistry, "max", max, AtomicInteger::get);
+    }
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        for (MetricRecord<?> metricRecord : metricCollection) {
+            if (HttpMetric.LEASED_CONCURRENCY.equals(metricRecord.metric())) {
+                leased.observe((Integer) metricRecord.value());
+            } else if (HttpMetric.PENDING_CONCURRENCY_ACQUIRES.equals(metricRecord.metric())) {
+                pending.observe((Integer) metricRecord.value());
+            } else if (HttpMetric.AVAILABLE_CONCURRENCY.equals(metricRecord.metric())) {
+                idle.set((Integer) metricRecord.value());
+            } else if (HttpMetric.MAX_CONCURRENCY.equals(metricRecord.metric())) {
+                max.set((Integer) metricRecord.value());
+            }
+        }
+        metricCollection.children().forEach(this::publish);
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static <T> void gauge(MeterRegistry meterRegistry, String state, T value, ToDoubleFunction<T> read) {
+        Gauge.builder("minio.http.pool.connections", value, read)
+                .tag("state", state)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The highest value observed within a rolling window, at least the last observed value.
+     */
+    static final class Peak {
+
+        // the window rotates in thirds, as Micrometer's own maxima do
+        private static final int BUFFER_LENGTH = 3;
+
+        private final AtomicInteger last = new AtomicInteger();
+        private final TimeWindowMax peak;
+
+        Peak(Clock clock, Duration window) {
+            this.peak = new TimeWindowMax(clock, Math.max(window.toMillis() / BUFFER_LENGTH, 1), BUFFER_LENGTH);
+        }
+
+        void observe(int value) {
+            last.set(value);
+            peak.record(value);
+        }
+
+        int read() {
+            return Math.max((int) peak.poll(), last.get());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.execodex.app.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.SdkRequest;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttribute;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.core.interceptor.SdkExecutionAttribute;
+import software.amazon.awssdk.http.SdkHttpMethod;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records latency, payload size, concurrency, errors and retries of every S3 call made through the
+ * {@code S3AsyncClient}, tagged by operation, bucket (see {@link BucketTags}) and outcome.
+ * <p>
+ * Meters:
+ * <ul>
+ *     <li>{@code minio.s3.requests} - timer of whole calls including retries, with percentile histograms</li>
+ *     <li>{@code minio.s3.first.byte} - time from sending an attempt until the response headers arrive</li>
+ *     <li>{@code minio.s3.payload} - request ({@code direction=out}) and response ({@code direction=in}) bytes</li>
+ *     <li>{@code minio.s3.in.flight} - calls currently running</li>
+ *     <li>{@code minio.s3.errors} / {@code minio.s3.retries} - failed calls and retried attempts</li>
+ * </ul>
+ * Presigning happens locally and is reported through {@link #recordPresign}.
+ */
+@Component
+public class S3OperationMetrics implements ExecutionInterceptor {
+
+    private static final ExecutionAttribute<Long> CALL_START = new ExecutionAttribute<>("MetricsCallStart");
+    private static final ExecutionAttribute<Long> ATTEMPT_START = new ExecutionAttribute<>("MetricsAttemptStart");
+    private static final ExecutionAttribute<Integer> ATTEMPTS = new ExecutionAttribute<>("MetricsAttempts");
+    private static final String UNKNOWN = "none";
+
+    private final MeterRegistry meterRegistry;
+    private final BucketTags bucketTags;
+    private final ConcurrentMap<Tags, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public S3OperationMetrics(MeterRegistry meterRegistry, BucketTags bucketTags) {
+        this.meterRegistry = meterRegistry;
+        this.bucketTags = bucketTags;
+    }
+
+    @Override
+    public void beforeExecution(Context.BeforeExecution context, ExecutionAttributes executionAttributes) {
+        executionAttributes.putAttribute(CALL_START, System.nanoTime());
+        executionAttributes.putAttribute(ATTEMPTS, 0);
+        inFlight(operationTags(context.request(), executionAttributes)).incrementAndGet();
+    }
+
+    @Override
+    public void beforeTransmission(Context.BeforeTransmission context, ExecutionAttributes executionAttributes) {
+        Tags tags = operationTags(context.request(), executionAttributes);
+        int attempt = executionAttributes.getAttribute(ATTEMPTS) + 1;
+        executionAttributes.putAttribute(ATTEMPTS, attempt);
+        executionAttributes.putAttribute(ATTEMPT_START, System.nanoTime());
+        if (attempt > 1) {
+            Counter.builder("minio.s3.retries").tags(tags).register(meterRegistry).increment();
+        }
+        context.asyncRequestBody()
+                .flatMap(body -> body.contentLength())
+                .ifPresent(bytes -> payload(tags, "out").record(bytes));
+    }
+
+    @Override
+    public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+        Tags tags = operationTags(context.request(), executionAttributes);
+        Timer.builder("minio.s3.first.byte")
+                .tags(tags)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry)
+                .record(System.nanoTime() - executionAttributes.getAttribute(ATTEMPT_START), TimeUnit.NANOSECONDS);
+        if (context.httpRequest().method() != SdkHttpMethod.HEAD) {
+            context.httpResponse().firstMatchingHeader("Content-Length")
+                    .map(Long::parseLong)
+                    .ifPresent(bytes -> payload(tags, "in").record(bytes));
+        }
+    }
+
+    @Override
+    public void afterExecution(Context.AfterExecution context, ExecutionAttributes executionAttributes) {
+        complete(operationTags(context.request(), executionAttributes), executionAttributes, "success");
+    }
+
+    @Override
+    public void onExecutionFailure(Context.FailedExecution context, ExecutionAttributes executionAttributes) {
+        Tags tags = operationTags(context.request(), executionAttributes);
+        Throwable exception = context.exception();
+        Counter.builder("minio.s3.errors")
+                .tags(tags)
+                .tag("error", exception.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+        complete(tags, executionAttributes, outcome(exception));
+    }
+
+    public void recordPresign(String operation, String bucket, long durationNanos, boolean success) {
+        requestTimer(Tags.of("operation", operation, "bucket", bucketTags.tag(bucket)), success ? "success" : "error")
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void complete(Tags tags, ExecutionAttributes executionAttributes, String outcome) {
+        Long callStart = executionAttributes.getAttribute(CALL_START);
+        if (callStart == null) {
+            // failed before beforeExecution ran, nothing was counted for this call
+            return;
+        }
+        inFlight(tags).decrementAndGet();
+        requestTimer(tags, outcome).record(System.nanoTime() - callStart, TimeUnit.NANOSECONDS);
+    }
+
+    private Timer requestTimer(Tags tags, String outcome) {
+        return Timer.builder("minio.s3.requests")
+                .tags(tags)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary payload(Tags tags, String direction) {
+        return DistributionSummary.builder("minio.s3.payload")
+                .baseUnit("bytes")
+                .tags(tags)
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    private AtomicInteger inFlight(Tags tags) {
+        return inFlight.computeIfAbsent(tags, t -> {
+            AtomicInteger counter = new AtomicInteger();
+            Gauge.builder("minio.s3.in.flight", counter, AtomicInteger::get)
+                    .tags(t)
+                    .register(meterRegistry);
+            return counter;
+        });
+    }
+
+    private Tags operationTags(SdkRequest request, ExecutionAttributes executionAttributes) {
+        String operation = executionAttributes.getAttribute(SdkExecutionAttribute.OPERATION_NAME);
+        String bucket = request.getValueForField("Bucket", String.class).map(bucketTags::tag).orElse(UNKNOWN);
+        return Tags.of("operation", operation == null ? UNKNOWN : operation, "bucket", bucket);
+    }
+
+    private static String outcome(Throwable exception) {
+        if (exception instanceof SdkServiceException serviceException) {
+            return serviceException.statusCode() >= 500 ? "server_error" : "client_error";
+        }
+        return "error";
+    }
+}
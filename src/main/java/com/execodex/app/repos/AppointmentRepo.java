@@ -1,9 +1,47 @@
 package com.execodex.app.repos;
 
 import com.execodex.app.domain.Appointment;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
 
 @Repository
 public interface AppointmentRepo extends ReactiveCrudRepository<Appointment, Long> {
+
+    // Keyset order (start_date NULLS LAST, id); the expression matches idx_appointment_keyset
+    @Query("""
+            SELECT * FROM appointment
+            ORDER BY COALESCE(start_date, 'infinity'::timestamp), id
+            LIMIT :limit
+            """)
+    Flux<Appointment> findFirstPage(int limit);
+
+    @Query("""
+            SELECT * FROM appointment
+            WHERE (COALESCE(start_date, 'infinity'::timestamp), id) > (COALESCE(:startDate, 'infinity'::timestamp), :id)
+            ORDER BY COALESCE(start_date, 'infinity'::timestamp), id
+            LIMIT :limit
+            """)
+    Flux<Appointment> findPageAfter(LocalDateTime startDate, long id, int limit);
+
+    // Range queries over [from, to); see 004-add-appointment-range-indexes.sql
+    @Query("""
+            SELECT * FROM appointment
+            WHERE start_date >= :from AND start_date < :to
+            ORDER BY start_date, id
+            """)
+    Flux<Appointment> findStartingBetween(LocalDateTime from, LocalDateTime to);
+
+    // An appointment without a duration is an instant and overlaps the window when it lies in it
+    @Query("""
+            SELECT * FROM appointment
+            WHERE start_date < :to
+              AND (start_date + COALESCE(duration, INTERVAL '0') > :from
+                   OR (duration IS NULL AND start_date >= :from))
+            ORDER BY start_date, id
+            """)
+    Flux<Appointment> findOverlapping(LocalDateTime from, LocalDateTime to);
 }
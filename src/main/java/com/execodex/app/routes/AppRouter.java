@@ -1,9 +1,13 @@
 package com.execodex.app.routes;
 
+import com.execodex.app.domain.IngestReport;
 import com.execodex.app.handler.GreetingHandler;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.parameters.RequestBody;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import org.springdoc.core.annotations.RouterOperation;
 import org.springdoc.core.annotations.RouterOperations;
@@ -16,6 +20,7 @@ import org.springframework.web.reactive.function.server.RouterFunctions;
 import org.springframework.web.reactive.function.server.ServerResponse;
 
 import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
 import static org.springframework.web.reactive.function.server.RouterFunctions.route;
 
 @Configuration
@@ -50,14 +55,79 @@ public class AppRouter {
                     operation = @Operation(
                             operationId = "getAppointment",
                             summary = "Get appointment information",
-                            description = "Returns appointment details",
+                            description = "Returns appointments in (startDate, id) order. Streams them as server-sent events "
+                                    + "or NDJSON, or returns a single page for Accept: application/json. Resume with the "
+                                    + "cursor query parameter or Last-Event-ID; size sets the page size",
                             tags = {"Appointment"},
+                            parameters = {
+                                    @Parameter(name = "cursor", in = ParameterIn.QUERY, description = "Continue after this cursor"),
+                                    @Parameter(name = "size", in = ParameterIn.QUERY, description = "Page size")
+                            },
+                            responses = {
+                                    @ApiResponse(
+                                            responseCode = "200",
+                                            description = "Successful operation",
+                                            content = {
+                                                    @Content(mediaType = "text/event-stream"),
+                                                    @Content(mediaType = "application/x-ndjson"),
+                                                    @Content(mediaType = "application/json")
+                                            }
+                                    ),
+                                    @ApiResponse(responseCode = "400", description = "Invalid cursor or size")
+                            }
+                    )
+            ),
+            @RouterOperation(
+                    path = "/appointment/window",
+                    method = RequestMethod.GET,
+                    beanClass = GreetingHandler.class,
+                    beanMethod = "handleAppointmentWindow",
+                    operation = @Operation(
+                            operationId = "getAppointmentWindow",
+                            summary = "Get appointments in a time window",
+                            description = "Returns appointments that start in or overlap [from, to), ordered by start date",
+                            tags = {"Appointment"},
+                            parameters = {
+                                    @Parameter(name = "from", in = ParameterIn.QUERY, required = true, description = "Window start, e.g. 2021-01-02T00:00"),
+                                    @Parameter(name = "to", in = ParameterIn.QUERY, required = true, description = "Window end (exclusive)"),
+                                    @Parameter(name = "match", in = ParameterIn.QUERY, description = "starts or overlaps (default)")
+                            },
                             responses = {
                                     @ApiResponse(
                                             responseCode = "200",
                                             description = "Successful operation",
                                             content = @Content(mediaType = "application/json")
-                                    )
+                                    ),
+                                    @ApiResponse(responseCode = "400", description = "Invalid window")
+                            }
+                    )
+            ),
+            @RouterOperation(
+                    path = "/appointment/import",
+                    method = RequestMethod.POST,
+                    beanClass = GreetingHandler.class,
+                    beanMethod = "handleAppointmentImport",
+                    operation = @Operation(
+                            operationId = "importAppointments",
+                            summary = "Bulk import appointments",
+                            description = "Streams appointments from an NDJSON body (one appointment per line) or a text/csv body "
+                                    + "with columns title,start_date,duration. Rows are written in chunks; the response "
+                                    + "reports inserted and rejected rows with line numbers",
+                            tags = {"Appointment"},
+                            requestBody = @RequestBody(
+                                    required = true,
+                                    content = {
+                                            @Content(mediaType = "application/x-ndjson"),
+                                            @Content(mediaType = "text/csv")
+                                    }
+                            ),
+                            responses = {
+                                    @ApiResponse(
+                                            responseCode = "200",
+                                            description = "Import summary",
+                                            content = @Content(mediaType = "application/json", schema = @Schema(implementation = IngestReport.class))
+                                    ),
+                                    @ApiResponse(responseCode = "500", description = "Import aborted")
                             }
                     )
             )
@@ -69,6 +139,8 @@ public class AppRouter {
                         .add(route(GET("/bff/me"), greetingHandler::me))
                         .add(route(GET("/greetings"), greetingHandler::handleGreetings))
                         .add(route(GET("/appointment"), greetingHandler::handleAppointment))
+                        .add(route(GET("/appointment/window"), greetingHandler::handleAppointmentWindow))
+                        .add(route(POST("/appointment/import"), greetingHandler::handleAppointmentImport))
                 )
                 .build()
                 ;
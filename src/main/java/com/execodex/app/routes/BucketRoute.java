@@ -25,11 +25,29 @@ public class BucketRoute {
                         .GET("/minio", request -> ServerResponse.ok().bodyValue("Minio Service"))
                         .POST("/minio/{bucket}", bucketHandler::createBucket)
                         .GET("/minio/{bucket}", bucketHandler::getAllFiles)
+                        .GET("/minio/{bucket}/objects", bucketHandler::listObjects)
+                        .GET("/minio/{bucket}/search", bucketHandler::searchObjects)
                         .POST("/minio/{bucket}/upload", bucketHandler::uploadFile)
+                        .POST("/minio/{bucket}/uploads", bucketHandler::createUploadSession)
+                        .GET("/minio/{bucket}/uploads/{id}", bucketHandler::getUploadSession)
+                        .PUT("/minio/{bucket}/uploads/{id}", bucketHandler::uploadChunk)
+                        .POST("/minio/{bucket}/uploads/{id}/complete", bucketHandler::completeUploadSession)
+                        .DELETE("/minio/{bucket}/uploads/{id}", bucketHandler::abortUploadSession)
                         .GET("/minio/{bucket}/download/{filename}", bucketHandler::downloadFile)
+                        .GET("/minio/{bucket}/image/{filename}", bucketHandler::getImage)
+                        .GET("/minio/{bucket}/zip", bucketHandler::downloadZip)
+                        .POST("/minio/{bucket}/zip", bucketHandler::downloadZip)
                         .GET("/minio/{bucket}/link2/{filename}", bucketHandler::getPresignedUrl)
                         .GET("/minio/{bucket}/link/{duration}/{filename}", bucketHandler::getPresignedUrl)
+                        .POST("/minio/{bucket}/links", bucketHandler::getPresignedUrls)
                         .DELETE("/minio/{bucket}/{filename}", bucketHandler::deleteFile)
+                        .POST("/minio/{bucket}/delete", bucketHandler::deleteFiles)
+                        .POST("/minio/{bucket}/copy", bucketHandler::copyObjects)
+                        .POST("/minio/{bucket}/rename", bucketHandler::renameObjects)
+                        .GET("/events/{bucket}", bucketHandler::watchBucket)
+                        .POST("/events/webhook", bucketHandler::receiveMinioEvents)
+                        .GET("/transfers/{id}", bucketHandler::getTransfer)
+                        .POST("/transfers/{id}/resume", bucketHandler::resumeTransfer)
                 )
                 .build();
     }
@@ -0,0 +1,336 @@
+package com.execodex.app.service;
+
+import com.execodex.app.configs.R2dbcConverterConfiguration.DurationToIntervalConverter;
+import com.execodex.app.domain.Appointment;
+import com.execodex.app.domain.IngestReport;
+import com.execodex.app.domain.IngestReport.IngestError;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.codec.Interval;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Wrapped;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.DecoderHttpMessageReader;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Imports appointments from a streamed NDJSON or CSV body.
+ * <p>
+ * Lines are parsed one by one; rows that cannot be parsed, or hold values the {@code appointment} columns
+ * cannot store, are reported with their line number and skipped.
+ * Valid rows are written in chunks of {@code appointments.ingest.batch-size}, each chunk as a single
+ * {@code COPY FROM STDIN} (or one multi-row {@code INSERT} when {@code appointments.ingest.mode=insert} or the
+ * connection is not r2dbc-postgresql), so every chunk commits on its own and a failing chunk only rejects its
+ * rows. Chunks are written one after another and the body is read as they complete, so memory is bounded by
+ * one chunk regardless of the import size.
+ * <p>
+ * CSV columns are {@code title,start_date,duration} with an optional header line; {@code start_date} is an
+ * ISO local date-time and {@code duration} an ISO-8601 duration such as {@code PT1H30M}. Durations are mapped
+ * to {@code interval} through {@link DurationToIntervalConverter}, like every other write.
+ */
+@Service
+public class AppointmentIngestService {
+
+    private static final String COPY_SQL = "COPY appointment (title, start_date, duration) FROM STDIN";
+    private static final String INSERT_SQL = "INSERT INTO appointment (title, start_date, duration) VALUES ";
+    private static final int MAX_TITLE_LENGTH = 255;
+    // the years a timestamp's ISO text (the COPY value) carries without a sign or era
+    private static final int MIN_YEAR = 1;
+    private static final int MAX_YEAR = 9999;
+    private static final ResolvableType APPOINTMENT_TYPE = ResolvableType.forClass(Appointment.class);
+
+    private final DatabaseClient databaseClient;
+    private final AppointmentService appointmentService;
+    private final Decoder<?> jsonDecoder;
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final int batchSize;
+    private final boolean useCopy;
+    private final int maxReportedErrors;
+
+    public AppointmentIngestService(DatabaseClient databaseClient,
+                                    AppointmentService appointmentService,
+                                    ServerCodecConfigurer codecConfigurer,
+                                    @Value("${appointments.ingest.batch-size:1000}") int batchSize,
+                                    @Value("${appointments.ingest.mode:copy}") String mode,
+                                    @Value("${appointments.ingest.max-reported-errors:100}") int maxReportedErrors) {
+        this.databaseClient = databaseClient;
+        this.appointmentService = appointmentService;
+        this.jsonDecoder = codecConfigurer.getReaders().stream()
+                .filter(reader -> reader instanceof DecoderHttpMessageReader<?>)
+                .map(reader -> ((DecoderHttpMessageReader<?>) reader).getDecoder())
+                .filter(decoder -> decoder.canDecode(APPOINTMENT_TYPE, MediaType.APPLICATION_JSON))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No JSON decoder configured"));
+        // Postgres allows at most 65535 bind parameters per statement, three per row
+        this.batchSize = Math.clamp(batchSize, 1, 20_000);
+        this.useCopy = "copy".equalsIgnoreCase(mode);
+        this.maxReportedErrors = Math.max(maxReportedErrors, 0);
+    }
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    /**
+     * @param lines the request body split into lines, as decoded by the {@code String} codec
+     */
+    public Mono<IngestReport> ingest(Flux<String> lines, Format format) {
+        Summary summary = new Summary();
+        return lines
+                .index()
+                .filter(line -> !line.getT2().isBlank())
+                .filter(line -> format != Format.CSV || line.getT1() > 0 || !isCsvHeader(line.getT2()))
+                .map(line -> parse(line, format))
+                .doOnNext(summary::received)
+                .filter(row -> {
+                    if (row.error() != null) {
+                        summary.reject(row.line(), row.error());
+                        return false;
+                    }
+                    return true;
+                })
+                .buffer(batchSize)
+                .concatMap(chunk -> write(chunk)
+                        .doOnNext(summary::inserted)
+                        .onErrorResume(e -> {
+                            chunk.forEach(row -> summary.reject(row.line(), "Chunk of lines " + chunk.getFirst().line()
+                                    + "-" + chunk.getLast().line() + " failed: " + e.getMessage()));
+                            return Mono.empty();
+                        }), 1)
+                .then(Mono.fromCallable(summary::report))
+                .doFinally(signal -> appointmentService.invalidateWindows());
+    }
+
+    private Mono<Long> write(List<Row> chunk) {
+        return databaseClient.inConnection(connection -> {
+            PostgresqlConnection postgres = useCopy ? unwrapPostgres(connection) : null;
+            return postgres != null ? copy(postgres, chunk) : insert(chunk);
+        });
+    }
+
+    private Mono<Long> copy(PostgresqlConnection connection, List<Row> chunk) {
+        StringBuilder text = new StringBuilder(chunk.size() * 64);
+        for (Row row : chunk) {
+            Appointment appointment = row.appointment();
+            appendCopyValue(text, appointment.title()).append('\t');
+            appendCopyValue(text, appointment.startDate() == null ? null : appointment.startDate().toString()).append('\t');
+            appendCopyValue(text, appointment.duration() == null ? null : intervalText(appointment.duration())).append('\n');
+        }
+        ByteBuf data = Unpooled.wrappedBuffer(text.toString().getBytes(StandardCharsets.UTF_8));
+        return connection.copyIn(COPY_SQL, Mono.just(data));
+    }
+
+    private Mono<Long> insert(List<Row> chunk) {
+        String sql = INSERT_SQL + IntStream.range(0, chunk.size())
+                .mapToObj(i -> "($" + (3 * i + 1) + ", $" + (3 * i + 2) + ", $" + (3 * i + 3) + ")")
+                .collect(Collectors.joining(", "));
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql);
+        for (int i = 0; i < chunk.size(); i++) {
+            Appointment appointment = chunk.get(i).appointment();
+            spec = bind(spec, 3 * i, appointment.title(), String.class);
+            spec = bind(spec, 3 * i + 1, appointment.startDate(), LocalDateTime.class);
+            spec = bind(spec, 3 * i + 2,
+                    appointment.duration() == null ? null : DurationToIntervalConverter.INSTANCE.convert(appointment.duration()),
+                    Interval.class);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    private Row parse(Tuple2<Long, String> line, Format format) {
+        long lineNumber = line.getT1() + 1;
+        try {
+            Appointment appointment = format == Format.NDJSON ? decodeJson(line.getT2()) : parseCsv(line.getT2());
+            validate(appointment);
+            return new Row(lineNumber, appointment, null);
+        } catch (RuntimeException e) {
+            return Row.error(lineNumber, e.getMessage());
+        }
+    }
+
+    /**
+     * Rejects the values Postgres would refuse, so a bad row is reported on its own instead of failing its chunk.
+     */
+    static void validate(Appointment appointment) {
+        String title = appointment.title();
+        if (title != null && title.length() > MAX_TITLE_LENGTH) {
+            throw new IllegalArgumentException("title is longer than " + MAX_TITLE_LENGTH + " characters");
+        }
+        if (title != null && title.indexOf('\u0000') >= 0) {
+            throw new IllegalArgumentException("title contains a NUL character");
+        }
+        LocalDateTime startDate = appointment.startDate();
+        if (startDate != null && (startDate.getYear() < MIN_YEAR || startDate.getYear() > MAX_YEAR)) {
+            throw new IllegalArgumentException("start_date must be between the years " + MIN_YEAR + " and " + MAX_YEAR);
+        }
+        // an interval keeps its days in an int
+        Duration duration = appointment.duration();
+        if (duration != null && Math.abs(duration.toDays()) > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("duration must be at most " + Integer.MAX_VALUE + " days");
+        }
+    }
+
+    private Appointment decodeJson(String line) {
+        Object decoded = jsonDecoder.decode(bufferFactory.wrap(line.getBytes(StandardCharsets.UTF_8)),
+                APPOINTMENT_TYPE, MediaType.APPLICATION_JSON, Map.of());
+        if (decoded == null) {
+            throw new IllegalArgumentException("empty record");
+        }
+        return (Appointment) decoded;
+    }
+
+    private static Appointment parseCsv(String line) {
+        List<String> fields = splitCsv(line);
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("expected 3 columns (title,start_date,duration) but found " + fields.size());
+        }
+        return new Appointment(
+                null,
+                emptyToNull(fields.get(0)),
+                fields.get(1).isBlank() ? null : LocalDateTime.parse(fields.get(1).strip()),
+                fields.get(2).isBlank() ? null : Duration.parse(fields.get(2).strip()));
+    }
+
+    /**
+     * RFC 4180 fields: quoted fields may contain commas and doubled quotes, but not line breaks.
+     */
+    static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static boolean isCsvHeader(String line) {
+        return line.strip().toLowerCase(Locale.ROOT).startsWith("title,");
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Postgres' own interval output style, built from the {@link Interval} the R2DBC converter would bind. The
+     * fields come from the absolute duration and share its sign, so seconds and their fraction never disagree.
+     */
+    static String intervalText(Duration duration) {
+        Interval interval = DurationToIntervalConverter.INSTANCE.convert(duration.abs());
+        String sign = duration.isNegative() ? "-" : "";
+        return String.format(Locale.ROOT,
+                "%1$s%2$d years %1$s%3$d mons %1$s%4$d days %1$s%5$d hours %1$s%6$d mins %1$s%7$d.%8$06d secs",
+                sign, interval.getYears(), interval.getMonths(), interval.getDays(), interval.getHours(),
+                interval.getMinutes(), interval.getSecondsInMinute(), interval.getMicrosecondsInSecond());
+    }
+
+    // COPY text format: \N is null, backslash and the delimiter/line characters are escaped
+    private static StringBuilder appendCopyValue(StringBuilder text, String value) {
+        if (value == null) {
+            return text.append("\\N");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\' -> text.append("\\\\");
+                case '\t' -> text.append("\\t");
+                case '\n' -> text.append("\\n");
+                case '\r' -> text.append("\\r");
+                default -> text.append(c);
+            }
+        }
+        return text;
+    }
+
+    private static <T> DatabaseClient.GenericExecuteSpec bind(DatabaseClient.GenericExecuteSpec spec, int index,
+                                                              T value, Class<T> type) {
+        return value == null ? spec.bindNull(index, type) : spec.bind(index, value);
+    }
+
+    private static PostgresqlConnection unwrapPostgres(Connection connection) {
+        Object current = connection;
+        while (!(current instanceof PostgresqlConnection) && current instanceof Wrapped<?> wrapped) {
+            current = wrapped.unwrap();
+        }
+        return current instanceof PostgresqlConnection postgres ? postgres : null;
+    }
+
+    private record Row(long line, Appointment appointment, String error) {
+
+        static Row error(long line, String error) {
+            return new Row(line, null, error);
+        }
+    }
+
+    /**
+     * Counters for one import. Rows are processed sequentially, so no synchronization is needed.
+     */
+    private final class Summary {
+
+        private long received;
+        private long inserted;
+        private long rejected;
+        private final List<IngestError> errors = new ArrayList<>();
+
+        void received(Row row) {
+            received++;
+        }
+
+        void inserted(long rows) {
+            inserted += rows;
+        }
+
+        void reject(long line, String message) {
+            rejected++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new IngestError(line, message));
+            }
+        }
+
+        IngestReport report() {
+            return new IngestReport(received, inserted, rejected, Collections.unmodifiableList(errors));
+        }
+    }
+}
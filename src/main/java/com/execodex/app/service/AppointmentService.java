@@ -1,22 +1,82 @@
 package com.execodex.app.service;
 
 import com.execodex.app.domain.Appointment;
+import com.execodex.app.domain.AppointmentCursor;
+import com.execodex.app.domain.AppointmentPage;
+import com.execodex.app.domain.AppointmentWindow;
 import com.execodex.app.repos.AppointmentRepo;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.List;
+
 @Service
 public class AppointmentService {
 
     private final AppointmentRepo appointmentRepo;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final Duration maxCachedWindow;
+    private final AsyncCache<AppointmentWindow, List<Appointment>> windowCache;
 
-    public AppointmentService(AppointmentRepo appointmentRepo) {
+    public AppointmentService(AppointmentRepo appointmentRepo,
+                              MeterRegistry meterRegistry,
+                              @Value("${appointments.page-size:100}") int defaultPageSize,
+                              @Value("${appointments.max-page-size:1000}") int maxPageSize,
+                              @Value("${appointments.cache.max-size:256}") long cacheMaxSize,
+                              @Value("${appointments.cache.max-window:7d}") Duration maxCachedWindow,
+                              @Value("${appointments.cache.ttl:5m}") Duration cacheTtl) {
         this.appointmentRepo = appointmentRepo;
+        this.maxPageSize = Math.max(maxPageSize, 1);
+        this.defaultPageSize = Math.clamp(defaultPageSize, 1, this.maxPageSize);
+        this.maxCachedWindow = maxCachedWindow;
+        this.windowCache = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, windowCache.synchronous(), "appointmentWindows");
     }
 
     public Mono<Appointment> saveAppointment(Appointment appointment){
-        return appointmentRepo.save(appointment);
+        return appointmentRepo.save(appointment)
+                .doOnSuccess(saved -> invalidateWindows());
+    }
+
+    /**
+     * Drops every cached window. Called after any write to the appointment table; the TTL only bounds
+     * staleness from writers outside this service.
+     */
+    public void invalidateWindows() {
+        windowCache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Appointments starting in or overlapping {@code window}, ordered by start date. Windows up to
+     * {@code appointments.cache.max-window} long (today, this week) are served from a bounded cache;
+     * concurrent requests for the same window share one query, which a cancelled request leaves running.
+     */
+    public Flux<Appointment> findInWindow(AppointmentWindow window) {
+        if (Duration.between(window.from(), window.to()).compareTo(maxCachedWindow) > 0) {
+            return queryWindow(window);
+        }
+        return Mono.fromFuture(() -> windowCache.get(window, (w, executor) -> queryWindow(w).collectList().toFuture()),
+                        true)
+                .flatMapIterable(appointments -> appointments);
+    }
+
+    private Flux<Appointment> queryWindow(AppointmentWindow window) {
+        return switch (window.match()) {
+            case STARTS -> appointmentRepo.findStartingBetween(window.from(), window.to());
+            case OVERLAPS -> appointmentRepo.findOverlapping(window.from(), window.to());
+        };
     }
     public Mono<Appointment> getAppointmentById(Long id){
         return appointmentRepo.findById(id);
@@ -26,4 +86,43 @@ public class AppointmentService {
         return appointmentRepo.findAll();
     }
 
+    public int pageSize(Integer requested) {
+        return requested == null ? defaultPageSize : Math.clamp(requested, 1, maxPageSize);
+    }
+
+    /**
+     * One keyset page after {@code after} (from the start when {@code null}). The next cursor is only set
+     * when more appointments follow, which is detected by reading one row past the page.
+     */
+    public Mono<AppointmentPage> getAppointmentPage(AppointmentCursor after, int pageSize) {
+        return page(after, pageSize + 1)
+                .collectList()
+                .map(rows -> {
+                    if (rows.size() <= pageSize) {
+                        return new AppointmentPage(rows, null);
+                    }
+                    List<Appointment> items = rows.subList(0, pageSize);
+                    return new AppointmentPage(items, AppointmentCursor.of(items.getLast()).encode());
+                });
+    }
+
+    /**
+     * Streams every appointment after {@code after} page by page. The next page is only queried once the
+     * subscriber has requested past the current one, so delivery follows client demand.
+     */
+    public Flux<Appointment> streamAppointments(AppointmentCursor after, int pageSize) {
+        return page(after, pageSize)
+                .collectList()
+                .expand(rows -> rows.size() < pageSize
+                        ? Mono.empty()
+                        : page(AppointmentCursor.of(rows.getLast()), pageSize).collectList())
+                .concatMapIterable(rows -> rows, 1);
+    }
+
+    private Flux<Appointment> page(AppointmentCursor after, int limit) {
+        return after == null
+                ? appointmentRepo.findFirstPage(limit)
+                : appointmentRepo.findPageAfter(after.startDate(), after.id(), limit);
+    }
+
 }
@@ -0,0 +1,410 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.BucketEvent;
+import com.execodex.app.domain.MinioNotification;
+import com.execodex.app.domain.UploadedObject;
+import io.r2dbc.spi.Readable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Change feed of object creations and deletions per bucket ({@code minio.events.enabled}).
+ * <p>
+ * Events are appended to {@code bucket_event}, whose sequence orders them across buckets. Every instance tails
+ * the table with one query per {@code minio.events.poll-interval} and multicasts new events to its subscribers,
+ * so a subscriber sees the changes made through any instance and the number of subscribers does not add load
+ * on Postgres. A sequence number is taken before its insert commits, so a later number can become visible
+ * first: the tail only moves past a missing number once it has been missing for {@code minio.events.gap-timeout},
+ * which leaves a slow insert time to commit and skips numbers whose insert rolled back. Replays stop at the tail,
+ * so they never run ahead of what has been multicast.
+ * <p>
+ * Each subscriber has a buffer of {@code minio.events.subscriber-buffer} events; one that falls further behind
+ * is dropped with an error and resumes from the last sequence it received, replaying the missed events from
+ * the table before it continues with live ones. Events are kept for {@code minio.events.retention}; a
+ * subscriber resuming from a sequence older than that has missed events it can no longer get (see
+ * {@link #retains(long)}) and has to list the bucket again.
+ * <p>
+ * With {@code minio.events.webhook.enabled}, MinIO bucket notifications are a second source, covering writes
+ * that bypass this service. Changes made through this service then appear twice, once per source. The webhook
+ * takes events from anyone holding {@code minio.events.webhook.token}, so it cannot be enabled without one.
+ */
+@Service
+public class BucketEventService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(BucketEventService.class);
+
+    public static final String CREATED = "created";
+    public static final String DELETED = "deleted";
+    static final String SOURCE_API = "api";
+    static final String SOURCE_MINIO = "minio";
+
+    private static final String INSERT_SQL = """
+            INSERT INTO bucket_event (bucket, object_key, type, size, e_tag, source)
+            SELECT :bucket, event.* FROM unnest(CAST(:keys AS TEXT[]), CAST(:types AS TEXT[]), CAST(:sizes AS BIGINT[]),
+                                                CAST(:eTags AS TEXT[]), CAST(:sources AS TEXT[])) AS event
+            """;
+    private static final String LAST_SEQUENCE_SQL = """
+            SELECT COALESCE(max(seq), 0) AS seq FROM bucket_event
+            """;
+    private static final String TAIL_SQL = """
+            SELECT * FROM bucket_event
+            WHERE seq > :after
+            ORDER BY seq LIMIT :limit
+            """;
+    private static final String HISTORY_SQL = """
+            SELECT * FROM bucket_event
+            WHERE bucket = :bucket AND seq > :after AND seq <= :until AND starts_with(object_key, :prefix)
+            ORDER BY seq LIMIT :limit
+            """;
+    // the last sequence pruned: the one before the oldest kept, or the last one taken when none is kept
+    private static final String FLOOR_SQL = """
+            SELECT COALESCE((SELECT min(seq) - 1 FROM bucket_event),
+                            pg_sequence_last_value(CAST(pg_get_serial_sequence('bucket_event', 'seq') AS REGCLASS)),
+                            0) AS floor
+            """;
+    private static final String PRUNE_SQL = """
+            DELETE FROM bucket_event WHERE created_at < now() - make_interval(secs => :retention)
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final Duration pollInterval;
+    private final Duration gapTimeout;
+    private final int batchSize;
+    private final int subscriberBuffer;
+    private final Duration retention;
+    private final boolean webhookEnabled;
+    private final String webhookToken;
+    private final Sinks.Many<BucketEvent> live = Sinks.many().multicast().directBestEffort();
+    // the last sequence multicast to subscribers, null until the first poll
+    private volatile Cursor tail;
+    private volatile Disposable tailing;
+    private volatile Disposable pruning;
+
+    public BucketEventService(DatabaseClient databaseClient,
+                              @Value("${minio.events.enabled:true}") boolean enabled,
+                              @Value("${minio.events.poll-interval:250ms}") Duration pollInterval,
+                              @Value("${minio.events.gap-timeout:2s}") Duration gapTimeout,
+                              @Value("${minio.events.batch-size:500}") int batchSize,
+                              @Value("${minio.events.subscriber-buffer:1024}") int subscriberBuffer,
+                              @Value("${minio.events.retention:24h}") Duration retention,
+                              @Value("${minio.events.webhook.enabled:false}") boolean webhookEnabled,
+                              @Value("${minio.events.webhook.token:}") String webhookToken) {
+        this.databaseClient = databaseClient;
+        this.enabled = enabled;
+        this.pollInterval = pollInterval;
+        this.gapTimeout = gapTimeout;
+        this.batchSize = Math.max(batchSize, 1);
+        this.subscriberBuffer = Math.max(subscriberBuffer, 1);
+        this.retention = retention;
+        this.webhookEnabled = enabled && webhookEnabled;
+        this.webhookToken = webhookToken;
+        if (this.webhookEnabled && !StringUtils.hasText(webhookToken)) {
+            throw new IllegalArgumentException("minio.events.webhook.token is required when the webhook is enabled");
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        tailing = Flux.interval(pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> poll()
+                        .onErrorResume(e -> {
+                            log.warn("Could not read bucket events: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+        pruning = Flux.interval(Duration.ZERO, Duration.ofHours(1))
+                .onBackpressureDrop()
+                .concatMap(tick -> databaseClient.sql(PRUNE_SQL)
+                        .bind("retention", (double) retention.toSeconds())
+                        .fetch()
+                        .rowsUpdated()
+                        .onErrorResume(e -> {
+                            log.warn("Could not prune bucket events: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (tailing != null) {
+            tailing.dispose();
+        }
+        if (pruning != null) {
+            pruning.dispose();
+        }
+        live.tryEmitComplete();
+    }
+
+    public boolean isWebhookEnabled() {
+        return webhookEnabled;
+    }
+
+    /**
+     * Whether a webhook call carries the configured token, sent by MinIO as its {@code Authorization} header
+     * with or without the {@code Bearer} scheme.
+     */
+    public boolean isWebhookAuthorized(String authorization) {
+        if (!StringUtils.hasText(webhookToken) || authorization == null) {
+            return false;
+        }
+        String token = authorization.regionMatches(true, 0, "Bearer ", 0, 7)
+                ? authorization.substring(7).strip()
+                : authorization.strip();
+        return MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), webhookToken.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Mono<Void> created(UploadedObject object) {
+        return append(object.bucket(), List.of(new Change(object.key(), CREATED, object.size(), object.eTag())),
+                SOURCE_API);
+    }
+
+    public Mono<Void> created(String bucket, Collection<UploadedObject> objects) {
+        return append(bucket, objects.stream()
+                .map(object -> new Change(object.key(), CREATED, object.size(), object.eTag()))
+                .toList(), SOURCE_API);
+    }
+
+    public Mono<Void> deleted(String bucket, Collection<String> keys) {
+        return append(bucket, keys.stream().map(key -> new Change(key, DELETED, null, null)).toList(), SOURCE_API);
+    }
+
+    /**
+     * Records the object events of a MinIO bucket notification; other events are ignored.
+     */
+    public Mono<Void> notified(MinioNotification notification) {
+        Map<String, List<Change>> byBucket = changes(notification).stream()
+                .collect(Collectors.groupingBy(Notified::bucket, LinkedHashMap::new,
+                        Collectors.mapping(Notified::change, Collectors.toList())));
+        return Flux.fromIterable(byBucket.entrySet())
+                .concatMap(bucket -> append(bucket.getKey(), bucket.getValue(), SOURCE_MINIO))
+                .then();
+    }
+
+    /**
+     * Whether every event after {@code after} is still kept, so a feed resuming from it misses none.
+     */
+    public Mono<Boolean> retains(long after) {
+        return databaseClient.sql(FLOOR_SQL)
+                .map(row -> row.get("floor", Long.class))
+                .one()
+                .map(floor -> after >= floor);
+    }
+
+    /**
+     * The events of {@code bucket} under {@code prefix}. Without {@code after} the feed starts with the next
+     * event; with it, retained events after that sequence are replayed first.
+     */
+    public Flux<BucketEvent> events(String bucket, String prefix, Long after) {
+        if (!enabled) {
+            return Flux.error(new IllegalStateException("Bucket events are disabled"));
+        }
+        String keyPrefix = Objects.requireNonNullElse(prefix, "");
+        return Flux.defer(() -> {
+            Disposable.Swap connection = Disposables.swap();
+            // connected before the replay is read, so no event falls between the two
+            Flux<BucketEvent> current = live.asFlux()
+                    .filter(event -> event.bucket().equals(bucket) && event.key().startsWith(keyPrefix))
+                    .onBackpressureBuffer(subscriberBuffer, dropped -> {
+                    }, BufferOverflowStrategy.ERROR)
+                    .publish()
+                    .autoConnect(0, connection::update);
+            if (after == null) {
+                return current.doFinally(signal -> connection.dispose());
+            }
+            AtomicLong replayed = new AtomicLong(after);
+            Cursor cursor = tail;
+            return history(bucket, keyPrefix, after, cursor == null ? Long.MAX_VALUE : cursor.position())
+                    .doOnNext(event -> replayed.set(event.sequence()))
+                    .concatWith(current.filter(event -> event.sequence() > replayed.get()))
+                    .doFinally(signal -> connection.dispose());
+        });
+    }
+
+    private Flux<BucketEvent> history(String bucket, String prefix, long after, long until) {
+        return historyPage(bucket, prefix, after, until)
+                .expand(page -> page.size() < batchSize
+                        ? Mono.empty()
+                        : historyPage(bucket, prefix, page.getLast().sequence(), until))
+                .concatMapIterable(page -> page);
+    }
+
+    private Mono<List<BucketEvent>> historyPage(String bucket, String prefix, long after, long until) {
+        return databaseClient.sql(HISTORY_SQL)
+                .bind("bucket", bucket)
+                .bind("prefix", prefix)
+                .bind("after", after)
+                .bind("until", until)
+                .bind("limit", batchSize)
+                .map(BucketEventService::event)
+                .all()
+                .collectList();
+    }
+
+    private Mono<Void> poll() {
+        Mono<Cursor> start = tail != null
+                ? Mono.just(tail)
+                : databaseClient.sql(LAST_SEQUENCE_SQL)
+                        .map(row -> new Cursor(row.get("seq", Long.class)))
+                        .one()
+                        .doOnNext(cursor -> tail = cursor);
+        return start.flatMapMany(cursor -> tailPage(cursor)
+                        // the next page only once this one was delivered up to its last row
+                        .expand(page -> page.size() < batchSize || cursor.position() < page.getLast().sequence()
+                                ? Mono.empty()
+                                : tailPage(cursor)))
+                .then();
+    }
+
+    private Mono<List<BucketEvent>> tailPage(Cursor cursor) {
+        return databaseClient.sql(TAIL_SQL)
+                .bind("after", cursor.position())
+                .bind("limit", batchSize)
+                .map(BucketEventService::event)
+                .all()
+                .collectList()
+                .doOnNext(page -> cursor.advance(page, System.nanoTime(), gapTimeout.toNanos())
+                        .forEach(live::tryEmitNext));
+    }
+
+    private Mono<Void> append(String bucket, List<Change> changes, String source) {
+        if (!enabled || changes.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(INSERT_SQL)
+                .bind("bucket", bucket)
+                .bind("keys", changes.stream().map(Change::key).toArray(String[]::new))
+                .bind("types", changes.stream().map(Change::type).toArray(String[]::new))
+                .bind("sizes", changes.stream().map(Change::size).toArray(Long[]::new))
+                .bind("eTags", changes.stream().map(Change::eTag).toArray(String[]::new))
+                .bind("sources", changes.stream().map(change -> source).toArray(String[]::new))
+                .then();
+    }
+
+    /**
+     * The object creations and deletions in a MinIO notification, with their keys decoded.
+     */
+    static List<Notified> changes(MinioNotification notification) {
+        List<Notified> changes = new ArrayList<>();
+        if (notification == null || notification.records() == null) {
+            return changes;
+        }
+        for (MinioNotification.Record record : notification.records()) {
+            if (record.eventName() == null || record.s3() == null || record.s3().bucket() == null
+                    || record.s3().object() == null || record.s3().object().key() == null) {
+                continue;
+            }
+            String type;
+            if (record.eventName().startsWith("s3:ObjectCreated:")) {
+                type = CREATED;
+            } else if (record.eventName().startsWith("s3:ObjectRemoved:")) {
+                type = DELETED;
+            } else {
+                continue;
+            }
+            MinioNotification.S3Object object = record.s3().object();
+            changes.add(new Notified(record.s3().bucket().name(), new Change(
+                    URLDecoder.decode(object.key(), StandardCharsets.UTF_8),
+                    type,
+                    CREATED.equals(type) ? object.size() : null,
+                    CREATED.equals(type) ? object.eTag() : null)));
+        }
+        return changes;
+    }
+
+    private static BucketEvent event(Readable row) {
+        return new BucketEvent(
+                row.get("seq", Long.class),
+                row.get("bucket", String.class),
+                row.get("object_key", String.class),
+                row.get("type", String.class),
+                row.get("size", Long.class),
+                row.get("e_tag", String.class),
+                row.get("source", String.class),
+                row.get("created_at", Instant.class));
+    }
+
+    /**
+     * The position of the tail in the sequence. Events are released in sequence order; a number missing from
+     * the rows read holds back the events after it until it has been missing for the gap timeout.
+     */
+    static final class Cursor {
+
+        // read by replays on other threads
+        private volatile long position;
+        // System.nanoTime() when the number after position was first found missing, -1 while none is
+        private long gapSince = -1;
+
+        Cursor(long position) {
+            this.position = position;
+        }
+
+        long position() {
+            return position;
+        }
+
+        /**
+         * Moves past the events of {@code rows}, ordered by sequence, that can be released at {@code now}.
+         *
+         * @return the released events, in order
+         */
+        List<BucketEvent> advance(List<BucketEvent> rows, long now, long gapTimeoutNanos) {
+            List<BucketEvent> released = new ArrayList<>();
+            for (BucketEvent event : rows) {
+                if (event.sequence() <= position) {
+                    continue;
+                }
+                if (event.sequence() != position + 1) {
+                    if (gapSince < 0) {
+                        gapSince = now;
+                    }
+                    if (now - gapSince < gapTimeoutNanos) {
+                        break;
+                    }
+                }
+                gapSince = -1;
+                position = event.sequence();
+                released.add(event);
+            }
+            return released;
+        }
+    }
+
+    record Change(String key, String type, Long size, String eTag) {
+    }
+
+    record Notified(String bucket, Change change) {
+    }
+}
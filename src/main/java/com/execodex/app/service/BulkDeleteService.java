@@ -0,0 +1,121 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.DeleteResult;
+import com.execodex.app.domain.ObjectEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Deletes keys in {@code DeleteObjects} batches of up to 1000, running {@code minio.delete.concurrency}
+ * batches at once. Keys are consumed lazily, so a prefix delete pages through the listing as batches
+ * complete and memory stays flat regardless of how many objects match. Keys that are content references
+ * (see {@link ContentStore}) are released instead of deleted, and the metadata of deleted keys is removed
+ * from the index and recorded as bucket events. Blobs of the content store are never deleted directly, so neither keys nor prefixes under
+ * its blob prefix are accepted.
+ */
+@Service
+public class BulkDeleteService {
+
+    // DeleteObjects accepts at most 1000 keys per request
+    static final int MAX_BATCH_SIZE = 1000;
+
+    private final S3AsyncClient s3AsyncClient;
+    private final ObjectListingService objectListingService;
+    private final ContentStore contentStore;
+    private final ObjectMetadataService objectMetadataService;
+    private final BucketEventService bucketEventService;
+    private final int concurrency;
+
+    public BulkDeleteService(S3AsyncClient s3AsyncClient,
+                             ObjectListingService objectListingService,
+                             ContentStore contentStore,
+                             ObjectMetadataService objectMetadataService,
+                             BucketEventService bucketEventService,
+                             @Value("${minio.delete.concurrency:4}") int concurrency) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.objectListingService = objectListingService;
+        this.contentStore = contentStore;
+        this.objectMetadataService = objectMetadataService;
+        this.bucketEventService = bucketEventService;
+        this.concurrency = Math.max(concurrency, 1);
+    }
+
+    public Flux<DeleteResult> delete(String bucket, Flux<String> keys) {
+        return keys
+                .buffer(MAX_BATCH_SIZE)
+                .flatMap(batch -> releaseReferences(bucket, batch)
+                        .collectList()
+                        .flatMapMany(results -> {
+                            List<String> deleted = results.stream()
+                                    .filter(DeleteResult::deleted)
+                                    .map(DeleteResult::key)
+                                    .toList();
+                            return objectMetadataService.remove(bucket, deleted)
+                                    .then(bucketEventService.deleted(bucket, deleted))
+                                    .thenMany(Flux.fromIterable(results));
+                        }), concurrency, 1);
+    }
+
+    public Flux<DeleteResult> deletePrefix(String bucket, String prefix) {
+        if (contentStore.isBlobKey(prefix)) {
+            return Flux.error(new IllegalArgumentException("prefix " + prefix + " holds deduplicated content"));
+        }
+        return delete(bucket, objectListingService.list(bucket, prefix, null, null, null)
+                .filter(entry -> !entry.prefix())
+                .map(ObjectEntry::key));
+    }
+
+    // keys that are content references are released in the content store; the rest are MinIO objects
+    private Flux<DeleteResult> releaseReferences(String bucket, List<String> batch) {
+        List<String> keys = batch.stream().filter(key -> !contentStore.isBlobKey(key)).toList();
+        Flux<DeleteResult> blobs = Flux.fromIterable(batch)
+                .filter(contentStore::isBlobKey)
+                .map(key -> new DeleteResult(key, false, "Deduplicated content is deleted with its references"));
+        return contentStore.release(bucket, keys)
+                .collect(Collectors.toSet())
+                .flatMapMany(released -> {
+                    List<String> objects = keys.stream().filter(key -> !released.contains(key)).toList();
+                    return Flux.fromIterable(released)
+                            .map(key -> new DeleteResult(key, true, null))
+                            .concatWith(objects.isEmpty() ? Flux.empty() : deleteBatch(bucket, objects));
+                })
+                .onErrorResume(e -> Flux.fromIterable(keys)
+                        .map(key -> new DeleteResult(key, false, e.getMessage())))
+                .concatWith(blobs);
+    }
+
+    private Flux<DeleteResult> deleteBatch(String bucket, List<String> keys) {
+        DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
+                .bucket(bucket)
+                .delete(Delete.builder()
+                        .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                        .quiet(false)
+                        .build())
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.deleteObjects(deleteObjectsRequest))
+                .flatMapIterable(BulkDeleteService::results)
+                .onErrorResume(e -> Flux.fromIterable(keys)
+                        .map(key -> new DeleteResult(key, false, e.getMessage())));
+    }
+
+    private static List<DeleteResult> results(DeleteObjectsResponse response) {
+        return Stream.concat(
+                        response.deleted().stream()
+                                .map(deleted -> new DeleteResult(deleted.key(), true, null)),
+                        response.errors().stream()
+                                .map(error -> new DeleteResult(error.key(), false, error.code() + ": " + error.message())))
+                .toList();
+    }
+}
@@ -0,0 +1,269 @@
+package com.execodex.app.service;
+
+import com.execodex.app.configs.CompressionProperties;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Opt-in compression of stored objects ({@code minio.compression.enabled}).
+ * <p>
+ * Uploads whose content type matches {@code minio.compression.content-types} are compressed with the codec of
+ * their bucket while they stream towards MinIO; the codec is stored as the object's {@code Content-Encoding} and
+ * in its {@value #CODEC_METADATA} user metadata, which tells them apart from objects that were stored already
+ * encoded by a client and are served as they are.
+ * Downloads of such objects are passed through compressed when the client accepts the encoding, and
+ * decompressed on the fly otherwise. The codecs are blocking streams, so each compression runs on a thread
+ * between a {@code subscriberInputStream} that requests {@code minio.compression.prefetch} buffers ahead and an
+ * {@code outputStreamPublisher} that writes only as far as downstream demand allows; neither side ever holds
+ * more than a few buffers of an object. A stream keeps its thread for as long as its slowest side takes, so
+ * the threads come from a pool of their own, {@code minio.compression.max-streams} large, which the rest of
+ * the application does not share; streams beyond it fail with {@link RejectedExecutionException}.
+ */
+@Service
+public class CompressionService implements DisposableBean {
+
+    /**
+     * User metadata key holding the codec of objects compressed by this service.
+     */
+    public static final String CODEC_METADATA = "compression-codec";
+
+    private final boolean enabled;
+    private final Codec defaultCodec;
+    private final Map<String, Codec> bucketCodecs = new HashMap<>();
+    private final List<MediaType> contentTypes;
+    private final int gzipLevel;
+    private final int zstdLevel;
+    private final int bufferSize;
+    private final int prefetch;
+    private final Semaphore streams;
+    private final Scheduler scheduler;
+    private final Executor executor;
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    public CompressionService(CompressionProperties properties) {
+        this.enabled = properties.enabled();
+        this.defaultCodec = Codec.parse(properties.codec());
+        if (properties.buckets() != null) {
+            properties.buckets().forEach((bucket, codec) -> bucketCodecs.put(bucket, Codec.parse(codec)));
+        }
+        this.contentTypes = MediaType.parseMediaTypes(properties.contentTypes());
+        this.gzipLevel = Math.clamp(properties.gzipLevel(), Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION);
+        this.zstdLevel = Math.clamp(properties.zstdLevel(), 1, 19);
+        this.bufferSize = (int) Math.clamp(properties.bufferSize().toBytes(), 1024, 1024 * 1024);
+        this.prefetch = Math.max(properties.prefetch(), 1);
+        int maxStreams = Math.max(properties.maxStreams(), 1);
+        this.streams = new Semaphore(maxStreams);
+        // a stream's slot is released as it completes, shortly before its thread is free again
+        this.scheduler = Schedulers.newBoundedElastic(maxStreams, maxStreams, "compression");
+        this.executor = task -> scheduler.schedule(task);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    /**
+     * The codec an upload of {@code contentType} to {@code bucket} is stored with, {@code null} to store it as is.
+     */
+    public Codec codecFor(String bucket, String contentType) {
+        if (!enabled || contentType == null) {
+            return null;
+        }
+        Codec codec = bucketCodecs.containsKey(bucket) ? bucketCodecs.get(bucket) : defaultCodec;
+        if (codec == null) {
+            return null;
+        }
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return contentTypes.stream().anyMatch(type -> type.includes(mediaType)) ? codec : null;
+    }
+
+    public Flux<DataBuffer> compress(Codec codec, Flux<DataBuffer> content) {
+        return admitted(DataBufferUtils.outputStreamPublisher(out -> {
+            try (InputStream in = DataBufferUtils.subscriberInputStream(content, prefetch);
+                 OutputStream encoder = codec.encoder(out, codec == Codec.GZIP ? gzipLevel : zstdLevel, bufferSize)) {
+                in.transferTo(encoder);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, bufferFactory, executor, bufferSize));
+    }
+
+    public Flux<DataBuffer> decompress(Codec codec, Flux<DataBuffer> content) {
+        return admitted(DataBufferUtils.outputStreamPublisher(out -> {
+            try (InputStream in = DataBufferUtils.subscriberInputStream(content, prefetch);
+                 InputStream decoder = codec.decoder(in, bufferSize)) {
+                decoder.transferTo(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, bufferFactory, executor, bufferSize));
+    }
+
+    private Flux<DataBuffer> admitted(Publisher<DataBuffer> stream) {
+        return Flux.defer(() -> {
+            if (!streams.tryAcquire()) {
+                return Flux.error(new RejectedExecutionException("Too many streams being compressed"));
+            }
+            return Flux.from(stream).doFinally(signal -> streams.release());
+        });
+    }
+
+    /**
+     * The user metadata marking an object stored with {@code contentEncoding} as compressed by this service,
+     * {@code null} for an object stored as is.
+     */
+    public static Map<String, String> metadata(String contentEncoding) {
+        return contentEncoding == null ? null : Map.of(CODEC_METADATA, contentEncoding);
+    }
+
+    /**
+     * Whether an {@code Accept-Encoding} header admits {@code codec}, either by name or through {@code *}, and
+     * not with {@code q=0}.
+     */
+    public static boolean accepts(List<String> acceptEncoding, Codec codec) {
+        Boolean wildcard = null;
+        for (String header : acceptEncoding) {
+            for (String element : header.split(",")) {
+                String[] parameters = element.split(";");
+                String coding = parameters[0].strip().toLowerCase(Locale.ROOT);
+                boolean acceptable = true;
+                for (int i = 1; i < parameters.length; i++) {
+                    String parameter = parameters[i].strip();
+                    if (parameter.length() > 2 && parameter.substring(0, 2).equalsIgnoreCase("q=")) {
+                        acceptable = quality(parameter.substring(2)) > 0;
+                    }
+                }
+                if (coding.equals(codec.encoding())) {
+                    return acceptable;
+                }
+                if (coding.equals("*")) {
+                    wildcard = acceptable;
+                }
+            }
+        }
+        return Boolean.TRUE.equals(wildcard);
+    }
+
+    private static double quality(String value) {
+        try {
+            return Double.parseDouble(value.strip());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    public enum Codec {
+
+        GZIP("gzip") {
+            @Override
+            OutputStream encoder(OutputStream out, int level, int bufferSize) throws IOException {
+                return new GZIPOutputStream(out, bufferSize) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            }
+
+            @Override
+            InputStream decoder(InputStream in, int bufferSize) throws IOException {
+                return new GZIPInputStream(in, bufferSize);
+            }
+        },
+        ZSTD("zstd") {
+            @Override
+            OutputStream encoder(OutputStream out, int level, int bufferSize) throws IOException {
+                return new ZstdOutputStream(out, level);
+            }
+
+            @Override
+            InputStream decoder(InputStream in, int bufferSize) throws IOException {
+                return new ZstdInputStream(in);
+            }
+        };
+
+        private final String encoding;
+
+        Codec(String encoding) {
+            this.encoding = encoding;
+        }
+
+        /**
+         * The {@code Content-Encoding} token of the codec.
+         */
+        public String encoding() {
+            return encoding;
+        }
+
+        /**
+         * The codec a stored object was compressed with by this service, {@code null} if it was not, even when
+         * it has a {@code Content-Encoding}.
+         */
+        public static Codec of(HeadObjectResponse head) {
+            String marked = head.metadata().get(CODEC_METADATA);
+            return marked != null && marked.equalsIgnoreCase(head.contentEncoding()) ? fromEncoding(marked) : null;
+        }
+
+        /**
+         * The codec named by a {@code Content-Encoding} token, {@code null} for other encodings.
+         */
+        public static Codec fromEncoding(String contentEncoding) {
+            if (contentEncoding == null) {
+                return null;
+            }
+            for (Codec codec : values()) {
+                if (codec.encoding.equalsIgnoreCase(contentEncoding.strip())) {
+                    return codec;
+                }
+            }
+            return null;
+        }
+
+        static Codec parse(String name) {
+            if (!StringUtils.hasText(name) || name.equalsIgnoreCase("none")) {
+                return null;
+            }
+            Codec codec = fromEncoding(name);
+            if (codec == null) {
+                throw new IllegalArgumentException("Unknown compression codec " + name + ", expected gzip, zstd or none");
+            }
+            return codec;
+        }
+
+        abstract OutputStream encoder(OutputStream out, int level, int bufferSize) throws IOException;
+
+        abstract InputStream decoder(InputStream in, int bufferSize) throws IOException;
+    }
+}
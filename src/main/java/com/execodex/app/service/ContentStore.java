@@ -0,0 +1,377 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.ObjectEntry;
+import com.execodex.app.domain.UploadedObject;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Optional content-addressed storage for uploads ({@code minio.dedup.enabled}).
+ * <p>
+ * Uploads are hashed with SHA-256 while they stream to MinIO. Every distinct content is stored once per
+ * bucket as a blob under {@code minio.dedup.blob-prefix}; the uploaded key becomes a reference to it in
+ * {@code content_reference}, and {@code content_blob.ref_count} counts the references. When the content
+ * already exists, a single-part upload is never sent to MinIO and a multipart upload is aborted rather
+ * than completed. Deleting a reference removes the blob once no other reference is left.
+ * <p>
+ * Referenced keys are not objects in MinIO themselves, so downloads and presigned links go through
+ * {@link #resolve} to find the blob, and listings merge in {@link #references} while leaving out the blobs
+ * themselves. Bytes not stored thanks to deduplication are counted in
+ * {@code minio.dedup.bytes.saved}.
+ */
+@Service
+public class ContentStore {
+
+    private static final String ACQUIRE_BLOB_SQL = """
+            UPDATE content_blob SET ref_count = ref_count + 1
+            WHERE bucket = :bucket AND sha256 = :sha256
+            RETURNING object_key
+            """;
+    // a concurrent upload of the same content may have registered it first; then its blob is referenced
+    private static final String REGISTER_BLOB_SQL = """
+            INSERT INTO content_blob (bucket, sha256, object_key, size, e_tag, ref_count)
+            VALUES (:bucket, :sha256, :objectKey, :size, :eTag, 1)
+            ON CONFLICT (bucket, sha256) DO UPDATE SET ref_count = content_blob.ref_count + 1
+            RETURNING object_key
+            """;
+    private static final String RELEASE_BLOB_SQL = """
+            UPDATE content_blob SET ref_count = ref_count - 1
+            WHERE bucket = :bucket AND sha256 = :sha256
+            RETURNING ref_count
+            """;
+    // only deletes if nobody acquired the blob again in the meantime
+    private static final String DELETE_BLOB_SQL = """
+            DELETE FROM content_blob
+            WHERE bucket = :bucket AND sha256 = :sha256 AND ref_count <= 0
+            RETURNING object_key
+            """;
+    // the locking subquery returns the previous hash even if a concurrent upload changed it meanwhile
+    private static final String REPLACE_REFERENCE_SQL = """
+            UPDATE content_reference r SET sha256 = :sha256, created_at = now()
+            FROM (SELECT sha256 FROM content_reference
+                  WHERE bucket = :bucket AND object_key = :key FOR UPDATE) previous
+            WHERE r.bucket = :bucket AND r.object_key = :key
+            RETURNING previous.sha256 AS previous
+            """;
+    private static final String INSERT_REFERENCE_SQL = """
+            INSERT INTO content_reference (bucket, object_key, sha256) VALUES (:bucket, :key, :sha256)
+            ON CONFLICT (bucket, object_key) DO NOTHING
+            """;
+    private static final String DELETE_REFERENCES_SQL = """
+            DELETE FROM content_reference
+            WHERE bucket = :bucket AND object_key = ANY(:keys)
+            RETURNING object_key, sha256
+            """;
+    private static final String RESOLVE_SQL = """
+            SELECT b.object_key FROM content_reference r
+            JOIN content_blob b ON b.bucket = r.bucket AND b.sha256 = r.sha256
+            WHERE r.bucket = :bucket AND r.object_key = :key
+            """;
+    // byte order, as MinIO lists keys
+    private static final String LIST_REFERENCES_SQL = """
+            SELECT r.object_key, b.size, b.e_tag, CAST(r.created_at AS TIMESTAMPTZ) AS created_at
+            FROM content_reference r
+            JOIN content_blob b ON b.bucket = r.bucket AND b.sha256 = r.sha256
+            WHERE r.bucket = :bucket AND r.object_key >= :prefix AND r.object_key > :after
+              AND starts_with(r.object_key, :prefix)
+            ORDER BY r.object_key
+            LIMIT :limit
+            """;
+    private static final String HAS_REFERENCES_SQL = """
+            SELECT EXISTS (SELECT 1 FROM content_reference
+                           WHERE bucket = :bucket AND object_key >= :prefix
+                             AND starts_with(object_key, :prefix)) AS found
+            """;
+    private static final int REFERENCE_PAGE_SIZE = 1000;
+
+    private final S3AsyncClient s3AsyncClient;
+    private final MultipartUploadService multipartUploadService;
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final String blobPrefix;
+    private final Counter bytesSaved;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ContentStore(S3AsyncClient s3AsyncClient,
+                        MultipartUploadService multipartUploadService,
+                        DatabaseClient databaseClient,
+                        MeterRegistry meterRegistry,
+                        @Value("${minio.dedup.enabled:false}") boolean enabled,
+                        @Value("${minio.dedup.blob-prefix:.blobs/}") String blobPrefix) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.multipartUploadService = multipartUploadService;
+        this.databaseClient = databaseClient;
+        this.enabled = enabled;
+        this.blobPrefix = blobPrefix;
+        this.bytesSaved = Counter.builder("minio.dedup.bytes.saved")
+                .baseUnit("bytes")
+                .description("Upload bytes not stored because identical content already existed")
+                .register(meterRegistry);
+        this.hits = uploads(meterRegistry, "duplicate");
+        this.misses = uploads(meterRegistry, "new");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether {@code key} lies under the blob prefix. Blobs are only reachable through their references, so
+     * listings, archives and deletes leave these keys alone.
+     */
+    public boolean isBlobKey(String key) {
+        return enabled && key.startsWith(blobPrefix);
+    }
+
+    /**
+     * Uploads {@code content} as a blob, or references the existing blob of identical content. Content stored
+     * with a {@code contentEncoding} is hashed as encoded, so it only matches content encoded the same way.
+     * <p>
+     * The reference taken on existing content is released again if the upload fails or is cancelled before
+     * {@code key} refers to it; once the upload is complete, the references are written even if the caller
+     * goes away, so a count is never left without its reference.
+     */
+    public Mono<UploadedObject> upload(String bucket, String key, String contentType, String contentEncoding,
+                                       Flux<DataBuffer> content) {
+        return Mono.defer(() -> {
+            String blobKey = blobPrefix + UUID.randomUUID();
+            PendingReference pending = new PendingReference(bucket);
+            return multipartUploadService.uploadHashed(bucket, blobKey, contentType, contentEncoding, content,
+                            (sha256, size) -> Mono.fromFuture(acquireBlob(bucket, sha256)
+                                    .doOnNext(objectKey -> pending.acquired(sha256))
+                                    .hasElement()
+                                    .toFuture(), true))
+                    .flatMap(upload -> {
+                        pending.linking();
+                        UploadedObject blob = upload.object();
+                        Mono<Void> registered = upload.stored()
+                                ? registerBlob(bucket, upload.sha256(), blob)
+                                : Mono.fromRunnable(() -> saved(blob.size()));
+                        Mono<Void> linked = registered
+                                .then(linkReference(bucket, key, upload.sha256())
+                                        .onErrorResume(e -> releaseBlob(bucket, upload.sha256()).then(Mono.error(e))));
+                        return Mono.fromFuture(linked.toFuture(), true)
+                                .thenReturn(new UploadedObject(bucket, key, contentType, blob.size(), blob.eTag()));
+                    })
+                    .onErrorResume(e -> pending.abandon().onErrorComplete().then(Mono.error(e)))
+                    .doOnCancel(() -> pending.abandon().subscribe());
+        });
+    }
+
+    /**
+     * The MinIO key holding the content of {@code key}: its blob when {@code key} is a reference, otherwise
+     * {@code key} itself.
+     */
+    public Mono<String> resolve(String bucket, String key) {
+        if (!enabled) {
+            return Mono.just(key);
+        }
+        return databaseClient.sql(RESOLVE_SQL)
+                .bind("bucket", bucket)
+                .bind("key", key)
+                .map(row -> row.get("object_key", String.class))
+                .one()
+                .defaultIfEmpty(key);
+    }
+
+    /**
+     * Removes the references among {@code keys} and releases their blobs.
+     *
+     * @return the keys that were references; the others are plain objects and must be deleted by the caller
+     */
+    public Flux<String> release(String bucket, List<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return Flux.empty();
+        }
+        return databaseClient.sql(DELETE_REFERENCES_SQL)
+                .bind("bucket", bucket)
+                .bind("keys", keys.toArray(String[]::new))
+                .map(row -> new Reference(row.get("object_key", String.class), row.get("sha256", String.class)))
+                .all()
+                .concatMap(reference -> releaseBlob(bucket, reference.sha256()).thenReturn(reference.key()));
+    }
+
+    /**
+     * The references under {@code prefix} after {@code startAfter}, in key order, with the size and ETag of
+     * their content. References are read page by page as the subscriber consumes them.
+     */
+    public Flux<ObjectEntry> references(String bucket, String prefix, String startAfter) {
+        if (!enabled) {
+            return Flux.empty();
+        }
+        String keyPrefix = prefix == null ? "" : prefix;
+        return referencePage(bucket, keyPrefix, startAfter == null ? "" : startAfter)
+                .expand(page -> page.size() < REFERENCE_PAGE_SIZE
+                        ? Mono.empty()
+                        : referencePage(bucket, keyPrefix, page.getLast().key()))
+                .concatMapIterable(page -> page, 1);
+    }
+
+    /**
+     * Whether any key under {@code prefix} is a reference.
+     */
+    public Mono<Boolean> hasReferences(String bucket, String prefix) {
+        if (!enabled) {
+            return Mono.just(false);
+        }
+        return databaseClient.sql(HAS_REFERENCES_SQL)
+                .bind("bucket", bucket)
+                .bind("prefix", prefix)
+                .map(row -> Boolean.TRUE.equals(row.get("found", Boolean.class)))
+                .one();
+    }
+
+    private Mono<List<ObjectEntry>> referencePage(String bucket, String prefix, String after) {
+        return databaseClient.sql(LIST_REFERENCES_SQL)
+                .bind("bucket", bucket)
+                .bind("prefix", prefix)
+                .bind("after", after)
+                .bind("limit", REFERENCE_PAGE_SIZE)
+                .map(row -> new ObjectEntry(row.get("object_key", String.class), row.get("size", Long.class),
+                        row.get("e_tag", String.class), row.get("created_at", Instant.class), false))
+                .all()
+                .collectList();
+    }
+
+    private Mono<String> acquireBlob(String bucket, String sha256) {
+        return databaseClient.sql(ACQUIRE_BLOB_SQL)
+                .bind("bucket", bucket)
+                .bind("sha256", sha256)
+                .map(row -> row.get("object_key", String.class))
+                .one();
+    }
+
+    private Mono<Void> registerBlob(String bucket, String sha256, UploadedObject blob) {
+        return databaseClient.sql(REGISTER_BLOB_SQL)
+                .bind("bucket", bucket)
+                .bind("sha256", sha256)
+                .bind("objectKey", blob.key())
+                .bind("size", blob.size())
+                .bind("eTag", blob.eTag())
+                .map(row -> row.get("object_key", String.class))
+                .one()
+                .flatMap(objectKey -> {
+                    if (objectKey.equals(blob.key())) {
+                        misses.increment();
+                        return Mono.empty();
+                    }
+                    saved(blob.size());
+                    return deleteObject(bucket, blob.key());
+                });
+    }
+
+    /**
+     * Points {@code key} at {@code sha256}. If {@code key} referenced content before, that content loses the
+     * reference; when it is the same content, this releases the extra reference taken by the upload.
+     */
+    private Mono<Void> linkReference(String bucket, String key, String sha256) {
+        return replaceReference(bucket, key, sha256)
+                .flatMap(previous -> previous.isPresent() ? releaseBlob(bucket, previous.get()) : Mono.empty());
+    }
+
+    private Mono<Optional<String>> replaceReference(String bucket, String key, String sha256) {
+        return databaseClient.sql(REPLACE_REFERENCE_SQL)
+                .bind("bucket", bucket)
+                .bind("key", key)
+                .bind("sha256", sha256)
+                .map(row -> Optional.of(row.get("previous", String.class)))
+                .one()
+                .switchIfEmpty(Mono.defer(() -> databaseClient.sql(INSERT_REFERENCE_SQL)
+                        .bind("bucket", bucket)
+                        .bind("key", key)
+                        .bind("sha256", sha256)
+                        .fetch()
+                        .rowsUpdated()
+                        // lost the insert to a concurrent upload of the same key: replace its reference instead
+                        .flatMap(inserted -> inserted > 0
+                                ? Mono.just(Optional.<String>empty())
+                                : replaceReference(bucket, key, sha256))));
+    }
+
+    private Mono<Void> releaseBlob(String bucket, String sha256) {
+        return databaseClient.sql(RELEASE_BLOB_SQL)
+                .bind("bucket", bucket)
+                .bind("sha256", sha256)
+                .map(row -> row.get("ref_count", Integer.class))
+                .one()
+                .filter(refCount -> refCount <= 0)
+                .flatMap(refCount -> databaseClient.sql(DELETE_BLOB_SQL)
+                        .bind("bucket", bucket)
+                        .bind("sha256", sha256)
+                        .map(row -> row.get("object_key", String.class))
+                        .one())
+                .flatMap(objectKey -> deleteObject(bucket, objectKey));
+    }
+
+    private Mono<Void> deleteObject(String bucket, String key) {
+        DeleteObjectRequest deleteObjectRequest = DeleteObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .build();
+        return Mono.fromFuture(() -> s3AsyncClient.deleteObject(deleteObjectRequest)).then();
+    }
+
+    private void saved(long bytes) {
+        hits.increment();
+        bytesSaved.increment(bytes);
+    }
+
+    private static Counter uploads(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("minio.dedup.uploads")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record Reference(String key, String sha256) {
+    }
+
+    /**
+     * The blob reference an upload of existing content takes before {@code key} refers to it. Whichever comes
+     * first of the upload moving on to link it and the upload being abandoned settles it; a reference
+     * acquired after the upload was abandoned is released straight away.
+     */
+    private final class PendingReference {
+
+        private final String bucket;
+        private final AtomicReference<String> sha256 = new AtomicReference<>();
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        PendingReference(String bucket) {
+            this.bucket = bucket;
+        }
+
+        void acquired(String sha256) {
+            this.sha256.set(sha256);
+            if (settled.get() && this.sha256.compareAndSet(sha256, null)) {
+                releaseBlob(bucket, sha256).subscribe();
+            }
+        }
+
+        void linking() {
+            settled.set(true);
+            sha256.set(null);
+        }
+
+        Mono<Void> abandon() {
+            settled.set(true);
+            String acquired = sha256.getAndSet(null);
+            return acquired == null ? Mono.empty() : releaseBlob(bucket, acquired);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.execodex.app.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Optional read-through cache of whole objects on local disk.
+ * <p>
+ * Entries are validated against the ETag of the current object version and evicted by Caffeine's
+ * size-weighted W-TinyLFU policy once {@code minio.cache.disk.max-size} bytes are used. Readers hold a
+ * {@link Lease} on the file they serve, and an evicted or replaced file is only deleted once the last lease
+ * is released. A miss is served from MinIO as before while the object is written to disk in the background,
+ * so a cold read is not held back until the whole file is in place; concurrent misses for the same object
+ * version share one background fill, and the requests that find it running are counted as {@code coalesced}.
+ * A fill that fails, for instance on a full disk, is logged and leaves the object uncached. Objects larger than
+ * {@code minio.cache.disk.max-object-size} bypass the cache.
+ * <p>
+ * The index lives in memory only, so files left over from a previous run are removed at startup.
+ */
+@Service
+public class DiskObjectCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskObjectCache.class);
+    private static final String FILE_SUFFIX = ".obj";
+    private static final String PARTIAL_SUFFIX = ".part";
+
+    private final ObjectDownloadService objectDownloadService;
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxObjectSize;
+    private final Cache<CacheKey, CachedObject> index;
+    private final Set<ObjectVersion> filling = ConcurrentHashMap.newKeySet();
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private final Counter coalesced;
+
+    public DiskObjectCache(ObjectDownloadService objectDownloadService,
+                           MeterRegistry meterRegistry,
+                           @Value("${minio.cache.disk.enabled:false}") boolean enabled,
+                           @Value("${minio.cache.disk.directory:${java.io.tmpdir}/be-minio-cache}") Path directory,
+                           @Value("${minio.cache.disk.max-size:10GB}") DataSize maxSize,
+                           @Value("${minio.cache.disk.max-object-size:64MB}") DataSize maxObjectSize) {
+        this.objectDownloadService = objectDownloadService;
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxObjectSize = Math.min(maxObjectSize.toBytes(), Integer.MAX_VALUE);
+        this.index = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .weigher((CacheKey key, CachedObject cached) -> (int) cached.size())
+                .removalListener((CacheKey key, CachedObject cached, RemovalCause cause) -> {
+                    if (cached != null) {
+                        usedBytes.addAndGet(-cached.size());
+                        cached.release();
+                    }
+                })
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, index, "diskObjects");
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.stale = requests(meterRegistry, "stale");
+        this.coalesced = requests(meterRegistry, "coalesced");
+        Gauge.builder("minio.cache.disk.used", usedBytes, AtomicLong::get)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        if (enabled) {
+            prepareDirectory();
+        }
+    }
+
+    public boolean isCacheable(HeadObjectResponse head) {
+        return enabled && head.contentLength() <= maxObjectSize;
+    }
+
+    /**
+     * Leases the local file holding the object version described by {@code head}. The caller must release the
+     * lease once it has read the file. Empty on a miss, in which case the caller reads from MinIO and the object
+     * is cached in the background for later requests.
+     */
+    public Mono<Lease> get(String bucket, String key, HeadObjectResponse head) {
+        CacheKey cacheKey = new CacheKey(bucket, key);
+        CachedObject cached = index.getIfPresent(cacheKey);
+        if (cached != null && cached.eTag().equals(head.eTag()) && cached.retain()) {
+            hits.increment();
+            return Mono.just(new Lease(cached));
+        }
+
+        ObjectVersion version = new ObjectVersion(cacheKey, head.eTag());
+        if (!filling.add(version)) {
+            coalesced.increment();
+            return Mono.empty();
+        }
+        // an entry of this version that was just evicted counts as a miss
+        (cached == null || cached.eTag().equals(head.eTag()) ? misses : stale).increment();
+        fetch(version, head.contentLength())
+                .doFinally(signal -> filling.remove(version))
+                .subscribe(null, e -> log.warn("Could not cache {}/{}: {}", bucket, key, e.getMessage()));
+        return Mono.empty();
+    }
+
+    private Mono<CachedObject> fetch(ObjectVersion version, long size) {
+        String name = UUID.randomUUID().toString();
+        Path target = directory.resolve(name + FILE_SUFFIX);
+        Path partial = directory.resolve(name + PARTIAL_SUFFIX);
+        Flux<DataBuffer> content = objectDownloadService
+                .fetch(version.cacheKey().bucket(), version.cacheKey().key(), version.eTag(), 0, size - 1)
+                .map(bufferFactory::wrap);
+
+        return DataBufferUtils.write(content, partial)
+                .then(Mono.fromCallable(() -> Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .map(path -> {
+                    CachedObject cached = new CachedObject(path, version.eTag(), size);
+                    usedBytes.addAndGet(size);
+                    index.put(version.cacheKey(), cached);
+                    return cached;
+                })
+                .doOnError(e -> deleteQuietly(partial));
+    }
+
+    private void prepareDirectory() {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(directory,
+                    "*{" + FILE_SUFFIX + "," + PARTIAL_SUFFIX + "}")) {
+                leftovers.forEach(DiskObjectCache::deleteQuietly);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare disk cache directory " + directory, e);
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("minio.cache.disk.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // the file is orphaned and will be removed on the next start
+        }
+    }
+
+    private record CacheKey(String bucket, String key) {
+    }
+
+    private record ObjectVersion(CacheKey cacheKey, String eTag) {
+    }
+
+    /**
+     * A reader's claim on a cached file, which keeps the file in place until it is released.
+     */
+    public static final class Lease {
+
+        private final CachedObject cached;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Lease(CachedObject cached) {
+            this.cached = cached;
+        }
+
+        public Path path() {
+            return cached.path();
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                cached.release();
+            }
+        }
+    }
+
+    // counts the index's reference and one per lease; the file is deleted when the last one is released
+    private static final class CachedObject {
+
+        private final Path path;
+        private final String eTag;
+        private final long size;
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        CachedObject(Path path, String eTag, long size) {
+            this.path = path;
+            this.eTag = eTag;
+            this.size = size;
+        }
+
+        Path path() {
+            return path;
+        }
+
+        String eTag() {
+            return eTag;
+        }
+
+        long size() {
+            return size;
+        }
+
+        // fails once the file is gone
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count <= 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                deleteQuietly(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.execodex.app.service;
+
+import com.execodex.app.configs.MinioReadProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Subscription;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.ResponsePublisher;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Idempotent MinIO reads with per-attempt timeouts and hedging, to keep one slow MinIO node out of the p99.
+ * <p>
+ * Every attempt is bounded by {@code minio.read.attempt-timeout}, after which the SDK retries it. When a read
+ * has not answered within the {@code minio.read.hedge-percentile} latency of recent reads of the same kind, a
+ * second identical request is sent. The first successful answer is used and the attempts still running are
+ * cancelled, so a slow node is not kept busy with reads nobody waits for; a read only fails once every attempt
+ * sent has failed. The hedge delay is computed from the time each read took to its first success: a first
+ * request that answered before the hedge fired gives its own latency, and one that was beaten by its hedge
+ * gives the time the race took, which is a lower bound of its latency that still lies above the delay, so
+ * the percentile is not pulled down by the hedges. Hedges draw from a budget refilled by
+ * {@code minio.read.hedge-max-ratio} per read, and no hedge is sent before enough latencies have been seen.
+ * For {@code GetObject} the race ends with the response headers; the body is then streamed from the winner.
+ * <p>
+ * Meters: {@code minio.hedge.requests} (by {@code operation} and {@code outcome}: fired, won, budget_exhausted)
+ * and {@code minio.hedge.delay}.
+ */
+@Service
+public class HedgedReads {
+
+    private static final long BUDGET_UNIT = 1000;
+    private static final long MAX_BUDGET = 10 * BUDGET_UNIT;
+
+    private final S3AsyncClient s3AsyncClient;
+    private final MinioReadProperties properties;
+    private final AwsRequestOverrideConfiguration attemptTimeout;
+    private final Operation headObject;
+    private final Operation getObject;
+    private final Operation listObjects;
+    private final AtomicLong hedgeBudget = new AtomicLong(MAX_BUDGET);
+    private final long budgetPerRead;
+
+    public HedgedReads(S3AsyncClient s3AsyncClient, MinioReadProperties properties, MeterRegistry meterRegistry) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.properties = properties;
+        this.attemptTimeout = properties.attemptTimeout() == null
+                ? null
+                : AwsRequestOverrideConfiguration.builder().apiCallAttemptTimeout(properties.attemptTimeout()).build();
+        this.headObject = new Operation("HeadObject", meterRegistry);
+        this.getObject = new Operation("GetObject", meterRegistry);
+        this.listObjects = new Operation("ListObjectsV2", meterRegistry);
+        this.budgetPerRead = Math.round(Math.clamp(properties.hedgeMaxRatio(), 0.0, 1.0) * BUDGET_UNIT);
+    }
+
+    public Mono<HeadObjectResponse> headObject(HeadObjectRequest request) {
+        HeadObjectRequest timed = attemptTimeout == null
+                ? request
+                : request.toBuilder().overrideConfiguration(attemptTimeout).build();
+        return read(headObject, () -> s3AsyncClient.headObject(timed), response -> {
+        });
+    }
+
+    /**
+     * The object's response, available as soon as its headers arrived; the body must be consumed or cancelled.
+     */
+    public Mono<ResponsePublisher<GetObjectResponse>> getObject(GetObjectRequest request) {
+        GetObjectRequest timed = attemptTimeout == null
+                ? request
+                : request.toBuilder().overrideConfiguration(attemptTimeout).build();
+        return read(getObject, () -> s3AsyncClient.getObject(timed, AsyncResponseTransformer.toPublisher()),
+                HedgedReads::discard);
+    }
+
+    /**
+     * All pages of the listing, following continuation tokens as pages are consumed; each page is a read of
+     * its own.
+     */
+    public Flux<ListObjectsV2Response> listObjectsV2(ListObjectsV2Request request) {
+        ListObjectsV2Request timed = attemptTimeout == null
+                ? request
+                : request.toBuilder().overrideConfiguration(attemptTimeout).build();
+        return listPage(timed)
+                .expand(page -> Boolean.TRUE.equals(page.isTruncated()) && page.nextContinuationToken() != null
+                        ? listPage(timed.toBuilder().continuationToken(page.nextContinuationToken()).build())
+                        : Mono.empty());
+    }
+
+    private Mono<ListObjectsV2Response> listPage(ListObjectsV2Request request) {
+        return read(listObjects, () -> s3AsyncClient.listObjectsV2(request), response -> {
+        });
+    }
+
+    private <T> Mono<T> read(Operation operation, Supplier<CompletableFuture<T>> call, Consumer<? super T> discard) {
+        if (!properties.hedgeEnabled()) {
+            return Mono.fromFuture(call);
+        }
+        return Mono.create(sink -> {
+            hedgeBudget.getAndUpdate(budget -> Math.min(MAX_BUDGET, budget + budgetPerRead));
+            Race<T> race = new Race<>(operation, sink, discard);
+            sink.onCancel(race::cancel);
+            race.attempt(call, false);
+
+            Duration delay = operation.delay();
+            if (delay != null) {
+                race.hedgeTimer = Schedulers.parallel().schedule(() -> {
+                    if (race.done.get()) {
+                        return;
+                    }
+                    if (hedgeBudget.getAndUpdate(budget -> budget >= BUDGET_UNIT ? budget - BUDGET_UNIT : budget) < BUDGET_UNIT) {
+                        operation.budgetExhausted.increment();
+                        return;
+                    }
+                    operation.fired.increment();
+                    race.attempt(call, true);
+                }, delay.toNanos(), TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    // a response that lost the race still holds its connection until the body is cancelled
+    private static void discard(ResponsePublisher<GetObjectResponse> response) {
+        response.subscribe(new BaseSubscriber<ByteBuffer>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                cancel();
+            }
+        });
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static final class Race<T> {
+
+        private final Operation operation;
+        private final MonoSink<T> sink;
+        private final Consumer<? super T> discard;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+        // attempts sent that have not answered yet
+        private final AtomicInteger running = new AtomicInteger();
+        private final List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<>();
+        private volatile Disposable hedgeTimer;
+
+        Race(Operation operation, MonoSink<T> sink, Consumer<? super T> discard) {
+            this.operation = operation;
+            this.sink = sink;
+            this.discard = discard;
+        }
+
+        void attempt(Supplier<CompletableFuture<T>> call, boolean hedge) {
+            running.incrementAndGet();
+            if (done.get()) {
+                running.decrementAndGet();
+                return;
+            }
+            CompletableFuture<T> attempt = call.get();
+            // registered before done is checked again, so a race ending meanwhile cancels it either way
+            attempts.add(attempt);
+            if (done.get()) {
+                attempt.cancel(true);
+            }
+            attempt.whenComplete((value, error) -> complete(value, error, hedge));
+        }
+
+        private void complete(T value, Throwable error, boolean hedge) {
+            int left = running.decrementAndGet();
+            if (error != null) {
+                // another attempt may still answer; the read fails with the last attempt's error
+                if (left == 0 && done.compareAndSet(false, true)) {
+                    stop();
+                    sink.error(unwrap(error));
+                }
+                return;
+            }
+            if (!done.compareAndSet(false, true)) {
+                discard.accept(value);
+                return;
+            }
+            // the first request's latency, or when a hedge won, a lower bound of it above the current delay
+            operation.record(System.nanoTime() - start);
+            if (hedge) {
+                operation.won.increment();
+            }
+            stop();
+            sink.success(value);
+        }
+
+        void cancel() {
+            if (done.compareAndSet(false, true)) {
+                stop();
+            }
+        }
+
+        // the winner has completed already, so cancelling every attempt only stops the others
+        private void stop() {
+            Disposable timer = hedgeTimer;
+            if (timer != null) {
+                timer.dispose();
+            }
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    /**
+     * Recent latencies of one kind of read; the hedge delay is their percentile, recomputed every few reads.
+     */
+    private final class Operation {
+
+        private static final int SAMPLES = 1024;
+        private static final int MIN_SAMPLES = 100;
+        private static final int RECOMPUTE_EVERY = 64;
+
+        private final long[] samples = new long[SAMPLES];
+        private long recorded;
+        private volatile long delayNanos = -1;
+        private final Counter fired;
+        private final Counter won;
+        private final Counter budgetExhausted;
+
+        Operation(String name, MeterRegistry meterRegistry) {
+            this.fired = hedges(meterRegistry, name, "fired");
+            this.won = hedges(meterRegistry, name, "won");
+            this.budgetExhausted = hedges(meterRegistry, name, "budget_exhausted");
+            Gauge.builder("minio.hedge.delay", this, operation -> Math.max(operation.delayNanos, 0) / 1e9)
+                    .tag("operation", name)
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+
+        synchronized void record(long nanos) {
+            samples[(int) (recorded++ % SAMPLES)] = nanos;
+            if (recorded >= MIN_SAMPLES && recorded % RECOMPUTE_EVERY == 0) {
+                long[] sorted = Arrays.copyOf(samples, (int) Math.min(recorded, SAMPLES));
+                Arrays.sort(sorted);
+                long percentile = sorted[(int) Math.min(sorted.length - 1, sorted.length * properties.hedgePercentile())];
+                delayNanos = Math.clamp(percentile, properties.hedgeMinDelay().toNanos(), properties.hedgeMaxDelay().toNanos());
+            }
+        }
+
+        // null until enough reads have been seen to know what slow means
+        Duration delay() {
+            long nanos = delayNanos;
+            return nanos < 0 ? null : Duration.ofNanos(nanos);
+        }
+
+        private static Counter hedges(MeterRegistry meterRegistry, String operation, String outcome) {
+            return Counter.builder("minio.hedge.requests")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry);
+        }
+    }
+}
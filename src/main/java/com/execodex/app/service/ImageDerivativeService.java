@@ -0,0 +1,428 @@
+package com.execodex.app.service;
+
+import com.execodex.app.configs.ImageProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Resized and re-encoded copies of images, generated once and kept in MinIO.
+ * <p>
+ * A derivative is stored in the source's bucket under {@code minio.images.derivative-prefix}, keyed by the
+ * source key, its ETag and the {@link Spec}, so it is found again by a head request and a changed source gets
+ * new derivatives. Derivatives are left out of listings (see {@link ObjectListingService}). Concurrent requests
+ * for a derivative that is still being generated share that generation.
+ * Decoding, scaling and encoding are blocking, so they run on a pool of {@code minio.images.workers} threads
+ * with a queue of {@code minio.images.queue}; requests beyond it fail with {@link RejectedExecutionException}.
+ * A worker downloads the source itself before decoding it, so only running jobs hold image data. The pool is
+ * small and fixed rather than sized to the processors: every worker holds a whole source and its decoded image.
+ * Sources larger than {@code max-source-size} or {@code max-pixels} are refused before they are decoded.
+ * Only the encoders of the JDK are used: JPEG and PNG.
+ * <p>
+ * Meters: {@code minio.images.derivatives} (by {@code outcome}: hit, generated, coalesced).
+ */
+@Service
+public class ImageDerivativeService implements DisposableBean {
+
+    private final ObjectDownloadService objectDownloadService;
+    private final MultipartUploadService multipartUploadService;
+    private final CompressionService compressionService;
+    private final ImageProperties properties;
+    private final Scheduler workers;
+    private final Map<String, CompletableFuture<Derivative>> inFlight = new ConcurrentHashMap<>();
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final Counter hits;
+    private final Counter generated;
+    private final Counter coalesced;
+
+    public ImageDerivativeService(ObjectDownloadService objectDownloadService,
+                                  MultipartUploadService multipartUploadService,
+                                  CompressionService compressionService,
+                                  ImageProperties properties,
+                                  MeterRegistry meterRegistry) {
+        this.objectDownloadService = objectDownloadService;
+        this.multipartUploadService = multipartUploadService;
+        this.compressionService = compressionService;
+        this.properties = properties;
+        this.workers = Schedulers.newBoundedElastic(Math.max(properties.workers(), 1), Math.max(properties.queue(), 1), "image-derivatives");
+        this.hits = derivatives(meterRegistry, "hit");
+        this.generated = derivatives(meterRegistry, "generated");
+        this.coalesced = derivatives(meterRegistry, "coalesced");
+    }
+
+    /**
+     * The spec of a request's query parameters, defaulting the quality and bounding the dimensions.
+     *
+     * @throws IllegalArgumentException when a parameter is invalid
+     */
+    public Spec spec(String width, String height, String fit, String format, String quality) {
+        return Spec.of(width, height, fit, format, quality, properties.quality(), properties.maxDimension());
+    }
+
+    /**
+     * The stored derivative of {@code key}, generated first if it does not exist yet.
+     */
+    public Mono<Derivative> derivative(String bucket, String key, Spec spec) {
+        if (key.startsWith(properties.derivativePrefix())) {
+            return Mono.error(new IllegalArgumentException("Derivatives are not derived again"));
+        }
+        return objectDownloadService.head(bucket, key).flatMap(source -> {
+            if (source.contentLength() == 0 || source.contentLength() > properties.maxSourceSize().toBytes()) {
+                return Mono.error(new IllegalArgumentException(
+                        "Images between 1 byte and " + properties.maxSourceSize() + " can be derived"));
+            }
+            Format format = spec.format() != null ? spec.format() : Format.of(source.contentType());
+            String derivedKey = derivedKey(properties.derivativePrefix(), key, source.eTag(), spec, format);
+            return existing(bucket, derivedKey, format)
+                    .doOnNext(derivative -> hits.increment())
+                    .switchIfEmpty(Mono.defer(() -> shared(bucket, derivedKey,
+                            () -> generate(bucket, key, source, spec, format, derivedKey))));
+        });
+    }
+
+    private Mono<Derivative> existing(String bucket, String derivedKey, Format format) {
+        return objectDownloadService.head(bucket, derivedKey)
+                .map(head -> new Derivative(derivedKey, format, head))
+                .onErrorResume(e -> e instanceof S3Exception s3 && s3.statusCode() == 404, e -> Mono.empty());
+    }
+
+    // the generation is subscribed on its own, so it completes and is stored even when every caller went away
+    private Mono<Derivative> shared(String bucket, String derivedKey, Supplier<Mono<Derivative>> generation) {
+        String id = bucket + "/" + derivedKey;
+        CompletableFuture<Derivative> created = new CompletableFuture<>();
+        CompletableFuture<Derivative> running = inFlight.putIfAbsent(id, created);
+        if (running != null) {
+            coalesced.increment();
+            return Mono.fromFuture(running, true);
+        }
+        generated.increment();
+        generation.get()
+                .doFinally(signal -> inFlight.remove(id, created))
+                .subscribe(created::complete, created::completeExceptionally, () -> created.complete(null));
+        return Mono.fromFuture(created, true);
+    }
+
+    private Mono<Derivative> generate(String bucket, String key, HeadObjectResponse source, Spec spec, Format format,
+                                      String derivedKey) {
+        Flux<DataBuffer> content = objectDownloadService
+                .fetch(bucket, key, source.eTag(), 0, source.contentLength() - 1)
+                .map(bufferFactory::wrap);
+        CompressionService.Codec codec = CompressionService.Codec.of(source);
+        if (codec != null) {
+            content = compressionService.decompress(codec, content);
+        }
+        Flux<DataBuffer> body = content;
+        int maxSourceSize = (int) Math.min(properties.maxSourceSize().toBytes(), Integer.MAX_VALUE);
+        long maxPixels = properties.maxPixels();
+        // the source is read by the worker that renders it, so jobs waiting in the queue hold no image data
+        return Mono.fromCallable(() -> {
+                    DataBuffer buffer = DataBufferUtils.join(body, maxSourceSize).block();
+                    if (buffer == null) {
+                        throw new IOException("Image " + key + " is empty");
+                    }
+                    try (InputStream in = buffer.asInputStream(true)) {
+                        return render(in, spec, format, maxPixels);
+                    }
+                })
+                .subscribeOn(workers)
+                .flatMap(bytes -> multipartUploadService.upload(bucket, derivedKey, format.contentType(),
+                        Flux.just(bufferFactory.wrap(bytes))))
+                .then(Mono.defer(() -> objectDownloadService.head(bucket, derivedKey)))
+                .map(head -> new Derivative(derivedKey, format, head));
+    }
+
+    @Override
+    public void destroy() {
+        workers.dispose();
+    }
+
+    static String derivedKey(String prefix, String key, String eTag, Spec spec, Format format) {
+        String version = eTag == null ? "none" : eTag.replace("\"", "");
+        return prefix + key + "/" + spec.token(format) + "-" + version + "." + format.extension();
+    }
+
+    /**
+     * Decodes an image, scales it to {@code spec} and encodes it as {@code format}.
+     *
+     * @throws IllegalArgumentException when the input is not a readable image or has more than
+     *                                  {@code maxPixels} pixels
+     */
+    static byte[] render(InputStream in, Spec spec, Format format, long maxPixels) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(in)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("Not a readable image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // checked before decoding, as a small file can describe a huge image
+                if ((long) width * height > maxPixels) {
+                    throw new IllegalArgumentException("Image of " + width + "x" + height + " exceeds "
+                            + maxPixels + " pixels");
+                }
+                BufferedImage source = reader.read(0);
+                return encode(resize(source, geometry(width, height, spec), format.opaque()), format, spec.quality());
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * The size a source is scaled to and the size of the derivative cut from its centre. Only {@link Fit#FILL}
+     * enlarges a source.
+     */
+    static Geometry geometry(int sourceWidth, int sourceHeight, Spec spec) {
+        Integer width = spec.width();
+        Integer height = spec.height();
+        if (width == null && height == null) {
+            return new Geometry(sourceWidth, sourceHeight, sourceWidth, sourceHeight);
+        }
+        if (width == null || height == null) {
+            double scale = width != null ? (double) width / sourceWidth : (double) height / sourceHeight;
+            return scaled(sourceWidth, sourceHeight, Math.min(scale, 1));
+        }
+        double scaleX = (double) width / sourceWidth;
+        double scaleY = (double) height / sourceHeight;
+        return switch (spec.fit()) {
+            case FILL -> new Geometry(width, height, width, height);
+            case CONTAIN -> scaled(sourceWidth, sourceHeight, Math.min(Math.min(scaleX, scaleY), 1));
+            case COVER -> {
+                Geometry scaled = scaled(sourceWidth, sourceHeight, Math.min(Math.max(scaleX, scaleY), 1));
+                yield new Geometry(scaled.scaledWidth(), scaled.scaledHeight(),
+                        Math.min(width, scaled.scaledWidth()), Math.min(height, scaled.scaledHeight()));
+            }
+        };
+    }
+
+    private static Geometry scaled(int sourceWidth, int sourceHeight, double scale) {
+        int width = (int) Math.max(1, Math.round(sourceWidth * scale));
+        int height = (int) Math.max(1, Math.round(sourceHeight * scale));
+        return new Geometry(width, height, width, height);
+    }
+
+    // halving steps first: a single bilinear step to a much smaller size skips most source pixels and aliases
+    private static BufferedImage resize(BufferedImage source, Geometry geometry, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        do {
+            width = Math.max(width / 2, geometry.scaledWidth());
+            height = Math.max(height / 2, geometry.scaledHeight());
+            current = draw(current, width, height, type);
+        } while (width != geometry.scaledWidth() || height != geometry.scaledHeight());
+
+        if (geometry.width() == width && geometry.height() == height) {
+            return current;
+        }
+        return current.getSubimage((width - geometry.width()) / 2, (height - geometry.height()) / 2,
+                geometry.width(), geometry.height());
+    }
+
+    private static BufferedImage draw(BufferedImage image, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            if (type == BufferedImage.TYPE_INT_RGB) {
+                // transparent pixels of the source turn white rather than black
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    private static byte[] encode(BufferedImage image, Format format, int quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(format.formatName).next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (format == Format.JPEG) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality / 100f);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static Counter derivatives(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("minio.images.derivatives")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * A stored derivative.
+     */
+    public record Derivative(String key, Format format, HeadObjectResponse head) {
+
+        /**
+         * {@code filename} with the extension of the derivative's format.
+         */
+        public String filename(String filename) {
+            int dot = filename.lastIndexOf('.');
+            return (dot > 0 ? filename.substring(0, dot) : filename) + "." + format.extension();
+        }
+    }
+
+    record Geometry(int scaledWidth, int scaledHeight, int width, int height) {
+    }
+
+    /**
+     * What a derivative looks like: {@code width} and/or {@code height} ({@code null} keeps the aspect ratio),
+     * how both are applied, the format ({@code null} keeps the source's) and the JPEG quality.
+     */
+    public record Spec(Integer width, Integer height, Fit fit, Format format, int quality) {
+
+        static Spec of(String width, String height, String fit, String format, String quality,
+                       int defaultQuality, int maxDimension) {
+            Integer parsedWidth = dimension("w", width, maxDimension);
+            Integer parsedHeight = dimension("h", height, maxDimension);
+            Format parsedFormat = StringUtils.hasText(format) ? Format.parse(format) : null;
+            if (parsedWidth == null && parsedHeight == null && parsedFormat == null) {
+                throw new IllegalArgumentException("At least one of w, h or format is required");
+            }
+            int parsedQuality = StringUtils.hasText(quality) ? integer("q", quality) : defaultQuality;
+            if (parsedQuality < 1 || parsedQuality > 100) {
+                throw new IllegalArgumentException("q must be between 1 and 100");
+            }
+            return new Spec(parsedWidth, parsedHeight, Fit.parse(fit), parsedFormat, parsedQuality);
+        }
+
+        // the part of the derived key that tells derivatives of one source apart
+        String token(Format format) {
+            return "w" + (width == null ? "auto" : width)
+                    + "-h" + (height == null ? "auto" : height)
+                    + "-" + fit.name().toLowerCase(Locale.ROOT)
+                    + (format == Format.JPEG ? "-q" + quality : "");
+        }
+
+        private static Integer dimension(String name, String value, int maxDimension) {
+            if (!StringUtils.hasText(value)) {
+                return null;
+            }
+            int dimension = integer(name, value);
+            if (dimension < 1 || dimension > maxDimension) {
+                throw new IllegalArgumentException(name + " must be between 1 and " + maxDimension);
+            }
+            return dimension;
+        }
+
+        private static int integer(String name, String value) {
+            try {
+                return Integer.parseInt(value.strip());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(name + " must be an integer, got " + value);
+            }
+        }
+    }
+
+    /**
+     * How a derivative given both a width and a height is fitted: {@code contain} scales it to fit inside,
+     * {@code cover} scales it to cover the box and crops the overflow, {@code fill} stretches it to the box.
+     */
+    public enum Fit {
+        CONTAIN, COVER, FILL;
+
+        static Fit parse(String value) {
+            if (!StringUtils.hasText(value)) {
+                return CONTAIN;
+            }
+            try {
+                return valueOf(value.strip().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown fit " + value + ", expected contain, cover or fill");
+            }
+        }
+    }
+
+    public enum Format {
+        JPEG("jpeg", "jpg", "image/jpeg", true),
+        PNG("png", "png", "image/png", false);
+
+        private final String formatName;
+        private final String extension;
+        private final String contentType;
+        private final boolean opaque;
+
+        Format(String formatName, String extension, String contentType, boolean opaque) {
+            this.formatName = formatName;
+            this.extension = extension;
+            this.contentType = contentType;
+            this.opaque = opaque;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        boolean opaque() {
+            return opaque;
+        }
+
+        static Format parse(String value) {
+            String format = value.strip().toLowerCase(Locale.ROOT);
+            for (Format candidate : values()) {
+                if (candidate.formatName.equals(format) || candidate.extension.equals(format)) {
+                    return candidate;
+                }
+            }
+            throw new IllegalArgumentException("Unsupported format " + value + ", expected jpeg or png");
+        }
+
+        // sources in other formats (GIF, BMP, TIFF) keep their transparency as PNG
+        static Format of(String contentType) {
+            return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("image/jpeg") ? JPEG : PNG;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.UploadedObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streams an upload body to MinIO without joining it in memory.
+ * <p>
+ * The body is cut into parts of {@code minio.upload.part-size}. A body that fits in a single part is sent
+ * with one {@code putObject}; anything larger goes through an S3 multipart upload with up to
+ * {@code minio.upload.parts-in-flight} parts uploading at once. Heap usage per upload is therefore bounded
+ * by roughly {@code (parts-in-flight + 1) * part-size}. If the body fails or the subscriber cancels
+ * (client disconnect), the multipart upload is aborted so MinIO drops the parts already stored. S3 allows at
+ * most 10 000 parts, so a body longer than {@code 10 000 * part-size} fails before its 10 001st part is sent.
+ */
+@Service
+public class MultipartUploadService {
+
+    // S3 rejects multipart parts smaller than 5 MiB (except the last one)
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    static final int MAX_PARTS = 10_000;
+    private static final int INITIAL_PART_CAPACITY = 64 * 1024;
+
+    private final S3AsyncClient s3AsyncClient;
+    private final MultipartUploads multipartUploads;
+    private final int partSize;
+    private final int partsInFlight;
+
+    public MultipartUploadService(S3AsyncClient s3AsyncClient,
+                                  MultipartUploads multipartUploads,
+                                  @Value("${minio.upload.part-size:8MB}") DataSize partSize,
+                                  @Value("${minio.upload.parts-in-flight:4}") int partsInFlight) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.multipartUploads = multipartUploads;
+        this.partSize = (int) Math.min(Math.max(partSize.toBytes(), MIN_PART_SIZE), Integer.MAX_VALUE - 8);
+        this.partsInFlight = Math.max(1, partsInFlight);
+    }
+
+    public Mono<UploadedObject> upload(String bucket, String key, String contentType, Flux<DataBuffer> content) {
+        return upload(bucket, key, contentType, null, content);
+    }
+
+    /**
+     * Like {@link #upload(String, String, String, Flux)} for a body compressed by {@link CompressionService} with
+     * {@code contentEncoding}, which is stored as the object's {@code Content-Encoding} and codec metadata.
+     */
+    public Mono<UploadedObject> upload(String bucket, String key, String contentType, String contentEncoding,
+                                       Flux<DataBuffer> content) {
+        return upload(bucket, key, contentType, contentEncoding, content, null).map(HashedUpload::object);
+    }
+
+    /**
+     * Uploads like {@link #upload} while computing the SHA-256 of the body as it is split into parts. Once
+     * the whole body has been hashed, {@code alreadyStored} decides whether the content is a duplicate: a
+     * single-part body is then never sent, and a multipart upload is aborted instead of completed, so
+     * MinIO keeps nothing under {@code key}.
+     */
+    public Mono<HashedUpload> uploadHashed(String bucket, String key, String contentType, String contentEncoding,
+                                           Flux<DataBuffer> content, ContentCheck alreadyStored) {
+        return upload(bucket, key, contentType, contentEncoding, content, alreadyStored);
+    }
+
+    private Mono<HashedUpload> upload(String bucket, String key, String contentType, String contentEncoding,
+                                      Flux<DataBuffer> content, ContentCheck alreadyStored) {
+        return Mono.defer(() -> {
+            PartSplitter splitter = new PartSplitter(partSize, alreadyStored != null);
+            Mono<Boolean> duplicate = alreadyStored == null
+                    ? Mono.just(false)
+                    : Mono.defer(() -> alreadyStored.isStored(splitter.sha256(), splitter.size()));
+            return content
+                    .concatMapIterable(splitter::write, 1)
+                    .concatWith(Mono.fromSupplier(splitter::finish))
+                    .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                    .switchOnFirst((signal, parts) -> {
+                        Part first = signal.get();
+                        if (first == null) {
+                            return parts.then(Mono.<HashedUpload>empty());
+                        }
+                        if (first.last()) {
+                            return parts.single()
+                                    .flatMap(part -> duplicate.flatMap(skip -> skip
+                                            ? Mono.just(new UploadedObject(bucket, key, contentType, part.length(), null))
+                                            : putObject(bucket, key, contentType, contentEncoding, part)))
+                                    .map(object -> new HashedUpload(object, splitter.sha256(), object.eTag() != null));
+                        }
+                        return multipartUpload(bucket, key, contentType, contentEncoding, parts, duplicate)
+                                .map(object -> new HashedUpload(object, splitter.sha256(), object.eTag() != null));
+                    })
+                    .next();
+        });
+    }
+
+    private Mono<UploadedObject> putObject(String bucket, String key, String contentType, String contentEncoding,
+                                           Part part) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentLength((long) part.length())
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .metadata(CompressionService.metadata(contentEncoding))
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.putObject(putObjectRequest, part.body()))
+                .map(response -> new UploadedObject(bucket, key, contentType, part.length(), response.eTag()));
+    }
+
+    private Mono<UploadedObject> multipartUpload(String bucket, String key, String contentType, String contentEncoding,
+                                                 Flux<Part> parts, Mono<Boolean> duplicate) {
+        CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .metadata(CompressionService.metadata(contentEncoding))
+                .build();
+
+        return multipartUploads.withUpload(Mono.just(createRequest), uploadId -> {
+            AtomicLong size = new AtomicLong();
+            return parts
+                    .flatMapSequential(part -> uploadPart(bucket, key, uploadId, part)
+                            .doOnNext(completed -> size.addAndGet(part.length())), partsInFlight, 1)
+                    .collectList()
+                    .flatMap(completedParts -> duplicate.flatMap(skip -> skip
+                            ? multipartUploads.abortQuietly(bucket, key, uploadId)
+                                    .thenReturn(new UploadedObject(bucket, key, contentType, size.get(), null))
+                            : multipartUploads.complete(bucket, key, uploadId, completedParts)
+                                    .map(response -> new UploadedObject(bucket, key, contentType, size.get(), response.eTag()))));
+        });
+    }
+
+    private Mono<CompletedPart> uploadPart(String bucket, String key, String uploadId, Part part) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(part.number())
+                .contentLength((long) part.length())
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.uploadPart(uploadPartRequest, part.body()))
+                .map(response -> CompletedPart.builder()
+                        .partNumber(part.number())
+                        .eTag(response.eTag())
+                        .build());
+    }
+
+    /**
+     * Result of {@link #uploadHashed}: {@code stored} is {@code false} when the content was a duplicate and
+     * nothing was kept in MinIO, in which case the object has no ETag.
+     */
+    public record HashedUpload(UploadedObject object, String sha256, boolean stored) {
+    }
+
+    @FunctionalInterface
+    public interface ContentCheck {
+
+        Mono<Boolean> isStored(String sha256, long size);
+    }
+
+    record Part(int number, byte[] data, int length, boolean last) {
+
+        AsyncRequestBody body() {
+            return AsyncRequestBody.fromRemainingByteBufferUnsafe(ByteBuffer.wrap(data, 0, length));
+        }
+    }
+
+    /**
+     * Copies incoming buffers into part-sized arrays. A full part is only handed out once more bytes
+     * arrive, so the part emitted by {@link #finish()} is always flagged as the last one and a body that
+     * fits into a single part is recognised as such. When hashing, each copied range is fed to the digest
+     * straight from the part array.
+     */
+    static final class PartSplitter {
+
+        private final int partSize;
+        private final MessageDigest digest;
+        private byte[] current;
+        private int position;
+        private int partNumber;
+        private long size;
+        private String sha256;
+
+        PartSplitter(int partSize, boolean hash) {
+            this.partSize = partSize;
+            this.digest = hash ? sha256Digest() : null;
+            this.current = new byte[Math.min(INITIAL_PART_CAPACITY, partSize)];
+        }
+
+        List<Part> write(DataBuffer buffer) {
+            try {
+                List<Part> completed = new ArrayList<>(1);
+                while (buffer.readableByteCount() > 0) {
+                    if (position == partSize) {
+                        if (partNumber + 1 == MAX_PARTS) {
+                            throw new IllegalArgumentException("Upload is larger than " + MAX_PARTS + " parts of "
+                                    + partSize + " bytes; raise minio.upload.part-size");
+                        }
+                        completed.add(new Part(++partNumber, current, position, false));
+                        current = new byte[partSize];
+                        position = 0;
+                    }
+                    int length = Math.min(buffer.readableByteCount(), partSize - position);
+                    ensureCapacity(position + length);
+                    buffer.read(current, position, length);
+                    if (digest != null) {
+                        digest.update(current, position, length);
+                    }
+                    position += length;
+                    size += length;
+                }
+                return completed;
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        Part finish() {
+            return new Part(++partNumber, current, position, true);
+        }
+
+        long size() {
+            return size;
+        }
+
+        /**
+         * Hex SHA-256 of everything written; only valid once {@link #finish()} has been called.
+         */
+        String sha256() {
+            if (sha256 == null && digest != null) {
+                sha256 = HexFormat.of().formatHex(digest.digest());
+            }
+            return sha256;
+        }
+
+        private static MessageDigest sha256Digest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > current.length) {
+                int capacity = (int) Math.min(Math.max((long) current.length * 2, required), partSize);
+                current = Arrays.copyOf(current, capacity);
+            }
+        }
+    }
+}
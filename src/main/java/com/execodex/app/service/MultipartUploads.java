@@ -0,0 +1,78 @@
+package com.execodex.app.service;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The S3 multipart upload lifecycle shared by the streamed uploads ({@link MultipartUploadService}), the
+ * server-side copies ({@link TransferService}) and the resumable uploads ({@link ResumableUploadService}).
+ */
+@Component
+public class MultipartUploads {
+
+    private final S3AsyncClient s3AsyncClient;
+
+    public MultipartUploads(S3AsyncClient s3AsyncClient) {
+        this.s3AsyncClient = s3AsyncClient;
+    }
+
+    /**
+     * Creates a multipart upload and runs {@code body} with its upload id. The upload is aborted if the body
+     * fails or is cancelled, so MinIO drops the parts stored so far; the body completes it.
+     */
+    public <T> Mono<T> withUpload(Mono<CreateMultipartUploadRequest> createRequest, Function<String, Mono<T>> body) {
+        return createRequest.flatMap(request -> Mono.usingWhen(
+                Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(request))
+                        .map(CreateMultipartUploadResponse::uploadId),
+                body,
+                uploadId -> Mono.empty(),
+                (uploadId, e) -> abortQuietly(request.bucket(), request.key(), uploadId),
+                uploadId -> abortQuietly(request.bucket(), request.key(), uploadId)));
+    }
+
+    public Mono<CompleteMultipartUploadResponse> complete(String bucket, String key, String uploadId,
+                                                          List<CompletedPart> completedParts) {
+        CompleteMultipartUploadRequest completeRequest = CompleteMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.completeMultipartUpload(completeRequest));
+    }
+
+    /**
+     * Aborts the upload; an upload that no longer exists counts as aborted, any other error is passed on.
+     */
+    public Mono<Void> abort(String bucket, String key, String uploadId) {
+        AbortMultipartUploadRequest abortRequest = AbortMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .uploadId(uploadId)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.abortMultipartUpload(abortRequest))
+                .onErrorResume(NoSuchUploadException.class, e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Like {@link #abort} for cleanup after a failure, which must not replace the original error.
+     */
+    public Mono<Void> abortQuietly(String bucket, String key, String uploadId) {
+        return abort(bucket, key, uploadId).onErrorComplete();
+    }
+}
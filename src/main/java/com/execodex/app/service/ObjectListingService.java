@@ -0,0 +1,97 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.ObjectEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Lists a bucket page by page, following continuation tokens lazily.
+ * <p>
+ * Pages are requested from MinIO as the subscriber consumes entries, with one page prefetched, so
+ * memory stays at about two pages no matter how many objects the bucket holds. Each page is a hedged read
+ * (see {@link HedgedReads}).
+ * <p>
+ * With deduplication on, the blobs of the {@link ContentStore} are left out and its references, which are
+ * not MinIO objects, are merged into the listing in key order, grouped by {@code delimiter} like objects.
+ * Image derivatives under {@code minio.images.derivative-prefix} (see {@link ImageDerivativeService}) are left
+ * out as well, so neither shows up in the listings, archives, transfers and prefix deletes built on this one.
+ */
+@Service
+public class ObjectListingService {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private static final Comparator<ObjectEntry> BY_KEY = Comparator.comparing(ObjectEntry::key);
+
+    private final HedgedReads hedgedReads;
+    private final ContentStore contentStore;
+    private final String derivativePrefix;
+
+    public ObjectListingService(HedgedReads hedgedReads,
+                                ContentStore contentStore,
+                                @Value("${minio.images.derivative-prefix:_derivatives/}") String derivativePrefix) {
+        this.hedgedReads = hedgedReads;
+        this.contentStore = contentStore;
+        this.derivativePrefix = derivativePrefix;
+    }
+
+    public Flux<ObjectEntry> list(String bucket, String prefix, String delimiter, String startAfter, Integer maxKeys) {
+        ListObjectsV2Request listRequest = ListObjectsV2Request.builder()
+                .bucket(bucket)
+                .prefix(prefix)
+                .delimiter(delimiter)
+                .startAfter(startAfter)
+                .maxKeys(maxKeys == null ? MAX_PAGE_SIZE : Math.min(maxKeys, MAX_PAGE_SIZE))
+                .build();
+
+        Flux<ObjectEntry> entries = hedgedReads.listObjectsV2(listRequest)
+                .concatMapIterable(ObjectListingService::entries, 1)
+                .filter(entry -> !hidden(entry.key()));
+
+        if (contentStore.isEnabled()) {
+            Flux<ObjectEntry> references = contentStore.references(bucket, prefix, startAfter)
+                    .map(reference -> group(reference, prefix, delimiter));
+            // a common prefix may hold both objects and references, and many references
+            entries = Flux.mergeComparing(1, BY_KEY, entries, references)
+                    .distinctUntilChanged(ObjectEntry::key);
+        }
+
+        return maxKeys == null ? entries : entries.take(maxKeys);
+    }
+
+    // content store blobs and image derivatives, which only this service writes
+    private boolean hidden(String key) {
+        return contentStore.isBlobKey(key) || !derivativePrefix.isEmpty() && key.startsWith(derivativePrefix);
+    }
+
+    private static List<ObjectEntry> entries(ListObjectsV2Response page) {
+        List<ObjectEntry> entries = new ArrayList<>(page.contents().size() + page.commonPrefixes().size());
+        page.contents().forEach(object -> entries.add(
+                new ObjectEntry(object.key(), object.size(), object.eTag(), object.lastModified(), false)));
+        page.commonPrefixes().forEach(commonPrefix -> entries.add(
+                new ObjectEntry(commonPrefix.prefix(), null, null, null, true)));
+        if (!page.commonPrefixes().isEmpty()) {
+            entries.sort(BY_KEY);
+        }
+        return entries;
+    }
+
+    // the common prefix holding a reference, as MinIO reports it for objects
+    static ObjectEntry group(ObjectEntry reference, String prefix, String delimiter) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            return reference;
+        }
+        int start = prefix == null ? 0 : prefix.length();
+        int end = reference.key().indexOf(delimiter, start);
+        return end < 0
+                ? reference
+                : new ObjectEntry(reference.key().substring(0, end + delimiter.length()), null, null, null, true);
+    }
+}
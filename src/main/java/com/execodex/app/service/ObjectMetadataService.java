@@ -0,0 +1,214 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.ObjectMetadata;
+import com.execodex.app.domain.ObjectMetadataPage;
+import com.execodex.app.domain.ObjectSearch;
+import com.execodex.app.domain.UploadedObject;
+import io.r2dbc.spi.Readable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of uploaded objects in {@code object_metadata}: size, ETag, content type, tags, uploader and upload
+ * times. It is written on every upload and delete through the API, so searches by tag, prefix, uploader and
+ * upload time are answered from Postgres without listing the bucket.
+ * <p>
+ * Search results are ordered by key and paginated by keyset: the cursor is the last key of the previous
+ * page, and the key column uses the C collation so prefix filters and the ordering both run on the primary
+ * key index. With {@code minio.metadata.enabled=false} nothing is written and searches fail.
+ */
+@Service
+public class ObjectMetadataService {
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO object_metadata (bucket, object_key, size, e_tag, content_type, tags, uploader)
+            VALUES (:bucket, :key, :size, :eTag, :contentType, CAST(:tags AS TEXT[]), :uploader)
+            ON CONFLICT (bucket, object_key) DO UPDATE SET
+                size = EXCLUDED.size,
+                e_tag = EXCLUDED.e_tag,
+                content_type = EXCLUDED.content_type,
+                tags = EXCLUDED.tags,
+                uploader = EXCLUDED.uploader,
+                updated_at = now()
+            """;
+    private static final String DELETE_SQL = """
+            DELETE FROM object_metadata WHERE bucket = :bucket AND object_key = ANY(:keys)
+            """;
+
+    private static final String COPY_SQL = """
+            INSERT INTO object_metadata (bucket, object_key, size, e_tag, content_type, tags, uploader)
+            SELECT :targetBucket, copied.target_key, source.size, copied.e_tag, source.content_type,
+                   source.tags, source.uploader
+            FROM unnest(CAST(:sourceKeys AS TEXT[]), CAST(:targetKeys AS TEXT[]), CAST(:eTags AS TEXT[]))
+                     AS copied (source_key, target_key, e_tag)
+            JOIN object_metadata source ON source.bucket = :sourceBucket AND source.object_key = copied.source_key
+            ON CONFLICT (bucket, object_key) DO UPDATE SET
+                size = EXCLUDED.size,
+                e_tag = EXCLUDED.e_tag,
+                content_type = EXCLUDED.content_type,
+                tags = EXCLUDED.tags,
+                uploader = EXCLUDED.uploader,
+                updated_at = now()
+            """;
+
+    private final DatabaseClient databaseClient;
+    private final boolean enabled;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+
+    public ObjectMetadataService(DatabaseClient databaseClient,
+                                 @Value("${minio.metadata.enabled:true}") boolean enabled,
+                                 @Value("${minio.metadata.page-size:100}") int defaultPageSize,
+                                 @Value("${minio.metadata.max-page-size:1000}") int maxPageSize) {
+        this.databaseClient = databaseClient;
+        this.enabled = enabled;
+        this.maxPageSize = Math.max(maxPageSize, 1);
+        this.defaultPageSize = Math.clamp(defaultPageSize, 1, this.maxPageSize);
+    }
+
+    public int pageSize(Integer requested) {
+        return requested == null ? defaultPageSize : Math.clamp(requested, 1, maxPageSize);
+    }
+
+    public Mono<Void> record(UploadedObject object, List<String> tags, String uploader) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(UPSERT_SQL)
+                .bind("bucket", object.bucket())
+                .bind("key", object.key())
+                .bind("size", object.size())
+                .bind("tags", tags.toArray(String[]::new));
+        spec = bindNullable(spec, "eTag", object.eTag());
+        spec = bindNullable(spec, "contentType", object.contentType());
+        spec = bindNullable(spec, "uploader", uploader);
+        return spec.then();
+    }
+
+    public Mono<Void> remove(String bucket, Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(DELETE_SQL)
+                .bind("bucket", bucket)
+                .bind("keys", keys.toArray(String[]::new))
+                .then();
+    }
+
+    /**
+     * Indexes server-side copies under their target keys with the content type, tags and uploader of the
+     * source. {@code copies} maps source keys to the copied objects; sources that are not indexed are skipped.
+     */
+    public Mono<Void> copy(String sourceBucket, Map<String, UploadedObject> copies) {
+        if (!enabled || copies.isEmpty()) {
+            return Mono.empty();
+        }
+        List<UploadedObject> targets = List.copyOf(copies.values());
+        return databaseClient.sql(COPY_SQL)
+                .bind("sourceBucket", sourceBucket)
+                .bind("targetBucket", targets.getFirst().bucket())
+                .bind("sourceKeys", copies.keySet().toArray(String[]::new))
+                .bind("targetKeys", targets.stream().map(UploadedObject::key).toArray(String[]::new))
+                .bind("eTags", targets.stream().map(UploadedObject::eTag).toArray(String[]::new))
+                .then();
+    }
+
+    /**
+     * One page of objects matching {@code search} with keys after {@code cursor} (from the start when
+     * {@code null}).
+     *
+     * @throws IllegalArgumentException if the cursor was not produced by a previous search
+     */
+    public Mono<ObjectMetadataPage> search(ObjectSearch search, String cursor, int pageSize) {
+        if (!enabled) {
+            return Mono.error(new IllegalStateException("Object metadata index is disabled"));
+        }
+        StringBuilder sql = new StringBuilder("SELECT * FROM object_metadata WHERE bucket = :bucket");
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("bucket", search.bucket());
+        if (search.tags() != null && !search.tags().isEmpty()) {
+            sql.append(" AND tags @> CAST(:tags AS TEXT[])");
+            parameters.put("tags", search.tags().toArray(String[]::new));
+        }
+        if (search.prefix() != null && !search.prefix().isEmpty()) {
+            sql.append(" AND object_key LIKE :prefix");
+            parameters.put("prefix", escapeLike(search.prefix()) + "%");
+        }
+        if (search.uploader() != null) {
+            sql.append(" AND uploader = :uploader");
+            parameters.put("uploader", search.uploader());
+        }
+        if (search.from() != null) {
+            sql.append(" AND updated_at >= :from");
+            parameters.put("from", search.from());
+        }
+        if (search.to() != null) {
+            sql.append(" AND updated_at < :to");
+            parameters.put("to", search.to());
+        }
+        if (cursor != null) {
+            sql.append(" AND object_key > :after");
+            parameters.put("after", decodeCursor(cursor));
+        }
+        sql.append(" ORDER BY object_key LIMIT :limit");
+        parameters.put("limit", pageSize + 1);
+
+        return databaseClient.sql(sql.toString())
+                .bindValues(parameters)
+                .map(ObjectMetadataService::metadata)
+                .all()
+                .collectList()
+                .map(rows -> {
+                    if (rows.size() <= pageSize) {
+                        return new ObjectMetadataPage(rows, null);
+                    }
+                    List<ObjectMetadata> items = rows.subList(0, pageSize);
+                    return new ObjectMetadataPage(items, encodeCursor(items.getLast().key()));
+                });
+    }
+
+    private static ObjectMetadata metadata(Readable row) {
+        String[] tags = row.get("tags", String[].class);
+        return new ObjectMetadata(
+                row.get("bucket", String.class),
+                row.get("object_key", String.class),
+                row.get("size", Long.class),
+                row.get("e_tag", String.class),
+                row.get("content_type", String.class),
+                tags == null ? List.of() : List.of(tags),
+                row.get("uploader", String.class),
+                row.get("created_at", Instant.class),
+                row.get("updated_at", Instant.class));
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindNullable(DatabaseClient.GenericExecuteSpec spec,
+                                                                  String name, String value) {
+        return value == null ? spec.bindNull(name, String.class) : spec.bind(name, value);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
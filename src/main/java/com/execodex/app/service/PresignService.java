@@ -0,0 +1,82 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.PresignedLink;
+import com.execodex.app.metrics.S3OperationMetrics;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
+
+import java.time.Duration;
+
+/**
+ * Presigns GET links and caches them per bucket, key and signature duration.
+ * <p>
+ * A cached link is only handed out during the first {@code minio.presign.cache.reuse-fraction} of its
+ * signature lifetime, so every link returned stays valid for at least the remaining part of the duration
+ * the client asked for. The cache is bounded by {@code minio.presign.cache.max-size} entries.
+ */
+@Service
+public class PresignService {
+
+    private final S3Presigner s3Presigner;
+    private final S3OperationMetrics operationMetrics;
+    private final double reuseFraction;
+    private final Cache<PresignKey, PresignedLink> cache;
+
+    public PresignService(S3Presigner s3Presigner,
+                          S3OperationMetrics operationMetrics,
+                          MeterRegistry meterRegistry,
+                          @Value("${minio.presign.cache.max-size:10000}") long maxSize,
+                          @Value("${minio.presign.cache.reuse-fraction:0.5}") double reuseFraction) {
+        this.s3Presigner = s3Presigner;
+        this.operationMetrics = operationMetrics;
+        this.reuseFraction = Math.clamp(reuseFraction, 0.0, 1.0);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((PresignKey key, PresignedLink link) -> reuseWindow(key.duration())))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "presignedUrls");
+    }
+
+    public PresignedLink presign(String bucket, String key, Duration duration) {
+        return cache.get(new PresignKey(bucket, key, duration), this::sign);
+    }
+
+    private PresignedLink sign(PresignKey presignKey) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(presignKey.bucket())
+                .key(presignKey.key())
+                .build();
+
+        GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
+                .signatureDuration(presignKey.duration())
+                .getObjectRequest(getObjectRequest)
+                .build();
+
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            PresignedGetObjectRequest presigned = s3Presigner.presignGetObject(presignRequest);
+            success = true;
+            return new PresignedLink(presignKey.key(), presigned.url().toString(), presigned.expiration());
+        } finally {
+            operationMetrics.recordPresign("PresignGetObject", presignKey.bucket(), System.nanoTime() - start, success);
+        }
+    }
+
+    private Duration reuseWindow(Duration signatureDuration) {
+        return Duration.ofMillis((long) (signatureDuration.toMillis() * reuseFraction));
+    }
+
+    private record PresignKey(String bucket, String key, Duration duration) {
+    }
+}
@@ -0,0 +1,485 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.UploadChunk;
+import com.execodex.app.domain.UploadSession;
+import com.execodex.app.domain.UploadSessionRequest;
+import com.execodex.app.domain.UploadedObject;
+import io.r2dbc.spi.Readable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+
+/**
+ * Resumable uploads on top of S3 multipart uploads.
+ * <p>
+ * A session owns one multipart upload and a fixed chunk size; the chunk at offset {@code n * chunkSize} is
+ * part {@code n + 1}. Each chunk is streamed straight into its {@code UploadPart} with the request's
+ * {@code Content-Length}, so nothing is held in memory, and chunks may be sent in any order and in parallel.
+ * Every chunk but the last must be exactly {@code chunkSize} long. Re-sending a chunk replaces it, so a client
+ * that lost a connection asks for the session, sends the chunks it does not list and completes it.
+ * <p>
+ * Sessions and the ETags of their chunks live in Postgres, so any instance can continue or complete an upload.
+ * Sessions without a chunk for {@code minio.upload.resumable.session-ttl} are removed by a background job,
+ * which aborts their multipart upload so MinIO drops the stored parts and only then deletes the session; an
+ * abort that fails is retried one {@code minio.upload.resumable.reap-interval} later. Finished sessions are
+ * kept for the same time so a retried complete still gets its answer. Completing an upload replaces a
+ * deduplicated reference of the same key (see {@link ContentStore}), as a direct upload does.
+ */
+@Service
+public class ResumableUploadService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ResumableUploadService.class);
+
+    // S3 parts are 5 MiB to 5 GiB, at most 10000 of them per upload
+    static final long MIN_CHUNK_SIZE = MultipartUploadService.MIN_PART_SIZE;
+    static final long MAX_CHUNK_SIZE = 5L * 1024 * 1024 * 1024;
+    static final int MAX_CHUNKS = 10_000;
+
+    static final String OPEN = "OPEN";
+    static final String COMPLETED = "COMPLETED";
+    static final String ABORTED = "ABORTED";
+
+    private static final String INSERT_SESSION_SQL = """
+            INSERT INTO upload_session (id, bucket, object_key, upload_id, content_type, size, chunk_size, tags,
+                                        uploader, state)
+            VALUES (:id, :bucket, :key, :uploadId, :contentType, :size, :chunkSize, :tags, :uploader, 'OPEN')
+            """;
+    private static final String SELECT_SESSION_SQL = """
+            SELECT * FROM upload_session WHERE id = :id AND bucket = :bucket
+            """;
+    private static final String SELECT_PARTS_SQL = """
+            SELECT part_number, size, e_tag FROM upload_part WHERE session_id = :id ORDER BY part_number
+            """;
+    private static final String SAVE_PART_SQL = """
+            WITH part AS (
+                INSERT INTO upload_part (session_id, part_number, size, e_tag)
+                VALUES (:id, :partNumber, :size, :eTag)
+                ON CONFLICT (session_id, part_number) DO UPDATE SET
+                    size = EXCLUDED.size,
+                    e_tag = EXCLUDED.e_tag,
+                    uploaded_at = now()
+            )
+            UPDATE upload_session SET updated_at = now() WHERE id = :id
+            """;
+    private static final String FINISH_SQL = """
+            UPDATE upload_session SET state = :state, e_tag = :eTag, updated_at = now()
+            WHERE id = :id AND state = 'OPEN'
+            """;
+    private static final String REAP_FINISHED_SQL = """
+            DELETE FROM upload_session WHERE updated_at < now() - make_interval(secs => :ttl) AND state <> 'OPEN'
+            """;
+    // pushes the claimed sessions' expiry out by :retry, so one whose abort fails is claimed again after that
+    private static final String CLAIM_EXPIRED_SQL = """
+            UPDATE upload_session SET updated_at = now() - make_interval(secs => :ttl) + make_interval(secs => :retry)
+            WHERE id IN (SELECT id FROM upload_session
+                         WHERE state = 'OPEN' AND updated_at < now() - make_interval(secs => :ttl)
+                         FOR UPDATE SKIP LOCKED)
+            RETURNING id, bucket, object_key, upload_id
+            """;
+    private static final String DELETE_SESSION_SQL = """
+            DELETE FROM upload_session WHERE id = :id
+            """;
+
+    private final S3AsyncClient s3AsyncClient;
+    private final MultipartUploads multipartUploads;
+    private final DatabaseClient databaseClient;
+    private final ObjectMetadataService objectMetadataService;
+    private final BucketEventService bucketEventService;
+    private final ContentStore contentStore;
+    private final long defaultChunkSize;
+    private final Duration sessionTtl;
+    private final Duration reapInterval;
+    private final boolean reaperEnabled;
+    private volatile Disposable reaper;
+
+    public ResumableUploadService(S3AsyncClient s3AsyncClient,
+                                  MultipartUploads multipartUploads,
+                                  DatabaseClient databaseClient,
+                                  ObjectMetadataService objectMetadataService,
+                                  BucketEventService bucketEventService,
+                                  ContentStore contentStore,
+                                  @Value("${minio.upload.resumable.chunk-size:8MB}") DataSize chunkSize,
+                                  @Value("${minio.upload.resumable.session-ttl:24h}") Duration sessionTtl,
+                                  @Value("${minio.upload.resumable.reap-interval:15m}") Duration reapInterval,
+                                  @Value("${minio.upload.resumable.reaper-enabled:true}") boolean reaperEnabled) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.multipartUploads = multipartUploads;
+        this.databaseClient = databaseClient;
+        this.objectMetadataService = objectMetadataService;
+        this.bucketEventService = bucketEventService;
+        this.contentStore = contentStore;
+        this.defaultChunkSize = Math.clamp(chunkSize.toBytes(), MIN_CHUNK_SIZE, MAX_CHUNK_SIZE);
+        this.sessionTtl = sessionTtl;
+        this.reapInterval = reapInterval;
+        this.reaperEnabled = reaperEnabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!reaperEnabled) {
+            return;
+        }
+        reaper = Flux.interval(reapInterval, reapInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> reap()
+                        .onErrorResume(e -> {
+                            log.warn("Could not reap upload sessions: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    // every instance reaps; the claim hands each expired session to exactly one of them, and its row is only
+    // deleted once MinIO has dropped the parts
+    private Mono<Void> reap() {
+        double ttl = sessionTtl.toSeconds();
+        return databaseClient.sql(REAP_FINISHED_SQL)
+                .bind("ttl", ttl)
+                .then()
+                .thenMany(databaseClient.sql(CLAIM_EXPIRED_SQL)
+                        .bind("ttl", ttl)
+                        .bind("retry", (double) reapInterval.toSeconds())
+                        .map(row -> new Expired(
+                                row.get("id", UUID.class),
+                                row.get("bucket", String.class),
+                                row.get("object_key", String.class),
+                                row.get("upload_id", String.class)))
+                        .all())
+                .concatMap(expired -> multipartUploads.abort(expired.bucket(), expired.key(), expired.uploadId())
+                        .then(databaseClient.sql(DELETE_SESSION_SQL).bind("id", expired.id()).then())
+                        .doOnSuccess(ignored -> log.info("Aborted abandoned upload of {}/{}",
+                                expired.bucket(), expired.key()))
+                        .onErrorResume(e -> {
+                            log.warn("Could not abort abandoned upload of {}/{}, retrying in {}: {}",
+                                    expired.bucket(), expired.key(), reapInterval, e.getMessage());
+                            return Mono.empty();
+                        }))
+                .then();
+    }
+
+    @Override
+    public void destroy() {
+        if (reaper != null) {
+            reaper.dispose();
+        }
+    }
+
+    /**
+     * Starts the multipart upload and records its session.
+     *
+     * @throws IllegalArgumentException if the key is missing, or the size or chunk size are out of range
+     */
+    public Mono<UploadSession> create(String bucket, UploadSessionRequest request, List<String> tags, String uploader) {
+        if (!StringUtils.hasText(request.key())) {
+            return Mono.error(new IllegalArgumentException("key is required"));
+        }
+        long chunkSize = request.chunkSize() == null ? defaultChunkSize : request.chunkSize();
+        if (chunkSize < MIN_CHUNK_SIZE || chunkSize > MAX_CHUNK_SIZE) {
+            return Mono.error(new IllegalArgumentException(
+                    "chunkSize must be between " + MIN_CHUNK_SIZE + " and " + MAX_CHUNK_SIZE));
+        }
+        // a multipart upload needs at least one part, so an empty object cannot be uploaded this way
+        if (request.size() != null && (request.size() < 1 || request.size() > chunkSize * MAX_CHUNKS)) {
+            return Mono.error(new IllegalArgumentException(
+                    "size must be between 1 and " + MAX_CHUNKS + " chunks of " + chunkSize + " bytes"));
+        }
+
+        CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .bucket(bucket)
+                .key(request.key())
+                .contentType(request.contentType())
+                .build();
+
+        UUID id = UUID.randomUUID();
+        return Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(createRequest))
+                .map(CreateMultipartUploadResponse::uploadId)
+                .flatMap(uploadId -> {
+                    DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(INSERT_SESSION_SQL)
+                            .bind("id", id)
+                            .bind("bucket", bucket)
+                            .bind("key", request.key())
+                            .bind("uploadId", uploadId)
+                            .bind("chunkSize", chunkSize)
+                            .bind("tags", tags.toArray(String[]::new));
+                    spec = request.contentType() == null
+                            ? spec.bindNull("contentType", String.class)
+                            : spec.bind("contentType", request.contentType());
+                    spec = request.size() == null ? spec.bindNull("size", Long.class) : spec.bind("size", request.size());
+                    spec = uploader == null ? spec.bindNull("uploader", String.class) : spec.bind("uploader", uploader);
+                    return spec.then()
+                            .onErrorResume(e -> multipartUploads.abortQuietly(bucket, request.key(), uploadId)
+                                    .then(Mono.error(e)));
+                })
+                .then(Mono.defer(() -> find(bucket, id)));
+    }
+
+    /**
+     * The session with the chunks received so far, empty if there is no such session in {@code bucket}.
+     */
+    public Mono<UploadSession> find(String bucket, UUID id) {
+        return loadSession(bucket, id)
+                .zipWith(parts(id), Row::toSession);
+    }
+
+    /**
+     * Streams one chunk into its part. {@code length} is the chunk's {@code Content-Length}.
+     *
+     * @throws NoSuchElementException   if there is no such session
+     * @throws IllegalStateException    if the session is completed or aborted
+     * @throws IllegalArgumentException if the offset or length do not fit the session's chunks
+     */
+    public Mono<UploadSession> uploadChunk(String bucket, UUID id, long offset, long length, Flux<DataBuffer> content) {
+        return openSession(bucket, id)
+                .flatMap(session -> {
+                    String invalid = validateChunk(session.chunkSize, session.size, offset, length);
+                    if (invalid != null) {
+                        return Mono.error(new IllegalArgumentException(invalid));
+                    }
+                    int partNumber = (int) (offset / session.chunkSize) + 1;
+                    UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                            .bucket(bucket)
+                            .key(session.key)
+                            .uploadId(session.uploadId)
+                            .partNumber(partNumber)
+                            .contentLength(length)
+                            .build();
+
+                    return Mono.fromFuture(() -> s3AsyncClient.uploadPart(uploadPartRequest,
+                                    AsyncRequestBody.fromPublisher(content.map(ResumableUploadService::toByteBuffer)
+                                            .doOnDiscard(DataBuffer.class, DataBufferUtils::release))))
+                            .onErrorMap(NoSuchUploadException.class,
+                                    e -> new IllegalStateException("Upload " + id + " is no longer open"))
+                            .flatMap(response -> databaseClient.sql(SAVE_PART_SQL)
+                                    .bind("id", id)
+                                    .bind("partNumber", partNumber)
+                                    .bind("size", length)
+                                    .bind("eTag", response.eTag())
+                                    .then());
+                })
+                .then(Mono.defer(() -> find(bucket, id)));
+    }
+
+    /**
+     * Completes the multipart upload from the recorded chunks and indexes the object. Completing a session
+     * that is already completed returns the same object again.
+     *
+     * @throws NoSuchElementException if there is no such session
+     * @throws IllegalStateException  if the session was aborted or chunks are missing
+     */
+    public Mono<UploadedObject> complete(String bucket, UUID id) {
+        return loadSession(bucket, id)
+                .switchIfEmpty(Mono.error(() -> new NoSuchElementException("No upload " + id)))
+                .zipWith(parts(id))
+                .flatMap(loaded -> {
+                    Row session = loaded.getT1();
+                    List<Part> parts = loaded.getT2();
+                    long size = parts.stream().mapToLong(Part::size).sum();
+                    if (COMPLETED.equals(session.state)) {
+                        return Mono.just(new UploadedObject(bucket, session.key, session.contentType, size, session.eTag));
+                    }
+                    if (!OPEN.equals(session.state)) {
+                        return Mono.error(new IllegalStateException("Upload " + id + " is " + session.state));
+                    }
+                    String missing = missingChunks(session.chunkSize, session.size, parts);
+                    if (missing != null) {
+                        return Mono.error(new IllegalStateException(missing));
+                    }
+
+                    List<CompletedPart> completedParts = parts.stream()
+                            .map(part -> CompletedPart.builder().partNumber(part.number()).eTag(part.eTag()).build())
+                            .toList();
+                    return multipartUploads.complete(bucket, session.key, session.uploadId, completedParts)
+                            .onErrorMap(NoSuchUploadException.class,
+                                    e -> new IllegalStateException("Upload " + id + " is no longer open"))
+                            .map(response -> new UploadedObject(bucket, session.key, session.contentType, size,
+                                    response.eTag()))
+                            // a deduplicated reference of the key would otherwise still shadow the new object
+                            .flatMap(object -> contentStore.release(bucket, List.of(session.key))
+                                    .then(finish(id, COMPLETED, object.eTag()))
+                                    .then(objectMetadataService.record(object, Arrays.asList(session.tags),
+                                            session.uploader))
+                                    .then(bucketEventService.created(object))
+                                    .thenReturn(object));
+                });
+    }
+
+    /**
+     * Aborts the multipart upload; MinIO drops the chunks stored so far.
+     *
+     * @throws NoSuchElementException if there is no such session
+     * @throws IllegalStateException  if the session is already completed
+     */
+    public Mono<Void> abort(String bucket, UUID id) {
+        return loadSession(bucket, id)
+                .switchIfEmpty(Mono.error(() -> new NoSuchElementException("No upload " + id)))
+                .flatMap(session -> {
+                    if (COMPLETED.equals(session.state)) {
+                        return Mono.error(new IllegalStateException("Upload " + id + " is already completed"));
+                    }
+                    if (ABORTED.equals(session.state)) {
+                        return Mono.empty();
+                    }
+                    return multipartUploads.abort(bucket, session.key, session.uploadId)
+                            .then(finish(id, ABORTED, null));
+                });
+    }
+
+    /**
+     * Why a chunk of {@code length} bytes at {@code offset} does not fit a session, or {@code null} if it does.
+     */
+    static String validateChunk(long chunkSize, Long size, long offset, long length) {
+        if (offset < 0 || offset % chunkSize != 0) {
+            return "offset must be a multiple of the chunk size " + chunkSize;
+        }
+        if (offset / chunkSize >= MAX_CHUNKS) {
+            return "offset is beyond the last of " + MAX_CHUNKS + " chunks";
+        }
+        if (length <= 0 || length > chunkSize) {
+            return "chunk length must be between 1 and " + chunkSize;
+        }
+        if (size != null) {
+            long expected = Math.min(chunkSize, size - offset);
+            if (expected <= 0) {
+                return "offset is beyond the declared size " + size;
+            }
+            if (length != expected) {
+                return "chunk at offset " + offset + " must be " + expected + " bytes";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Why the chunks cannot be completed yet, or {@code null} if they form the whole object: parts
+     * {@code 1..n} without gaps, all but the last exactly {@code chunkSize} long, adding up to the declared size.
+     */
+    static String missingChunks(long chunkSize, Long size, List<Part> parts) {
+        if (parts.isEmpty()) {
+            return "No chunks have been uploaded";
+        }
+        long received = 0;
+        for (int i = 0; i < parts.size(); i++) {
+            Part part = parts.get(i);
+            if (part.number() != i + 1) {
+                return "Chunk at offset " + i * chunkSize + " is missing";
+            }
+            if (i < parts.size() - 1 && part.size() != chunkSize) {
+                return "Chunk at offset " + i * chunkSize + " is shorter than the chunk size";
+            }
+            received += part.size();
+        }
+        if (size != null && received != size) {
+            return "Chunk at offset " + received + " is missing";
+        }
+        return null;
+    }
+
+    private Mono<Row> loadSession(String bucket, UUID id) {
+        return databaseClient.sql(SELECT_SESSION_SQL)
+                .bind("id", id)
+                .bind("bucket", bucket)
+                .map(ResumableUploadService::row)
+                .one();
+    }
+
+    private Mono<Row> openSession(String bucket, UUID id) {
+        return loadSession(bucket, id)
+                .switchIfEmpty(Mono.error(() -> new NoSuchElementException("No upload " + id)))
+                .filter(session -> OPEN.equals(session.state))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Upload " + id + " is no longer open")));
+    }
+
+    private Mono<List<Part>> parts(UUID id) {
+        return databaseClient.sql(SELECT_PARTS_SQL)
+                .bind("id", id)
+                .map(row -> new Part(
+                        row.get("part_number", Integer.class),
+                        row.get("size", Long.class),
+                        row.get("e_tag", String.class)))
+                .all()
+                .collectList();
+    }
+
+    private Mono<Void> finish(UUID id, String state, String eTag) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(FINISH_SQL)
+                .bind("id", id)
+                .bind("state", state);
+        spec = eTag == null ? spec.bindNull("eTag", String.class) : spec.bind("eTag", eTag);
+        return spec.then();
+    }
+
+    // the SDK may hold on to a buffer after the request, so pooled buffers are copied and released right away
+    private static ByteBuffer toByteBuffer(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return ByteBuffer.wrap(bytes);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    private static Row row(Readable row) {
+        return new Row(
+                row.get("id", UUID.class),
+                row.get("bucket", String.class),
+                row.get("object_key", String.class),
+                row.get("upload_id", String.class),
+                row.get("content_type", String.class),
+                row.get("size", Long.class),
+                row.get("chunk_size", Long.class),
+                row.get("tags", String[].class),
+                row.get("uploader", String.class),
+                row.get("state", String.class),
+                row.get("e_tag", String.class),
+                row.get("created_at", Instant.class),
+                row.get("updated_at", Instant.class));
+    }
+
+    record Part(int number, long size, String eTag) {
+    }
+
+    private record Row(UUID id, String bucket, String key, String uploadId, String contentType, Long size,
+                       long chunkSize, String[] tags, String uploader, String state, String eTag, Instant createdAt,
+                       Instant updatedAt) {
+
+        UploadSession toSession(List<Part> parts) {
+            List<UploadChunk> chunks = parts.stream()
+                    .map(part -> new UploadChunk((part.number() - 1) * chunkSize, part.size()))
+                    .toList();
+            long received = parts.stream().mapToLong(Part::size).sum();
+            return new UploadSession(id, bucket, key, contentType, size, chunkSize, state, received, chunks,
+                    createdAt, updatedAt);
+        }
+    }
+
+    private record Expired(UUID id, String bucket, String key, String uploadId) {
+    }
+}
@@ -0,0 +1,740 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.DeleteResult;
+import com.execodex.app.domain.TransferJob;
+import com.execodex.app.domain.TransferProgress;
+import com.execodex.app.domain.TransferRequest;
+import com.execodex.app.domain.UploadedObject;
+import io.r2dbc.spi.Readable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyExistsException;
+import software.amazon.awssdk.services.s3.model.BucketAlreadyOwnedByYouException;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.DeleteBucketRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Server-side copy and rename of buckets and prefixes. No payload bytes pass through this service: objects
+ * up to {@code minio.transfer.multipart-threshold} are copied with {@code CopyObject}, larger ones (at most
+ * 5 GB fit into one {@code CopyObject}) with {@code UploadPartCopy} in parts of {@code minio.transfer.part-size}.
+ * <p>
+ * A job lists the source in key order and copies {@code minio.transfer.concurrency} objects at once. Every
+ * copy is verified against the source size and ETag and its outcome is recorded in {@code transfer_item} in
+ * key order, together with the job's checkpoint (the last recorded key), so an interrupted job continues by
+ * listing after the checkpoint and retrying failed copies. Running jobs heartbeat; a job whose owner has not
+ * heartbeated for {@code minio.transfer.lease}, for example because its pod restarted, is claimed and resumed
+ * by the next instance that checks. A rename deletes the source objects only once every object has been
+ * copied and verified, and only those that still have the ETag that was copied: a source overwritten since is
+ * kept and reported as skipped. A bucket rename finally deletes the emptied source bucket.
+ * <p>
+ * Deduplicated keys (see {@link ContentStore}) are not MinIO objects but references to blobs shared within
+ * their bucket, which {@code CopyObject} cannot copy. A transfer is therefore refused while its source holds
+ * references, and the blob prefix can be neither source nor target.
+ */
+@Service
+public class TransferService implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferService.class);
+
+    // CopyObject copies at most 5 GB; UploadPartCopy takes at most 10000 parts
+    static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+    static final int MAX_PARTS = 10_000;
+    private static final int CHECKPOINT_BATCH = 100;
+    private static final Duration CHECKPOINT_INTERVAL = Duration.ofSeconds(1);
+    private static final int DELETE_PAGE = BulkDeleteService.MAX_BATCH_SIZE;
+
+    static final String RUNNING = "RUNNING";
+    static final String COMPLETED = "COMPLETED";
+    static final String FAILED = "FAILED";
+    static final String COPIED = "COPIED";
+    static final String DELETED = "DELETED";
+    static final String SKIPPED = "SKIPPED";
+    private static final String SOURCE_CHANGED = "Source changed after it was copied and is kept";
+
+    private static final String INSERT_JOB_SQL = """
+            INSERT INTO transfer_job (id, source_bucket, source_prefix, target_bucket, target_prefix, delete_source,
+                                      state, owner)
+            VALUES (:id, :sourceBucket, :sourcePrefix, :targetBucket, :targetPrefix, :deleteSource, 'RUNNING', :owner)
+            """;
+    private static final String SELECT_JOB_SQL = """
+            SELECT job.*,
+                   count(*) FILTER (WHERE item.state IN ('COPIED', 'DELETED')) AS copied,
+                   count(*) FILTER (WHERE item.state = 'DELETED') AS deleted,
+                   count(*) FILTER (WHERE item.state = 'FAILED') AS failed,
+                   CAST(COALESCE(sum(item.size) FILTER (WHERE item.state IN ('COPIED', 'DELETED')), 0) AS BIGINT) AS bytes
+            FROM transfer_job job
+            LEFT JOIN transfer_item item ON item.job_id = job.id
+            WHERE job.id = :id
+            GROUP BY job.id
+            """;
+    private static final String CLAIM_ABANDONED_SQL = """
+            UPDATE transfer_job SET owner = :owner, heartbeat_at = now(), updated_at = now()
+            WHERE state = 'RUNNING' AND heartbeat_at < now() - make_interval(secs => :lease)
+            RETURNING id
+            """;
+    private static final String CLAIM_SQL = """
+            UPDATE transfer_job SET owner = :owner, state = 'RUNNING', error = NULL, heartbeat_at = now(),
+                                    updated_at = now()
+            WHERE id = :id
+              AND (state = 'FAILED' OR (state = 'RUNNING' AND heartbeat_at < now() - make_interval(secs => :lease)))
+            RETURNING id
+            """;
+    private static final String HEARTBEAT_SQL = """
+            UPDATE transfer_job SET heartbeat_at = now() WHERE id = :id AND owner = :owner
+            """;
+    private static final String SAVE_SQL = """
+            WITH items AS (
+                INSERT INTO transfer_item (job_id, source_key, size, source_e_tag, e_tag, state, error)
+                SELECT :id, item.* FROM unnest(CAST(:keys AS TEXT[]), CAST(:sizes AS BIGINT[]),
+                                               CAST(:sourceETags AS TEXT[]), CAST(:eTags AS TEXT[]),
+                                               CAST(:states AS TEXT[]), CAST(:errors AS TEXT[])) AS item
+                ON CONFLICT (job_id, source_key) DO UPDATE SET
+                    size = EXCLUDED.size,
+                    source_e_tag = EXCLUDED.source_e_tag,
+                    e_tag = EXCLUDED.e_tag,
+                    state = EXCLUDED.state,
+                    error = EXCLUDED.error
+            )
+            UPDATE transfer_job SET checkpoint = COALESCE(:checkpoint, checkpoint), heartbeat_at = now(),
+                                    updated_at = now()
+            WHERE id = :id
+            """;
+    private static final String FAILED_ITEMS_SQL = """
+            SELECT source_key FROM transfer_item WHERE job_id = :id AND state = 'FAILED' ORDER BY source_key
+            """;
+    private static final String COPIED_ITEMS_SQL = """
+            SELECT source_key, COALESCE(source_e_tag, e_tag) AS source_e_tag FROM transfer_item
+            WHERE job_id = :id AND state = 'COPIED' AND source_key > :after
+            ORDER BY source_key LIMIT :limit
+            """;
+    private static final String MARK_DELETED_SQL = """
+            UPDATE transfer_item SET state = 'DELETED' WHERE job_id = :id AND source_key = ANY(:keys)
+            """;
+    private static final String MARK_SKIPPED_SQL = """
+            UPDATE transfer_item SET state = 'SKIPPED', error = :error WHERE job_id = :id AND source_key = ANY(:keys)
+            """;
+    private static final String FINISH_SQL = """
+            UPDATE transfer_job SET state = :state, error = :error, owner = NULL, updated_at = now()
+            WHERE id = :id AND owner = :owner
+            """;
+
+    private final S3AsyncClient s3AsyncClient;
+    private final MultipartUploads multipartUploads;
+    private final ObjectListingService objectListingService;
+    private final BulkDeleteService bulkDeleteService;
+    private final ContentStore contentStore;
+    private final ObjectMetadataService objectMetadataService;
+    private final BucketEventService bucketEventService;
+    private final DatabaseClient databaseClient;
+    private final int concurrency;
+    private final long multipartThreshold;
+    private final long partSize;
+    private final int partsInFlight;
+    private final Duration lease;
+    private final boolean resumeOnStartup;
+    private final String owner = UUID.randomUUID().toString();
+    private final ConcurrentMap<UUID, Run> running = new ConcurrentHashMap<>();
+    private volatile Disposable recovery;
+
+    public TransferService(S3AsyncClient s3AsyncClient,
+                           MultipartUploads multipartUploads,
+                           ObjectListingService objectListingService,
+                           BulkDeleteService bulkDeleteService,
+                           ContentStore contentStore,
+                           ObjectMetadataService objectMetadataService,
+                           BucketEventService bucketEventService,
+                           DatabaseClient databaseClient,
+                           @Value("${minio.transfer.concurrency:8}") int concurrency,
+                           @Value("${minio.transfer.multipart-threshold:5GB}") DataSize multipartThreshold,
+                           @Value("${minio.transfer.part-size:512MB}") DataSize partSize,
+                           @Value("${minio.transfer.parts-in-flight:4}") int partsInFlight,
+                           @Value("${minio.transfer.lease:2m}") Duration lease,
+                           @Value("${minio.transfer.resume-on-startup:true}") boolean resumeOnStartup) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.multipartUploads = multipartUploads;
+        this.objectListingService = objectListingService;
+        this.bulkDeleteService = bulkDeleteService;
+        this.contentStore = contentStore;
+        this.objectMetadataService = objectMetadataService;
+        this.bucketEventService = bucketEventService;
+        this.databaseClient = databaseClient;
+        this.concurrency = Math.max(concurrency, 1);
+        this.multipartThreshold = Math.clamp(multipartThreshold.toBytes(), 1, MAX_COPY_OBJECT_SIZE);
+        this.partSize = Math.clamp(partSize.toBytes(), DataSize.ofMegabytes(5).toBytes(), MAX_COPY_OBJECT_SIZE);
+        this.partsInFlight = Math.max(partsInFlight, 1);
+        this.lease = lease;
+        this.resumeOnStartup = resumeOnStartup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        // the first tick picks up jobs of a previous run once their lease has expired
+        recovery = Flux.interval(Duration.ZERO, lease)
+                .onBackpressureDrop()
+                .concatMap(tick -> databaseClient.sql(CLAIM_ABANDONED_SQL)
+                        .bind("owner", owner)
+                        .bind("lease", (double) lease.toSeconds())
+                        .map(row -> row.get("id", UUID.class))
+                        .all()
+                        .concatMap(this::find)
+                        .doOnNext(job -> log.info("Resuming transfer {} after checkpoint {}", job.id(), job.checkpoint()))
+                        .doOnNext(this::launch)
+                        .onErrorResume(e -> {
+                            log.warn("Could not claim abandoned transfers: {}", e.getMessage());
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (recovery != null) {
+            recovery.dispose();
+        }
+        // the jobs stop heartbeating and are resumed from their checkpoint by another instance
+        running.values().stream()
+                .map(run -> run.execution)
+                .filter(Objects::nonNull)
+                .forEach(Disposable::dispose);
+    }
+
+    /**
+     * Creates a job and starts it in the background; it keeps running when the caller stops following it.
+     *
+     * @throws IllegalArgumentException if the source and target overlap or either is under the blob prefix
+     * @throws IllegalStateException    if the source holds deduplicated keys
+     */
+    public Mono<TransferJob> start(String sourceBucket, TransferRequest request, boolean deleteSource) {
+        String targetBucket = request.targetBucket() == null || request.targetBucket().isBlank()
+                ? sourceBucket
+                : request.targetBucket();
+        String sourcePrefix = Objects.requireNonNullElse(request.sourcePrefix(), "");
+        String targetPrefix = Objects.requireNonNullElse(request.targetPrefix(), "");
+        if (overlaps(sourceBucket, sourcePrefix, targetBucket, targetPrefix)) {
+            return Mono.error(new IllegalArgumentException("Source and target prefixes must not overlap"));
+        }
+        if (contentStore.isBlobKey(sourcePrefix) || contentStore.isBlobKey(targetPrefix)) {
+            return Mono.error(new IllegalArgumentException("Deduplicated content cannot be transferred"));
+        }
+
+        UUID id = UUID.randomUUID();
+        Mono<Void> insert = databaseClient.sql(INSERT_JOB_SQL)
+                .bind("id", id)
+                .bind("sourceBucket", sourceBucket)
+                .bind("sourcePrefix", sourcePrefix)
+                .bind("targetBucket", targetBucket)
+                .bind("targetPrefix", targetPrefix)
+                .bind("deleteSource", deleteSource)
+                .bind("owner", owner)
+                .then();
+        // references written while the job runs fail to copy, so a rename never deletes them
+        return contentStore.hasReferences(sourceBucket, sourcePrefix)
+                .flatMap(found -> found
+                        ? Mono.<Void>error(new IllegalStateException("Source holds deduplicated keys"))
+                        : insert)
+                .then(find(id))
+                .doOnNext(this::launch);
+    }
+
+    /**
+     * Restarts a failed job, or an abandoned one before its lease is noticed, from its checkpoint.
+     *
+     * @throws NoSuchElementException if the job does not exist
+     * @throws IllegalStateException  if the job completed or is still running elsewhere
+     */
+    public Mono<TransferJob> resume(UUID id) {
+        if (running.containsKey(id)) {
+            return find(id);
+        }
+        return databaseClient.sql(CLAIM_SQL)
+                .bind("id", id)
+                .bind("owner", owner)
+                .bind("lease", (double) lease.toSeconds())
+                .fetch()
+                .rowsUpdated()
+                .flatMap(claimed -> find(id)
+                        .switchIfEmpty(Mono.error(new NoSuchElementException("No transfer " + id)))
+                        .flatMap(job -> claimed > 0
+                                ? Mono.just(job).doOnNext(this::launch)
+                                : Mono.error(new IllegalStateException("Transfer " + id + " is " + job.state()))));
+    }
+
+    public Mono<TransferJob> find(UUID id) {
+        return databaseClient.sql(SELECT_JOB_SQL)
+                .bind("id", id)
+                .map(TransferService::job)
+                .one();
+    }
+
+    /**
+     * The job's current state followed, while it runs on this instance, by an event per object. Slow
+     * consumers miss intermediate events rather than holding the job back; the stream always ends with the
+     * job's final state.
+     */
+    public Flux<TransferProgress> progress(UUID id) {
+        return find(id).flatMapMany(job -> {
+            Run run = running.get(id);
+            Flux<TransferProgress> snapshot = Flux.just(progress(job));
+            if (run == null) {
+                return snapshot;
+            }
+            return snapshot
+                    .concatWith(run.events.asFlux())
+                    .concatWith(find(id).map(TransferService::progress));
+        });
+    }
+
+    private void launch(TransferJob job) {
+        Run run = new Run(job);
+        if (running.putIfAbsent(job.id(), run) != null) {
+            return;
+        }
+        run.execution = execute(run)
+                .takeUntilOther(leaseLost(job.id()))
+                .doFinally(signal -> {
+                    running.remove(job.id());
+                    run.events.tryEmitComplete();
+                })
+                .subscribe(null, e -> log.warn("Transfer {} stopped: {}", job.id(), e.getMessage()));
+    }
+
+    private Mono<Void> execute(Run run) {
+        TransferJob job = run.job;
+        return ensureBucket(job.targetBucket())
+                .thenMany(retryFailed(run))
+                .thenMany(copyListing(run))
+                .then(Mono.defer(() -> {
+                    if (run.failed.get() > 0) {
+                        return Mono.error(new IllegalStateException(run.failed.get() + " objects could not be copied"));
+                    }
+                    return job.deleteSource() ? deleteSources(run) : Mono.empty();
+                }))
+                .then(Mono.defer(() -> finish(run, COMPLETED, null)))
+                .onErrorResume(e -> finish(run, FAILED, e.getMessage()));
+    }
+
+    // completes when another instance has taken over the job, so this one stops copying
+    private Mono<Long> leaseLost(UUID id) {
+        Duration interval = lease.dividedBy(3);
+        return Flux.interval(interval, interval)
+                .onBackpressureDrop()
+                .concatMap(tick -> databaseClient.sql(HEARTBEAT_SQL)
+                        .bind("id", id)
+                        .bind("owner", owner)
+                        .fetch()
+                        .rowsUpdated()
+                        // a database outage is not a lost lease; the next heartbeat tries again
+                        .onErrorResume(e -> Mono.just(1L)), 1)
+                .filter(rows -> rows == 0)
+                .next()
+                .doOnNext(rows -> log.warn("Transfer {} was taken over by another instance", id));
+    }
+
+    private Mono<Void> ensureBucket(String bucket) {
+        CreateBucketRequest createBucketRequest = CreateBucketRequest.builder().bucket(bucket).build();
+        return Mono.fromFuture(() -> s3AsyncClient.createBucket(createBucketRequest))
+                .onErrorResume(e -> e instanceof BucketAlreadyExistsException || e instanceof BucketAlreadyOwnedByYouException,
+                        e -> Mono.empty())
+                .then();
+    }
+
+    // copies that failed in an earlier run; their sources are looked up again since they may have changed
+    private Flux<CopyResult> retryFailed(Run run) {
+        TransferJob job = run.job;
+        return databaseClient.sql(FAILED_ITEMS_SQL)
+                .bind("id", job.id())
+                .map(row -> row.get("source_key", String.class))
+                .all()
+                .flatMapSequential(key -> head(job.sourceBucket(), key)
+                        .flatMap(head -> copy(job, key, head.contentLength(), head.eTag()))
+                        .onErrorResume(NoSuchKeyException.class,
+                                e -> Mono.just(new CopyResult(key, null, 0, null, null, SKIPPED, null)))
+                        // a source that cannot be looked up fails again on its own, not the whole job
+                        .onErrorResume(e -> Mono.just(new CopyResult(key, null, 0, null, null, FAILED,
+                                e.getMessage()))), concurrency, 1)
+                .doOnNext(result -> run.failed.decrementAndGet())
+                .transform(results -> record(run, results, false));
+    }
+
+    private Flux<CopyResult> copyListing(Run run) {
+        TransferJob job = run.job;
+        return objectListingService.list(job.sourceBucket(), job.sourcePrefix(), null, job.checkpoint(), null)
+                .filter(entry -> !entry.prefix() && !contentStore.isBlobKey(entry.key()))
+                .flatMapSequential(entry -> copy(job, entry.key(), entry.size(), entry.eTag()), concurrency, 1)
+                .transform(results -> record(run, results, true));
+    }
+
+    // results arrive in key order, so the last key of each recorded batch is a valid checkpoint
+    private Flux<CopyResult> record(Run run, Flux<CopyResult> results, boolean checkpoint) {
+        return results
+                .bufferTimeout(CHECKPOINT_BATCH, CHECKPOINT_INTERVAL)
+                .concatMap(batch -> save(run.job, batch, checkpoint ? batch.getLast().key() : null)
+                        .thenMany(Flux.fromIterable(batch)), 1)
+                .doOnNext(result -> {
+                    switch (result.state()) {
+                        case COPIED -> {
+                            run.copied.incrementAndGet();
+                            run.bytes.addAndGet(result.size());
+                        }
+                        case FAILED -> run.failed.incrementAndGet();
+                        default -> {
+                        }
+                    }
+                    run.emit(result.key(), result.error());
+                });
+    }
+
+    private Mono<Void> save(TransferJob job, List<CopyResult> batch, String checkpoint) {
+        Map<String, UploadedObject> copies = new LinkedHashMap<>();
+        batch.stream()
+                .filter(result -> COPIED.equals(result.state()))
+                .forEach(result -> copies.put(result.key(), new UploadedObject(job.targetBucket(),
+                        result.targetKey(), null, result.size(), result.eTag())));
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(SAVE_SQL)
+                .bind("id", job.id())
+                .bind("keys", batch.stream().map(CopyResult::key).toArray(String[]::new))
+                .bind("sizes", batch.stream().map(CopyResult::size).toArray(Long[]::new))
+                .bind("sourceETags", batch.stream().map(CopyResult::sourceETag).toArray(String[]::new))
+                .bind("eTags", batch.stream().map(CopyResult::eTag).toArray(String[]::new))
+                .bind("states", batch.stream().map(CopyResult::state).toArray(String[]::new))
+                .bind("errors", batch.stream().map(CopyResult::error).toArray(String[]::new));
+        spec = checkpoint == null ? spec.bindNull("checkpoint", String.class) : spec.bind("checkpoint", checkpoint);
+        return spec.then()
+                .then(objectMetadataService.copy(job.sourceBucket(), copies))
+                .then(bucketEventService.created(job.targetBucket(), copies.values()));
+    }
+
+    private Mono<CopyResult> copy(TransferJob job, String key, long size, String eTag) {
+        String targetKey = job.targetPrefix() + key.substring(job.sourcePrefix().length());
+        if (contentStore.isBlobKey(targetKey)) {
+            return Mono.just(new CopyResult(key, targetKey, size, eTag, null, FAILED,
+                    "Target key is reserved for deduplicated content"));
+        }
+        Mono<String> copied = size > multipartThreshold
+                ? multipartCopy(job, key, targetKey, size, eTag)
+                : copyObject(job, key, targetKey, eTag)
+                        .map(copyETag -> expectedETag(eTag, copyETag));
+
+        return copied
+                .flatMap(expectedETag -> verify(job.targetBucket(), targetKey, size, expectedETag))
+                .map(targetETag -> new CopyResult(key, targetKey, size, eTag, targetETag, COPIED, null))
+                .onErrorResume(e -> Mono.just(new CopyResult(key, targetKey, size, eTag, null, FAILED,
+                        e.getMessage())));
+    }
+
+    private Mono<String> copyObject(TransferJob job, String key, String targetKey, String eTag) {
+        CopyObjectRequest copyObjectRequest = CopyObjectRequest.builder()
+                .sourceBucket(job.sourceBucket())
+                .sourceKey(key)
+                .copySourceIfMatch(eTag)
+                .destinationBucket(job.targetBucket())
+                .destinationKey(targetKey)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.copyObject(copyObjectRequest))
+                .map(response -> response.copyObjectResult().eTag());
+    }
+
+    private Mono<String> multipartCopy(TransferJob job, String key, String targetKey, long size, String eTag) {
+        long copyPartSize = copyPartSize(size, partSize);
+        int parts = partCount(size, copyPartSize);
+
+        // CreateMultipartUpload does not take over the headers and user metadata the way CopyObject does; a
+        // compressed object without its Content-Encoding would be served as garbage
+        Mono<CreateMultipartUploadRequest> createRequest = head(job.sourceBucket(), key)
+                .map(head -> CreateMultipartUploadRequest.builder()
+                        .bucket(job.targetBucket())
+                        .key(targetKey)
+                        .contentType(head.contentType())
+                        .contentEncoding(head.contentEncoding())
+                        .cacheControl(head.cacheControl())
+                        .contentDisposition(head.contentDisposition())
+                        .contentLanguage(head.contentLanguage())
+                        .metadata(head.metadata())
+                        .build());
+
+        return multipartUploads.withUpload(createRequest, uploadId -> Flux.range(1, parts)
+                .flatMapSequential(partNumber -> {
+                    long start = (partNumber - 1) * copyPartSize;
+                    long end = Math.min(start + copyPartSize, size) - 1;
+                    return copyPart(job, key, targetKey, eTag, uploadId, partNumber, start, end);
+                }, partsInFlight, 1)
+                .collectList()
+                .flatMap(completedParts -> multipartUploads.complete(job.targetBucket(), targetKey, uploadId,
+                        completedParts))
+                .map(CompleteMultipartUploadResponse::eTag));
+    }
+
+    private Mono<CompletedPart> copyPart(TransferJob job, String key, String targetKey, String eTag, String uploadId,
+                                         int partNumber, long start, long end) {
+        UploadPartCopyRequest uploadPartCopyRequest = UploadPartCopyRequest.builder()
+                .sourceBucket(job.sourceBucket())
+                .sourceKey(key)
+                .copySourceIfMatch(eTag)
+                .copySourceRange("bytes=" + start + "-" + end)
+                .destinationBucket(job.targetBucket())
+                .destinationKey(targetKey)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .build();
+
+        return Mono.fromFuture(() -> s3AsyncClient.uploadPartCopy(uploadPartCopyRequest))
+                .map(response -> CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.copyPartResult().eTag())
+                        .build());
+    }
+
+    // the copy is accepted when the target has the source's size and the ETag the copy produced
+    private Mono<String> verify(String bucket, String key, long size, String expectedETag) {
+        return head(bucket, key).flatMap(head -> {
+            if (head.contentLength() != size) {
+                return Mono.error(new IllegalStateException(
+                        "Copy has " + head.contentLength() + " bytes, source has " + size));
+            }
+            if (!unquote(head.eTag()).equals(unquote(expectedETag))) {
+                return Mono.error(new IllegalStateException(
+                        "Copy has ETag " + head.eTag() + ", expected " + expectedETag));
+            }
+            return Mono.just(head.eTag());
+        });
+    }
+
+    private Mono<HeadObjectResponse> head(String bucket, String key) {
+        HeadObjectRequest headObjectRequest = HeadObjectRequest.builder().bucket(bucket).key(key).build();
+        return Mono.fromFuture(() -> s3AsyncClient.headObject(headObjectRequest));
+    }
+
+    /**
+     * Deletes the copied source objects page by page. A source whose ETag is no longer the one that was copied
+     * was overwritten since; it is kept and marked {@code SKIPPED}. Objects that cannot be deleted stay
+     * {@code COPIED}, so resuming the job tries them again.
+     */
+    private Mono<Void> deleteSources(Run run) {
+        TransferJob job = run.job;
+        AtomicLong failures = new AtomicLong();
+        return copiedItems(job.id(), "")
+                .expand(items -> items.size() < DELETE_PAGE
+                        ? Mono.empty()
+                        : copiedItems(job.id(), items.getLast().key()))
+                .concatMap(items -> unchanged(run, items), 1)
+                .concatMap(keys -> bulkDeleteService.delete(job.sourceBucket(), Flux.fromIterable(keys))
+                        .collectList()
+                        .flatMap(results -> {
+                            List<String> deleted = results.stream()
+                                    .filter(DeleteResult::deleted)
+                                    .map(DeleteResult::key)
+                                    .toList();
+                            results.stream()
+                                    .filter(result -> !result.deleted())
+                                    .forEach(result -> {
+                                        failures.incrementAndGet();
+                                        run.emit(result.key(), result.error());
+                                    });
+                            return markDeleted(job.id(), deleted)
+                                    .doOnSuccess(ignored -> deleted.forEach(key -> {
+                                        run.deleted.incrementAndGet();
+                                        run.emit(key, null);
+                                    }));
+                        }), 1)
+                .then(Mono.defer(() -> {
+                    if (failures.get() > 0) {
+                        return Mono.error(new IllegalStateException(failures.get() + " source objects could not be deleted"));
+                    }
+                    if (job.sourcePrefix().isEmpty() && !job.sourceBucket().equals(job.targetBucket())) {
+                        return deleteBucket(job.sourceBucket());
+                    }
+                    return Mono.empty();
+                }));
+    }
+
+    private Mono<List<CopiedItem>> copiedItems(UUID id, String after) {
+        return databaseClient.sql(COPIED_ITEMS_SQL)
+                .bind("id", id)
+                .bind("after", after)
+                .bind("limit", DELETE_PAGE)
+                .map(row -> new CopiedItem(row.get("source_key", String.class), row.get("source_e_tag", String.class)))
+                .all()
+                .collectList()
+                .filter(items -> !items.isEmpty());
+    }
+
+    // the keys of items whose source is still the version that was copied, or already gone
+    private Mono<List<String>> unchanged(Run run, List<CopiedItem> items) {
+        TransferJob job = run.job;
+        return Flux.fromIterable(items)
+                .flatMapSequential(item -> head(job.sourceBucket(), item.key())
+                        .map(head -> unquote(head.eTag()).equals(unquote(item.sourceETag())))
+                        .onErrorResume(NoSuchKeyException.class, e -> Mono.just(true))
+                        .map(same -> Map.entry(item.key(), same)), concurrency, 1)
+                .collect(Collectors.partitioningBy(Map.Entry::getValue,
+                        Collectors.mapping(Map.Entry::getKey, Collectors.toList())))
+                .flatMap(checked -> {
+                    List<String> changed = checked.get(false);
+                    changed.forEach(key -> run.emit(key, SOURCE_CHANGED));
+                    return markSkipped(job.id(), changed, SOURCE_CHANGED).thenReturn(checked.get(true));
+                });
+    }
+
+    private Mono<Void> markSkipped(UUID id, List<String> keys, String error) {
+        if (keys.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(MARK_SKIPPED_SQL)
+                .bind("id", id)
+                .bind("keys", keys.toArray(String[]::new))
+                .bind("error", error)
+                .then();
+    }
+
+    private Mono<Void> markDeleted(UUID id, List<String> keys) {
+        if (keys.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql(MARK_DELETED_SQL)
+                .bind("id", id)
+                .bind("keys", keys.toArray(String[]::new))
+                .then();
+    }
+
+    // fails when objects were written to the bucket while it was being renamed
+    private Mono<Void> deleteBucket(String bucket) {
+        DeleteBucketRequest deleteBucketRequest = DeleteBucketRequest.builder().bucket(bucket).build();
+        return Mono.fromFuture(() -> s3AsyncClient.deleteBucket(deleteBucketRequest)).then();
+    }
+
+    private Mono<Void> finish(Run run, String state, String error) {
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(FINISH_SQL)
+                .bind("id", run.job.id())
+                .bind("owner", owner)
+                .bind("state", state);
+        spec = error == null ? spec.bindNull("error", String.class) : spec.bind("error", error);
+        return spec.then()
+                .doOnSuccess(ignored -> run.events.tryEmitNext(run.progress(state, null, error)));
+    }
+
+    private static TransferJob job(Readable row) {
+        return new TransferJob(
+                row.get("id", UUID.class),
+                row.get("source_bucket", String.class),
+                row.get("source_prefix", String.class),
+                row.get("target_bucket", String.class),
+                row.get("target_prefix", String.class),
+                Boolean.TRUE.equals(row.get("delete_source", Boolean.class)),
+                row.get("state", String.class),
+                row.get("checkpoint", String.class),
+                row.get("copied", Long.class),
+                row.get("deleted", Long.class),
+                row.get("failed", Long.class),
+                row.get("bytes", Long.class),
+                row.get("error", String.class),
+                row.get("created_at", Instant.class),
+                row.get("updated_at", Instant.class));
+    }
+
+    private static TransferProgress progress(TransferJob job) {
+        return new TransferProgress(job.id(), job.state(), null, job.copied(), job.deleted(), job.failed(),
+                job.bytes(), job.error());
+    }
+
+    // a copy of a prefix may not be placed inside it, nor the source inside the copy
+    static boolean overlaps(String sourceBucket, String sourcePrefix, String targetBucket, String targetPrefix) {
+        return targetBucket.equals(sourceBucket)
+                && (sourcePrefix.startsWith(targetPrefix) || targetPrefix.startsWith(sourcePrefix));
+    }
+
+    // the configured part size, grown so that the object fits into the parts UploadPartCopy allows
+    static long copyPartSize(long size, long partSize) {
+        return Math.max(partSize, (size + MAX_PARTS - 1) / MAX_PARTS);
+    }
+
+    static int partCount(long size, long copyPartSize) {
+        return (int) ((size + copyPartSize - 1) / copyPartSize);
+    }
+
+    // CopyObject keeps the source ETag unless the source itself was a multipart upload
+    static String expectedETag(String sourceETag, String copyETag) {
+        return isMultipartETag(sourceETag) ? copyETag : sourceETag;
+    }
+
+    private static boolean isMultipartETag(String eTag) {
+        return eTag != null && eTag.contains("-");
+    }
+
+    private static String unquote(String eTag) {
+        return eTag == null ? "" : eTag.replace("\"", "");
+    }
+
+    private record CopyResult(String key, String targetKey, long size, String sourceETag, String eTag, String state,
+                              String error) {
+    }
+
+    private record CopiedItem(String key, String sourceETag) {
+    }
+
+    private static final class Run {
+
+        private final TransferJob job;
+        // events are dropped for subscribers that are not keeping up, never buffered for them
+        private final Sinks.Many<TransferProgress> events = Sinks.many().multicast().directBestEffort();
+        private final AtomicLong copied;
+        private final AtomicLong deleted;
+        private final AtomicLong failed;
+        private final AtomicLong bytes;
+        private volatile Disposable execution;
+
+        Run(TransferJob job) {
+            this.job = job;
+            this.copied = new AtomicLong(job.copied());
+            this.deleted = new AtomicLong(job.deleted());
+            this.failed = new AtomicLong(job.failed());
+            this.bytes = new AtomicLong(job.bytes());
+        }
+
+        TransferProgress progress(String state, String key, String error) {
+            return new TransferProgress(job.id(), state, key, copied.get(), deleted.get(), failed.get(),
+                    bytes.get(), error);
+        }
+
+        void emit(String key, String error) {
+            events.tryEmitNext(progress(RUNNING, key, error));
+        }
+    }
+}
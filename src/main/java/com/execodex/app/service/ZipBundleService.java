@@ -0,0 +1,137 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.ObjectEntry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Streams many objects as one ZIP archive built on the fly.
+ * <p>
+ * Up to {@code minio.zip.prefetch-objects} objects are fetched at once, each buffering at most
+ * {@code minio.zip.prefetch-chunks} response chunks ahead of the writer, while entries are written strictly
+ * in request order. The first bytes go out as soon as the first object starts arriving; neither an object
+ * nor the archive is ever held in memory. Objects stored compressed (see {@link CompressionService}) are
+ * decompressed into their entries. Keys that no longer exist are skipped, as are the blobs of the
+ * {@link ContentStore}.
+ */
+@Service
+public class ZipBundleService {
+
+    private final ObjectDownloadService objectDownloadService;
+    private final ObjectListingService objectListingService;
+    private final ContentStore contentStore;
+    private final CompressionService compressionService;
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+    private final int prefetchObjects;
+    private final int prefetchChunks;
+    private final int compressionLevel;
+
+    public ZipBundleService(ObjectDownloadService objectDownloadService,
+                            ObjectListingService objectListingService,
+                            ContentStore contentStore,
+                            CompressionService compressionService,
+                            @Value("${minio.zip.prefetch-objects:4}") int prefetchObjects,
+                            @Value("${minio.zip.prefetch-chunks:16}") int prefetchChunks,
+                            @Value("${minio.zip.compression-level:0}") int compressionLevel) {
+        this.objectDownloadService = objectDownloadService;
+        this.objectListingService = objectListingService;
+        this.contentStore = contentStore;
+        this.compressionService = compressionService;
+        this.prefetchObjects = Math.max(prefetchObjects, 1);
+        this.prefetchChunks = Math.max(prefetchChunks, 1);
+        this.compressionLevel = compressionLevel;
+    }
+
+    public Flux<DataBuffer> bundlePrefix(String bucket, String prefix) {
+        return bundle(bucket, objectListingService.list(bucket, prefix, null, null, null)
+                .filter(entry -> !entry.prefix())
+                .map(ObjectEntry::key));
+    }
+
+    public Flux<DataBuffer> bundle(String bucket, Flux<String> keys) {
+        return Flux.using(() -> new ZipStreamWriter(compressionLevel), zip -> keys
+                .flatMapSequential(key -> entry(bucket, key), prefetchObjects, prefetchChunks)
+                .map(part -> switch (part) {
+                    case EntryStart start -> zip.startEntry(start.name(), start.size(), start.lastModified());
+                    case EntryData data -> zip.data(data.chunk());
+                    case EntryEnd end -> zip.endEntry();
+                })
+                .concatWith(Flux.defer(() -> Flux.fromIterable(zip.finish())))
+                .filter(ByteBuffer::hasRemaining)
+                .map(bufferFactory::wrap), ZipStreamWriter::close);
+    }
+
+    private Flux<EntryPart> entry(String bucket, String key) {
+        String name = entryName(key);
+        // blobs are archived under the keys referencing them
+        if (name.isEmpty() || contentStore.isBlobKey(key)) {
+            return Flux.empty();
+        }
+        return contentStore.resolve(bucket, key)
+                .flatMap(objectKey -> objectDownloadService.head(bucket, objectKey)
+                        .map(head -> new ResolvedObject(objectKey, head)))
+                .onErrorResume(NoSuchKeyException.class, e -> Mono.empty())
+                .flatMapMany(object -> {
+                    HeadObjectResponse head = object.head();
+                    Flux<ByteBuffer> stored = objectDownloadService.fetch(bucket, object.key(), head.eTag(),
+                            0, head.contentLength() - 1);
+                    CompressionService.Codec codec = CompressionService.Codec.of(head);
+                    // compressed objects are archived decoded, as they were uploaded; that size is only known at the end
+                    EntryStart start = codec == null
+                            ? new EntryStart(name, head.contentLength(), head.lastModified())
+                            : new EntryStart(name, ZipStreamWriter.UNKNOWN_SIZE, head.lastModified());
+                    Flux<ByteBuffer> data = codec == null
+                            ? stored
+                            : compressionService.decompress(codec, stored.map(bufferFactory::wrap))
+                                    .map(ZipBundleService::toByteBuffer);
+                    return Flux.concat(
+                            Mono.just(start),
+                            data.map(EntryData::new),
+                            Mono.just(new EntryEnd()));
+                });
+    }
+
+    private static ByteBuffer toByteBuffer(DataBuffer buffer) {
+        try {
+            byte[] bytes = new byte[buffer.readableByteCount()];
+            buffer.read(bytes);
+            return ByteBuffer.wrap(bytes);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    // archive paths never escape the extraction directory
+    static String entryName(String key) {
+        return Arrays.stream(key.split("/"))
+                .filter(segment -> !segment.isEmpty() && !segment.equals(".") && !segment.equals(".."))
+                .collect(Collectors.joining("/"));
+    }
+
+    private record ResolvedObject(String key, HeadObjectResponse head) {
+    }
+
+    private sealed interface EntryPart permits EntryStart, EntryData, EntryEnd {
+    }
+
+    private record EntryStart(String name, long size, Instant lastModified) implements EntryPart {
+    }
+
+    private record EntryData(ByteBuffer chunk) implements EntryPart {
+    }
+
+    private record EntryEnd() implements EntryPart {
+    }
+}
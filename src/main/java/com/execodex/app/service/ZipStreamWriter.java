@@ -0,0 +1,285 @@
+package com.execodex.app.service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a ZIP archive incrementally, one entry after another, without knowing entry checksums up front.
+ * <p>
+ * Entries are deflated at the given level with the CRC-32 computed while the data passes through and written
+ * in a data descriptor after it. A stored entry would need its CRC in the local header for streaming readers
+ * such as {@link java.util.zip.ZipInputStream}, so level 0 (the default of {@code minio.zip.compression-level},
+ * as most attachments are already compressed) still deflates, into stored blocks at the cost of a copy.
+ * ZIP64 records are used for entries that may reach 4 GB, for entries of unknown size and for archives past
+ * the 32-bit offset or 65535-entry limits. A name already in the archive gets a numbered suffix. Only the
+ * central directory (a few dozen bytes per entry) is kept until {@link #finish()}.
+ * <p>
+ * Not thread-safe; calls must follow the order {@code (startEntry data* endEntry)* finish}, and
+ * {@link #close()} frees the deflater of an archive that is abandoned.
+ */
+final class ZipStreamWriter implements AutoCloseable {
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int DATA_DESCRIPTOR_SIGNATURE = 0x08074b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+    private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int END_SIGNATURE = 0x06054b50;
+    private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final int METHOD_DEFLATED = 8;
+    private static final int VERSION_DEFAULT = 20;
+    private static final int VERSION_ZIP64 = 45;
+    private static final short ZIP64_EXTRA_ID = 0x0001;
+    private static final long LIMIT_32 = 0xFFFFFFFFL;
+    private static final int LIMIT_16 = 0xFFFF;
+    private static final LocalDateTime DOS_EPOCH = LocalDateTime.of(1980, 1, 1, 0, 0);
+
+    static final long UNKNOWN_SIZE = -1;
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<String> names = new HashSet<>();
+    private final CRC32 crc = new CRC32();
+    private final Deflater deflater;
+    private final byte[] scratch = new byte[64 * 1024];
+    private long offset;
+    private Entry current;
+    private long written;
+
+    ZipStreamWriter(int level) {
+        this.deflater = new Deflater(level, true);
+    }
+
+    /**
+     * Local file header of the next entry. {@code size} decides whether the entry needs ZIP64 and is
+     * checked against the bytes actually written; {@link #UNKNOWN_SIZE} takes whatever is written and always
+     * uses ZIP64, so the data descriptor has room for any size.
+     */
+    ByteBuffer startEntry(String name, long size, Instant lastModified) {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + new String(current.name(), StandardCharsets.UTF_8) + " is not finished");
+        }
+        byte[] nameBytes = unique(name).getBytes(StandardCharsets.UTF_8);
+        boolean zip64 = size == UNKNOWN_SIZE || deflateBound(size) >= LIMIT_32;
+        current = new Entry(nameBytes, dosTime(lastModified), offset, size, zip64);
+        crc.reset();
+        deflater.reset();
+        written = 0;
+
+        ByteBuffer header = buffer(30 + nameBytes.length + (zip64 ? 20 : 0));
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) (FLAG_DATA_DESCRIPTOR | FLAG_UTF8))
+                .putShort((short) METHOD_DEFLATED)
+                .putInt(current.dosTime())
+                .putInt(0)
+                .putInt(zip64 ? (int) LIMIT_32 : 0)
+                .putInt(zip64 ? (int) LIMIT_32 : 0)
+                .putShort((short) nameBytes.length)
+                .putShort((short) (zip64 ? 20 : 0))
+                .put(nameBytes);
+        if (zip64) {
+            header.putShort(ZIP64_EXTRA_ID).putShort((short) 16).putLong(0).putLong(0);
+        }
+        return emit(header);
+    }
+
+    /**
+     * Deflates entry data, updating the checksum. The buffer's position is not changed; the result may be
+     * empty while the deflater holds the data back.
+     */
+    ByteBuffer data(ByteBuffer chunk) {
+        if (current == null) {
+            throw new IllegalStateException("No entry started");
+        }
+        written += chunk.remaining();
+        crc.update(chunk.duplicate());
+        deflater.setInput(chunk.duplicate());
+        ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+        while (!deflater.needsInput()) {
+            deflated.write(scratch, 0, deflater.deflate(scratch));
+        }
+        offset += deflated.size();
+        return ByteBuffer.wrap(deflated.toByteArray());
+    }
+
+    ByteBuffer endEntry() {
+        if (current == null) {
+            throw new IllegalStateException("No entry started");
+        }
+        if (current.size() != UNKNOWN_SIZE && written != current.size()) {
+            throw new IllegalStateException("Entry " + new String(current.name(), StandardCharsets.UTF_8)
+                    + " declared " + current.size() + " bytes but " + written + " were written");
+        }
+        // what the deflater held back ends the entry's data, followed by its descriptor
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        deflater.finish();
+        while (!deflater.finished()) {
+            rest.write(scratch, 0, deflater.deflate(scratch));
+        }
+        Entry entry = current.completed(written, deflater.getBytesWritten(), (int) crc.getValue());
+        entries.add(entry);
+        current = null;
+
+        ByteBuffer descriptor = buffer(rest.size() + (entry.zip64() ? 24 : 16));
+        descriptor.put(rest.toByteArray()).putInt(DATA_DESCRIPTOR_SIGNATURE).putInt(entry.crc());
+        if (entry.zip64()) {
+            descriptor.putLong(entry.compressedSize()).putLong(entry.size());
+        } else {
+            descriptor.putInt((int) entry.compressedSize()).putInt((int) entry.size());
+        }
+        return emit(descriptor);
+    }
+
+    /**
+     * Central directory and end records, one buffer per entry plus the trailer.
+     */
+    List<ByteBuffer> finish() {
+        if (current != null) {
+            throw new IllegalStateException("Entry " + new String(current.name(), StandardCharsets.UTF_8) + " is not finished");
+        }
+        long directoryOffset = offset;
+        List<ByteBuffer> buffers = new ArrayList<>(entries.size() + 1);
+        for (Entry entry : entries) {
+            buffers.add(emit(centralHeader(entry)));
+        }
+        long directorySize = offset - directoryOffset;
+
+        boolean zip64 = entries.size() >= LIMIT_16 || directoryOffset >= LIMIT_32 || directorySize >= LIMIT_32;
+        ByteBuffer trailer = buffer((zip64 ? 56 + 20 : 0) + 22);
+        if (zip64) {
+            long zip64EndOffset = offset;
+            trailer.putInt(ZIP64_END_SIGNATURE)
+                    .putLong(44)
+                    .putShort((short) VERSION_ZIP64)
+                    .putShort((short) VERSION_ZIP64)
+                    .putInt(0)
+                    .putInt(0)
+                    .putLong(entries.size())
+                    .putLong(entries.size())
+                    .putLong(directorySize)
+                    .putLong(directoryOffset);
+            trailer.putInt(ZIP64_LOCATOR_SIGNATURE)
+                    .putInt(0)
+                    .putLong(zip64EndOffset)
+                    .putInt(1);
+        }
+        trailer.putInt(END_SIGNATURE)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) Math.min(entries.size(), LIMIT_16))
+                .putShort((short) Math.min(entries.size(), LIMIT_16))
+                .putInt((int) Math.min(directorySize, LIMIT_32))
+                .putInt((int) Math.min(directoryOffset, LIMIT_32))
+                .putShort((short) 0);
+        buffers.add(emit(trailer));
+        deflater.end();
+        return buffers;
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    private static ByteBuffer centralHeader(Entry entry) {
+        boolean sizeOverflow = entry.size() >= LIMIT_32 || entry.compressedSize() >= LIMIT_32;
+        boolean offsetOverflow = entry.offset() >= LIMIT_32;
+        int extraLength = (sizeOverflow ? 16 : 0) + (offsetOverflow ? 8 : 0);
+        int extraBlock = extraLength == 0 ? 0 : 4 + extraLength;
+        boolean zip64 = extraBlock > 0 || entry.zip64();
+
+        ByteBuffer header = buffer(46 + entry.name().length + extraBlock);
+        header.putInt(CENTRAL_HEADER_SIGNATURE)
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) (zip64 ? VERSION_ZIP64 : VERSION_DEFAULT))
+                .putShort((short) (FLAG_DATA_DESCRIPTOR | FLAG_UTF8))
+                .putShort((short) METHOD_DEFLATED)
+                .putInt(entry.dosTime())
+                .putInt(entry.crc())
+                .putInt((int) (sizeOverflow ? LIMIT_32 : entry.compressedSize()))
+                .putInt((int) (sizeOverflow ? LIMIT_32 : entry.size()))
+                .putShort((short) entry.name().length)
+                .putShort((short) extraBlock)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putShort((short) 0)
+                .putInt(0)
+                .putInt((int) (offsetOverflow ? LIMIT_32 : entry.offset()))
+                .put(entry.name());
+        if (extraBlock > 0) {
+            header.putShort(ZIP64_EXTRA_ID).putShort((short) extraLength);
+            if (sizeOverflow) {
+                header.putLong(entry.size()).putLong(entry.compressedSize());
+            }
+            if (offsetOverflow) {
+                header.putLong(entry.offset());
+            }
+        }
+        return header;
+    }
+
+    // "a/b.pdf", then "a/b (2).pdf", "a/b (3).pdf" for further entries of the same name
+    private String unique(String name) {
+        String candidate = name;
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        int suffixAt = dot > slash + 1 ? dot : name.length();
+        for (int n = 2; !names.add(candidate); n++) {
+            candidate = name.substring(0, suffixAt) + " (" + n + ")" + name.substring(suffixAt);
+        }
+        return candidate;
+    }
+
+    // zlib's deflateBound: the most deflating size bytes can produce, at any level
+    private static long deflateBound(long size) {
+        return size + (size >> 12) + (size >> 14) + (size >> 25) + 13;
+    }
+
+    private ByteBuffer emit(ByteBuffer buffer) {
+        buffer.flip();
+        offset += buffer.remaining();
+        return buffer;
+    }
+
+    private static ByteBuffer buffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // MS-DOS date in the high and time in the low 16 bits, two-second resolution, UTC
+    private static int dosTime(Instant instant) {
+        LocalDateTime time = instant == null ? DOS_EPOCH : LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+        if (time.isBefore(DOS_EPOCH)) {
+            time = DOS_EPOCH;
+        }
+        return (time.getYear() - 1980) << 25
+                | time.getMonthValue() << 21
+                | time.getDayOfMonth() << 16
+                | time.getHour() << 11
+                | time.getMinute() << 5
+                | time.getSecond() >> 1;
+    }
+
+    private record Entry(byte[] name, int dosTime, long offset, long size, long compressedSize, boolean zip64,
+                         int crc) {
+
+        Entry(byte[] name, int dosTime, long offset, long size, boolean zip64) {
+            this(name, dosTime, offset, size, 0, zip64, 0);
+        }
+
+        Entry completed(long size, long compressedSize, int crc) {
+            return new Entry(name, dosTime, offset, size, compressedSize, zip64, crc);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+--liquibase formatted sql
+
+--changeset system:003-add-appointment-keyset-index
+CREATE INDEX idx_appointment_keyset ON appointment ((COALESCE(start_date, 'infinity'::timestamp)), id);
@@ -0,0 +1,7 @@
+--liquibase formatted sql
+
+--changeset system:004-add-appointment-range-indexes
+-- "starts within" is a range scan on start_date; "overlaps" additionally bounds the end, which is
+-- start_date for appointments without a duration (matches AppointmentRepo.findOverlapping)
+CREATE INDEX idx_appointment_start_date ON appointment (start_date);
+CREATE INDEX idx_appointment_end_date ON appointment ((start_date + COALESCE(duration, INTERVAL '0')));
@@ -0,0 +1,23 @@
+--liquibase formatted sql
+
+--changeset system:005-create-content-store-tables
+-- One row per distinct content (SHA-256) stored in a bucket, with the MinIO key holding it
+CREATE TABLE content_blob (
+    bucket VARCHAR(63) NOT NULL,
+    sha256 CHAR(64) NOT NULL,
+    object_key VARCHAR(1024) NOT NULL,
+    size BIGINT NOT NULL,
+    e_tag VARCHAR(128),
+    ref_count INTEGER NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    PRIMARY KEY (bucket, sha256)
+);
+
+-- Logical object keys pointing at a blob; each row holds one content_blob.ref_count
+CREATE TABLE content_reference (
+    bucket VARCHAR(63) NOT NULL,
+    object_key VARCHAR(1024) NOT NULL,
+    sha256 CHAR(64) NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now(),
+    PRIMARY KEY (bucket, object_key)
+);
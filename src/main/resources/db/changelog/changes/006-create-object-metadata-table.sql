@@ -0,0 +1,19 @@
+--liquibase formatted sql
+
+--changeset system:006-create-object-metadata-table
+-- object_key uses the C collation so the primary key index serves prefix ranges and keyset order
+CREATE TABLE object_metadata (
+    bucket VARCHAR(63) NOT NULL,
+    object_key VARCHAR(1024) COLLATE "C" NOT NULL,
+    size BIGINT NOT NULL,
+    e_tag VARCHAR(128),
+    content_type VARCHAR(255),
+    tags TEXT[] NOT NULL DEFAULT '{}',
+    uploader VARCHAR(255),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (bucket, object_key)
+);
+
+CREATE INDEX idx_object_metadata_tags ON object_metadata USING GIN (tags);
+CREATE INDEX idx_object_metadata_updated_at ON object_metadata (bucket, updated_at);
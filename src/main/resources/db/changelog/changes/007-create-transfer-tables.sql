@@ -0,0 +1,31 @@
+--liquibase formatted sql
+
+--changeset system:007-create-transfer-tables
+-- checkpoint is the last source key whose copy outcome is recorded in transfer_item
+CREATE TABLE transfer_job (
+    id UUID PRIMARY KEY,
+    source_bucket VARCHAR(63) NOT NULL,
+    source_prefix VARCHAR(1024) NOT NULL DEFAULT '',
+    target_bucket VARCHAR(63) NOT NULL,
+    target_prefix VARCHAR(1024) NOT NULL DEFAULT '',
+    delete_source BOOLEAN NOT NULL,
+    state VARCHAR(16) NOT NULL,
+    checkpoint VARCHAR(1024) COLLATE "C",
+    error TEXT,
+    owner VARCHAR(64),
+    heartbeat_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_transfer_job_state ON transfer_job (state, heartbeat_at);
+
+CREATE TABLE transfer_item (
+    job_id UUID NOT NULL REFERENCES transfer_job (id) ON DELETE CASCADE,
+    source_key VARCHAR(1024) COLLATE "C" NOT NULL,
+    size BIGINT NOT NULL,
+    e_tag VARCHAR(128),
+    state VARCHAR(16) NOT NULL,
+    error TEXT,
+    PRIMARY KEY (job_id, source_key)
+);
@@ -0,0 +1,30 @@
+--liquibase formatted sql
+
+--changeset system:008-create-upload-session-tables
+-- chunk n of a session is S3 part n + 1 of its multipart upload, starting at offset n * chunk_size
+CREATE TABLE upload_session (
+    id UUID PRIMARY KEY,
+    bucket VARCHAR(63) NOT NULL,
+    object_key VARCHAR(1024) NOT NULL,
+    upload_id VARCHAR(1024) NOT NULL,
+    content_type VARCHAR(255),
+    size BIGINT,
+    chunk_size BIGINT NOT NULL,
+    tags TEXT[] NOT NULL DEFAULT '{}',
+    uploader VARCHAR(255),
+    state VARCHAR(16) NOT NULL,
+    e_tag VARCHAR(128),
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_upload_session_updated_at ON upload_session (updated_at);
+
+CREATE TABLE upload_part (
+    session_id UUID NOT NULL REFERENCES upload_session (id) ON DELETE CASCADE,
+    part_number INTEGER NOT NULL,
+    size BIGINT NOT NULL,
+    e_tag VARCHAR(128) NOT NULL,
+    uploaded_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    PRIMARY KEY (session_id, part_number)
+);
@@ -0,0 +1,17 @@
+--liquibase formatted sql
+
+--changeset system:009-create-bucket-event-table
+-- change feed of object creations and deletions; seq is the resume position handed to clients
+CREATE TABLE bucket_event (
+    seq BIGSERIAL PRIMARY KEY,
+    bucket VARCHAR(63) NOT NULL,
+    object_key VARCHAR(1024) NOT NULL COLLATE "C",
+    type VARCHAR(16) NOT NULL,
+    size BIGINT,
+    e_tag VARCHAR(128),
+    source VARCHAR(16) NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX idx_bucket_event_bucket_seq ON bucket_event (bucket, seq);
+CREATE INDEX idx_bucket_event_created_at ON bucket_event (created_at);
@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset system:010-collate-content-reference-keys
+-- byte order like the other key columns, so the primary key serves prefix ranges and key-ordered listing pages
+ALTER TABLE content_reference ALTER COLUMN object_key TYPE VARCHAR(1024) COLLATE "C";
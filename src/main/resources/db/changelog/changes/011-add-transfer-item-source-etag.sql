@@ -0,0 +1,5 @@
+--liquibase formatted sql
+
+--changeset system:011-add-transfer-item-source-etag
+-- the ETag of the source version that was copied; a rename only deletes a source that still has it
+ALTER TABLE transfer_item ADD COLUMN source_e_tag VARCHAR(128);
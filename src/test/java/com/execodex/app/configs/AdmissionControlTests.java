@@ -0,0 +1,135 @@
+package com.execodex.app.configs;
+
+import com.execodex.app.metrics.BucketTags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.http.SdkHttpResponse;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AdmissionControlTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void admitsUpToTheLimitQueuesThenRejects() {
+        AdmissionControl admission = admission(2, DataSize.ofGigabytes(1));
+
+        Request first = send(admission, MockServerHttpRequest.get("/api/minio/reports/a.pdf"));
+        Request second = send(admission, MockServerHttpRequest.get("/api/minio/reports/b.pdf"));
+        Request third = send(admission, MockServerHttpRequest.get("/api/minio/reports/c.pdf"));
+        Request fourth = send(admission, MockServerHttpRequest.get("/api/minio/reports/d.pdf"));
+
+        assertThat(first.admitted).isTrue();
+        assertThat(second.admitted).isTrue();
+        assertThat(third.admitted).isFalse();
+        // the queue holds one request
+        assertThat(fourth.admitted).isFalse();
+        assertThat(fourth.exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(fourth.exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+        first.respond();
+        assertThat(third.admitted).isTrue();
+        assertThat(gauge("minio.admission.in.flight")).isEqualTo(2);
+        assertThat(gauge("minio.admission.queued")).isZero();
+    }
+
+    @Test
+    void chargesUploadsWithoutContentLength() {
+        AdmissionControl admission = admission(10, DataSize.ofMegabytes(100));
+
+        Request download = send(admission, MockServerHttpRequest.get("/api/minio/reports/a.pdf"));
+        assertThat(download.admitted).isTrue();
+        assertThat(gauge("minio.admission.in.flight.bytes")).isZero();
+
+        Request upload = send(admission, MockServerHttpRequest.post("/api/minio/reports/upload"));
+        Request secondUpload = send(admission, MockServerHttpRequest.post("/api/minio/reports/upload"));
+        assertThat(upload.admitted).isTrue();
+        assertThat(gauge("minio.admission.in.flight.bytes")).isEqualTo(DataSize.ofMegabytes(64).toBytes());
+        assertThat(secondUpload.admitted).isFalse();
+
+        upload.respond();
+        assertThat(secondUpload.admitted).isTrue();
+    }
+
+    @Test
+    void releasesStreamingResponsesOnceTheyStart() {
+        AdmissionControl admission = admission(1, DataSize.ofGigabytes(1));
+
+        Request listing = send(admission, MockServerHttpRequest.get("/api/minio/reports"));
+        Request download = send(admission, MockServerHttpRequest.get("/api/minio/reports/a.pdf"));
+        assertThat(download.admitted).isFalse();
+
+        listing.exchange.getResponse().setComplete().block();
+        assertThat(download.admitted).isTrue();
+    }
+
+    @Test
+    void admitsWaitingRequestsWhenTheLimitGrows() {
+        AdmissionControl admission = admission(2, DataSize.ofGigabytes(1));
+        send(admission, MockServerHttpRequest.get("/api/minio/reports/a.pdf"));
+        send(admission, MockServerHttpRequest.get("/api/minio/reports/b.pdf"));
+        Request waiting = send(admission, MockServerHttpRequest.get("/api/minio/reports/c.pdf"));
+        assertThat(waiting.admitted).isFalse();
+
+        // MinIO answers quickly while both permits are held, so the limit grows
+        for (int i = 0; i < 50 && !waiting.admitted.get(); i++) {
+            ExecutionAttributes attributes = new ExecutionAttributes();
+            admission.beforeTransmission(mock(Context.BeforeTransmission.class), attributes);
+            Context.AfterTransmission response = mock(Context.AfterTransmission.class);
+            when(response.httpResponse()).thenReturn(SdkHttpResponse.builder().statusCode(200).build());
+            admission.afterTransmission(response, attributes);
+        }
+
+        assertThat(waiting.admitted).isTrue();
+    }
+
+    private AdmissionControl admission(int limit, DataSize maxBytes) {
+        AdmissionProperties properties = new AdmissionProperties(true, limit, 1, 10, 2.0, 100, maxBytes, maxBytes,
+                DataSize.ofMegabytes(64), 1, Duration.ofSeconds(5), Duration.ofSeconds(1));
+        return new AdmissionControl(properties, meterRegistry, new BucketTags(List.of("reports")));
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(name).gauge().value();
+    }
+
+    // a request whose response completes once respond() is called
+    private static Request send(AdmissionControl admission, MockServerHttpRequest.BaseBuilder<?> request) {
+        Request sent = new Request(MockServerWebExchange.from(request));
+        admission.filter(sent.exchange, exchange -> {
+            sent.admitted.set(true);
+            return sent.response.asMono();
+        }).subscribe();
+        return sent;
+    }
+
+    private static final class Request {
+
+        private final MockServerWebExchange exchange;
+        private final AtomicBoolean admitted = new AtomicBoolean();
+        private final Sinks.Empty<Void> response = Sinks.empty();
+
+        Request(MockServerWebExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        void respond() {
+            response.tryEmitEmpty();
+        }
+    }
+}
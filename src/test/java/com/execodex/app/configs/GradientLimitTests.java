@@ -0,0 +1,56 @@
+package com.execodex.app.configs;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientLimitTests {
+
+    private static final long MILLIS = 1_000_000;
+
+    @Test
+    void growsWhileLatencyStaysAtBaseline() {
+        GradientLimit limit = new GradientLimit(20, 5, 200, 1.5);
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(10 * MILLIS, limit.limit());
+        }
+
+        assertThat(limit.limit()).isEqualTo(200);
+    }
+
+    @Test
+    void shrinksWhenLatencyRisesAboveTolerance() {
+        GradientLimit limit = new GradientLimit(100, 5, 200, 1.5);
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(10 * MILLIS, 100);
+        }
+        int before = limit.limit();
+
+        for (int i = 0; i < 50; i++) {
+            limit.onSample(100 * MILLIS, limit.limit());
+        }
+
+        assertThat(limit.limit()).isLessThan(before / 2).isGreaterThanOrEqualTo(5);
+    }
+
+    @Test
+    void doesNotGrowWhenMostlyIdle() {
+        GradientLimit limit = new GradientLimit(100, 5, 200, 1.5);
+
+        for (int i = 0; i < 200; i++) {
+            limit.onSample(10 * MILLIS, 3);
+        }
+
+        assertThat(limit.limit()).isEqualTo(100);
+    }
+
+    @Test
+    void backsOffOnOverload() {
+        GradientLimit limit = new GradientLimit(100, 5, 200, 1.5);
+
+        limit.onOverload();
+
+        assertThat(limit.limit()).isEqualTo(90);
+    }
+}
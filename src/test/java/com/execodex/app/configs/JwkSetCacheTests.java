@@ -0,0 +1,123 @@
+package com.execodex.app.configs;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.NimbusReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs {@link JwkSetCache} against a stub issuer that serves a JWK set over HTTP.
+ */
+class JwkSetCacheTests {
+
+    private final AtomicReference<JWKSet> published = new AtomicReference<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    // the issuer answers once this is released
+    private final AtomicReference<CountDownLatch> answer = new AtomicReference<>(new CountDownLatch(0));
+    private HttpServer issuer;
+    private JwkSetCache jwkSetCache;
+
+    @BeforeEach
+    void startIssuer() throws IOException {
+        issuer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        issuer.createContext("/certs", exchange -> {
+            fetches.incrementAndGet();
+            try {
+                answer.get().await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = published.get().toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        issuer.start();
+        jwkSetCache = new JwkSetCache(WebClient.builder(),
+                "http://localhost:" + issuer.getAddress().getPort() + "/certs",
+                Duration.ofMinutes(5), Duration.ZERO, Duration.ofMillis(500));
+    }
+
+    @AfterEach
+    void stopIssuer() {
+        answer.get().countDown();
+        issuer.stop(0);
+    }
+
+    @Test
+    void verifiesTokensWithPrefetchedKeys() throws JOSEException {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("k1").generate();
+        published.set(new JWKSet(key.toPublicJWK()));
+
+        assertThat(jwkSetCache.isLoaded()).isFalse();
+        jwkSetCache.refresh().block();
+        assertThat(jwkSetCache.isLoaded()).isTrue();
+
+        var decoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSetCache::select).build();
+        assertThat(decoder.decode(token(key, "alice")).block().getSubject()).isEqualTo("alice");
+        assertThat(decoder.decode(token(key, "bob")).block().getSubject()).isEqualTo("bob");
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void refreshesWhenTokenIsSignedWithUnknownKey() throws JOSEException {
+        RSAKey oldKey = new RSAKeyGenerator(2048).keyID("old").generate();
+        RSAKey newKey = new RSAKeyGenerator(2048).keyID("new").generate();
+        published.set(new JWKSet(oldKey.toPublicJWK()));
+        jwkSetCache.refresh().block();
+
+        published.set(new JWKSet(newKey.toPublicJWK()));
+        var decoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSetCache::select).build();
+
+        assertThat(decoder.decode(token(newKey, "alice")).block().getSubject()).isEqualTo("alice");
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    void failsAFetchTheIssuerDoesNotAnswer() throws JOSEException {
+        published.set(new JWKSet(new RSAKeyGenerator(2048).keyID("k1").generate().toPublicJWK()));
+        answer.set(new CountDownLatch(1));
+
+        assertThatThrownBy(() -> jwkSetCache.refresh().block(Duration.ofSeconds(5)))
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(jwkSetCache.isLoaded()).isFalse();
+    }
+
+    private static String token(RSAKey key, String subject) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject(subject)
+                .expirationTime(Date.from(Instant.now().plusSeconds(60)))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
@@ -0,0 +1,86 @@
+package com.execodex.app.configs;
+
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LiquibaseStartupTests {
+
+    @Test
+    void runLeavesLiquibaseAlone() {
+        RecordingLiquibase liquibase = new RecordingLiquibase();
+        LiquibaseStartup startup = new LiquibaseStartup("run");
+
+        startup.postProcessBeforeInitialization(liquibase, "liquibase");
+
+        assertThat(liquibase.shouldRun).isTrue();
+        assertThat(startup.isMigrated()).isTrue();
+    }
+
+    @Test
+    void skipNeverMigrates() {
+        RecordingLiquibase liquibase = new RecordingLiquibase();
+        LiquibaseStartup startup = new LiquibaseStartup("skip");
+
+        startup.postProcessBeforeInitialization(liquibase, "liquibase");
+        startup.onApplicationEvent(null);
+
+        assertThat(liquibase.shouldRun).isFalse();
+        assertThat(liquibase.runs.get()).isZero();
+        assertThat(startup.isMigrated()).isTrue();
+    }
+
+    @Test
+    void deferMigratesOnceReady() throws InterruptedException {
+        RecordingLiquibase liquibase = new RecordingLiquibase();
+        LiquibaseStartup startup = new LiquibaseStartup(" Defer ");
+
+        startup.postProcessBeforeInitialization(liquibase, "liquibase");
+        assertThat(liquibase.shouldRun).isFalse();
+        assertThat(startup.isMigrated()).isFalse();
+
+        startup.onApplicationEvent(null);
+        awaitMigrated(startup);
+        assertThat(liquibase.runs.get()).isEqualTo(1);
+        assertThat(startup.failure()).isNull();
+    }
+
+    @Test
+    void rejectsUnknownModes() {
+        assertThatThrownBy(() -> new LiquibaseStartup("later"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("later");
+    }
+
+    private static void awaitMigrated(LiquibaseStartup startup) throws InterruptedException {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(5));
+        while (!startup.isMigrated() && Instant.now().isBefore(deadline)) {
+            Thread.sleep(10);
+        }
+        assertThat(startup.isMigrated()).isTrue();
+    }
+
+    private static final class RecordingLiquibase extends SpringLiquibase {
+
+        private final AtomicInteger runs = new AtomicInteger();
+        private volatile boolean shouldRun = true;
+
+        @Override
+        public void setShouldRun(boolean shouldRun) {
+            this.shouldRun = shouldRun;
+        }
+
+        @Override
+        public void afterPropertiesSet() {
+            if (shouldRun) {
+                runs.incrementAndGet();
+            }
+        }
+    }
+}
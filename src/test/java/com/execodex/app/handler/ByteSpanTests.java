@@ -0,0 +1,33 @@
+package com.execodex.app.handler;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpRange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ByteSpanTests {
+
+    @Test
+    void resolvesClosedOpenAndSuffixRanges() {
+        var spans = ByteSpan.resolve(HttpRange.parseRanges("bytes=0-99,500-,-100"), 1000);
+
+        assertThat(spans).containsExactly(
+                new ByteSpan(0, 99),
+                new ByteSpan(500, 999),
+                new ByteSpan(900, 999));
+    }
+
+    @Test
+    void clampsRangeEndToObjectLength() {
+        var spans = ByteSpan.resolve(HttpRange.parseRanges("bytes=10-5000"), 100);
+
+        assertThat(spans).containsExactly(new ByteSpan(10, 99));
+        assertThat(spans.getFirst().contentRange(100)).isEqualTo("bytes 10-99/100");
+    }
+
+    @Test
+    void dropsUnsatisfiableRanges() {
+        assertThat(ByteSpan.resolve(HttpRange.parseRanges("bytes=100-200"), 100)).isEmpty();
+        assertThat(ByteSpan.resolve(HttpRange.parseRanges("bytes=0-10"), 0)).isEmpty();
+    }
+}
@@ -0,0 +1,30 @@
+package com.execodex.app.metrics;
+
+import io.micrometer.core.instrument.MockClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class S3ConnectionPoolMetricsTests {
+
+    @Test
+    void peakKeepsTheHighestValueOfItsWindow() {
+        MockClock clock = new MockClock();
+        S3ConnectionPoolMetrics.Peak peak = new S3ConnectionPoolMetrics.Peak(clock, Duration.ofMinutes(3));
+        peak.observe(3);
+        peak.observe(48);
+        peak.observe(2);
+
+        assertThat(peak.read()).isEqualTo(48);
+        // a second scraper sees the same peak
+        assertThat(peak.read()).isEqualTo(48);
+
+        // once the window has passed, the last observed value remains
+        clock.add(Duration.ofMinutes(4));
+        assertThat(peak.read()).isEqualTo(2);
+        peak.observe(5);
+        assertThat(peak.read()).isEqualTo(5);
+    }
+}
@@ -0,0 +1,53 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.Appointment;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AppointmentIngestServiceTests {
+
+    @Test
+    void writesIntervalsInPostgresOutputStyle() {
+        assertThat(AppointmentIngestService.intervalText(Duration.parse("PT1H30M5.5S")))
+                .isEqualTo("0 years 0 mons 0 days 1 hours 30 mins 5.500000 secs");
+        // every field carries the sign, the fraction included
+        assertThat(AppointmentIngestService.intervalText(Duration.parse("PT-1H-30M-5.5S")))
+                .isEqualTo("-0 years -0 mons -0 days -1 hours -30 mins -5.500000 secs");
+        assertThat(AppointmentIngestService.intervalText(Duration.ofMillis(-500)))
+                .isEqualTo("-0 years -0 mons -0 days -0 hours -0 mins -0.500000 secs");
+    }
+
+    @Test
+    void rejectsValuesTheColumnsCannotStore() {
+        LocalDateTime start = LocalDateTime.parse("2024-05-06T07:08:09");
+        assertThatCode(() -> AppointmentIngestService.validate(
+                new Appointment(null, "Dentist", start, Duration.ofHours(-1)))).doesNotThrowAnyException();
+        assertThatCode(() -> AppointmentIngestService.validate(
+                new Appointment(null, null, null, null))).doesNotThrowAnyException();
+
+        assertThatThrownBy(() -> AppointmentIngestService.validate(new Appointment(null, "x".repeat(256), start, null)))
+                .hasMessageContaining("title is longer than 255");
+        assertThatThrownBy(() -> AppointmentIngestService.validate(new Appointment(null, "a\u0000b", start, null)))
+                .hasMessageContaining("NUL");
+        assertThatThrownBy(() -> AppointmentIngestService.validate(
+                new Appointment(null, "Dentist", LocalDateTime.parse("+10000-01-01T00:00:00"), null)))
+                .hasMessageContaining("start_date");
+        assertThatThrownBy(() -> AppointmentIngestService.validate(
+                new Appointment(null, "Dentist", start, Duration.ofDays(Integer.MAX_VALUE + 1L))))
+                .hasMessageContaining("duration");
+    }
+
+    @Test
+    void splitsQuotedCsvFields() {
+        assertThat(AppointmentIngestService.splitCsv("\"Lunch, \"\"team\"\"\",2024-05-06T12:00:00,PT1H\r"))
+                .containsExactly("Lunch, \"team\"", "2024-05-06T12:00:00", "PT1H");
+        assertThatThrownBy(() -> AppointmentIngestService.splitCsv("\"open,2024-05-06T12:00:00,"))
+                .hasMessageContaining("unterminated");
+    }
+}
@@ -0,0 +1,53 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.Appointment;
+import com.execodex.app.domain.AppointmentWindow;
+import com.execodex.app.repos.AppointmentRepo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AppointmentServiceTests {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2024, 5, 6, 0, 0);
+    private static final AppointmentWindow WEEK =
+            new AppointmentWindow(MONDAY, MONDAY.plusDays(7), AppointmentWindow.Match.STARTS);
+
+    @Test
+    void aCancelledRequestDoesNotCancelTheSharedQuery() {
+        Sinks.Many<Appointment> rows = Sinks.many().unicast().onBackpressureBuffer();
+        AppointmentRepo repo = mock(AppointmentRepo.class);
+        when(repo.findStartingBetween(any(), any())).thenReturn(rows.asFlux());
+        AppointmentService service = new AppointmentService(repo, new SimpleMeterRegistry(), 100, 1000, 256,
+                Duration.ofDays(7), Duration.ofMinutes(5));
+
+        List<Appointment> cancelled = new CopyOnWriteArrayList<>();
+        List<Appointment> waiting = new CopyOnWriteArrayList<>();
+        Disposable first = service.findInWindow(WEEK).subscribe(cancelled::add);
+        service.findInWindow(WEEK).subscribe(waiting::add);
+        first.dispose();
+
+        Appointment appointment = new Appointment(1L, "standup", MONDAY.plusHours(9), Duration.ofMinutes(15));
+        rows.tryEmitNext(appointment);
+        rows.tryEmitComplete();
+
+        assertThat(cancelled).isEmpty();
+        assertThat(waiting).containsExactly(appointment);
+        // the completed query stays cached for later requests
+        assertThat(service.findInWindow(WEEK).collectList().block()).containsExactly(appointment);
+        verify(repo, times(1)).findStartingBetween(any(), any());
+    }
+}
@@ -0,0 +1,98 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.BucketEvent;
+import com.execodex.app.domain.MinioNotification;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BucketEventServiceTests {
+
+    private static final long GAP_TIMEOUT = Duration.ofSeconds(2).toNanos();
+
+    @Test
+    void readsObjectChangesFromMinioNotification() {
+        // as MinIO's notify_webhook sends them, keys URL-encoded
+        MinioNotification notification = new MinioNotification(List.of(
+                record("s3:ObjectCreated:Put", "reports", "2024%2Fq1+summary.csv", 1234L, "0f343b0931126a20f133d67c2b018a3b"),
+                record("s3:ObjectRemoved:Delete", "reports", "old.csv", null, null),
+                record("s3:ObjectAccessed:Get", "reports", "read.csv", 10L, "e"),
+                new MinioNotification.Record("s3:ObjectCreated:Put", null, null)));
+
+        assertThat(BucketEventService.changes(notification)).containsExactly(
+                new BucketEventService.Notified("reports", new BucketEventService.Change(
+                        "2024/q1 summary.csv", BucketEventService.CREATED, 1234L, "0f343b0931126a20f133d67c2b018a3b")),
+                new BucketEventService.Notified("reports", new BucketEventService.Change(
+                        "old.csv", BucketEventService.DELETED, null, null)));
+        assertThat(BucketEventService.changes(new MinioNotification(null))).isEmpty();
+    }
+
+    @Test
+    void checksWebhookToken() {
+        BucketEventService withToken = service("s3cr3t");
+        assertThat(withToken.isWebhookEnabled()).isTrue();
+        assertThat(withToken.isWebhookAuthorized("Bearer s3cr3t")).isTrue();
+        assertThat(withToken.isWebhookAuthorized("s3cr3t")).isTrue();
+        assertThat(withToken.isWebhookAuthorized("Bearer other")).isFalse();
+        assertThat(withToken.isWebhookAuthorized(null)).isFalse();
+
+        assertThatThrownBy(() -> service(""))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("minio.events.webhook.token");
+    }
+
+    @Test
+    void releasesEventsInSequenceOrder() {
+        BucketEventService.Cursor cursor = new BucketEventService.Cursor(10);
+
+        assertThat(cursor.advance(List.of(event(9), event(10), event(11), event(12)), 0, GAP_TIMEOUT))
+                .extracting(BucketEvent::sequence).containsExactly(11L, 12L);
+        assertThat(cursor.position()).isEqualTo(12);
+    }
+
+    @Test
+    void waitsForAMissingSequenceToCommit() {
+        BucketEventService.Cursor cursor = new BucketEventService.Cursor(10);
+
+        assertThat(cursor.advance(List.of(event(11), event(13)), 0, GAP_TIMEOUT))
+                .extracting(BucketEvent::sequence).containsExactly(11L);
+        assertThat(cursor.advance(List.of(event(13)), GAP_TIMEOUT - 1, GAP_TIMEOUT)).isEmpty();
+        // the slow insert commits
+        assertThat(cursor.advance(List.of(event(12), event(13)), GAP_TIMEOUT - 1, GAP_TIMEOUT))
+                .extracting(BucketEvent::sequence).containsExactly(12L, 13L);
+    }
+
+    @Test
+    void skipsASequenceMissingForLongerThanTheGapTimeout() {
+        BucketEventService.Cursor cursor = new BucketEventService.Cursor(10);
+
+        assertThat(cursor.advance(List.of(event(12), event(14)), 0, GAP_TIMEOUT)).isEmpty();
+        assertThat(cursor.advance(List.of(event(12), event(14)), GAP_TIMEOUT, GAP_TIMEOUT))
+                .extracting(BucketEvent::sequence).containsExactly(12L);
+        // the next gap gets its own timeout
+        assertThat(cursor.position()).isEqualTo(12);
+        assertThat(cursor.advance(List.of(event(14)), 2 * GAP_TIMEOUT - 1, GAP_TIMEOUT)).isEmpty();
+        assertThat(cursor.advance(List.of(event(14)), 3 * GAP_TIMEOUT, GAP_TIMEOUT))
+                .extracting(BucketEvent::sequence).containsExactly(14L);
+    }
+
+    private static BucketEvent event(long sequence) {
+        return new BucketEvent(sequence, "reports", "r" + sequence + ".csv", BucketEventService.CREATED, 1L, "e",
+                BucketEventService.SOURCE_API, Instant.EPOCH);
+    }
+
+    private static BucketEventService service(String token) {
+        return new BucketEventService(null, true, Duration.ofMillis(250), Duration.ofSeconds(2), 500, 1024,
+                Duration.ofHours(24), true, token);
+    }
+
+    private static MinioNotification.Record record(String eventName, String bucket, String key, Long size, String eTag) {
+        return new MinioNotification.Record(eventName, "2024-05-06T07:08:09.000Z", new MinioNotification.S3(
+                new MinioNotification.Bucket(bucket), new MinioNotification.S3Object(key, size, eTag)));
+    }
+}
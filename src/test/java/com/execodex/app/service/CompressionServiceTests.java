@@ -0,0 +1,126 @@
+package com.execodex.app.service;
+
+import com.execodex.app.configs.CompressionProperties;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+import reactor.core.Disposable;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressionServiceTests {
+
+    private final CompressionService compressionService = new CompressionService(new CompressionProperties(true, "gzip",
+            Map.of("exports", "zstd", "media", "none"), List.of("application/json", "text/*"), 6, 3,
+            DataSize.ofKilobytes(4), 2, 4));
+
+    @Test
+    void choosesCodecByBucketAndContentType() {
+        assertThat(compressionService.codecFor("logs", "text/csv")).isEqualTo(CompressionService.Codec.GZIP);
+        assertThat(compressionService.codecFor("exports", "application/json; charset=UTF-8"))
+                .isEqualTo(CompressionService.Codec.ZSTD);
+        assertThat(compressionService.codecFor("media", "text/plain")).isNull();
+        assertThat(compressionService.codecFor("logs", "image/png")).isNull();
+        assertThat(compressionService.codecFor("logs", null)).isNull();
+    }
+
+    @Test
+    void roundTripsThroughBothCodecs() {
+        byte[] content = "{\"line\": 1, \"level\": \"INFO\"}\n".repeat(5000).getBytes(StandardCharsets.UTF_8);
+        for (CompressionService.Codec codec : CompressionService.Codec.values()) {
+            byte[] compressed = join(compressionService.compress(codec, chunks(content, 1000)));
+            assertThat(compressed.length).isLessThan(content.length / 10);
+
+            byte[] restored = join(compressionService.decompress(codec, chunks(compressed, 300)));
+            assertThat(restored).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void refusesStreamsBeyondMaxStreams() {
+        List<Disposable> running = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            running.add(stalledStream());
+        }
+
+        assertThatThrownBy(() -> compressionService.compress(CompressionService.Codec.GZIP, Flux.empty()).blockLast())
+                .isInstanceOf(RejectedExecutionException.class);
+        // finished streams free their slots
+        running.removeFirst().dispose();
+        running.removeFirst().dispose();
+        byte[] content = "text".getBytes(StandardCharsets.UTF_8);
+        assertThat(join(compressionService.decompress(CompressionService.Codec.GZIP,
+                compressionService.compress(CompressionService.Codec.GZIP, chunks(content, 2))))).isEqualTo(content);
+        running.forEach(Disposable::dispose);
+    }
+
+    // a stream of incompressible input whose subscriber never asks for output
+    private Disposable stalledStream() {
+        byte[] noise = new byte[4096];
+        new Random(1).nextBytes(noise);
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        BaseSubscriber<DataBuffer> subscriber = new BaseSubscriber<>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+            }
+        };
+        compressionService.compress(CompressionService.Codec.GZIP,
+                        Flux.<DataBuffer>generate(sink -> sink.next(bufferFactory.wrap(noise.clone()))))
+                .subscribe(subscriber);
+        return subscriber;
+    }
+
+    @Test
+    void onlyObjectsMarkedAsCompressedHaveACodec() {
+        HeadObjectResponse compressed = HeadObjectResponse.builder().contentEncoding("gzip")
+                .metadata(CompressionService.metadata("gzip")).build();
+        HeadObjectResponse uploadedEncoded = HeadObjectResponse.builder().contentEncoding("gzip").build();
+        HeadObjectResponse reEncoded = HeadObjectResponse.builder().contentEncoding("zstd")
+                .metadata(CompressionService.metadata("gzip")).build();
+
+        assertThat(CompressionService.Codec.of(compressed)).isEqualTo(CompressionService.Codec.GZIP);
+        assertThat(CompressionService.Codec.of(uploadedEncoded)).isNull();
+        assertThat(CompressionService.Codec.of(reEncoded)).isNull();
+        assertThat(CompressionService.metadata(null)).isNull();
+    }
+
+    @Test
+    void parsesAcceptEncoding() {
+        assertThat(CompressionService.accepts(List.of("gzip, deflate, br"), CompressionService.Codec.GZIP)).isTrue();
+        assertThat(CompressionService.accepts(List.of("br", "zstd;q=0.5"), CompressionService.Codec.ZSTD)).isTrue();
+        assertThat(CompressionService.accepts(List.of("gzip;q=0, *"), CompressionService.Codec.GZIP)).isFalse();
+        assertThat(CompressionService.accepts(List.of("*;q=0.1"), CompressionService.Codec.ZSTD)).isTrue();
+        assertThat(CompressionService.accepts(List.of("identity"), CompressionService.Codec.GZIP)).isFalse();
+        assertThat(CompressionService.accepts(List.of(), CompressionService.Codec.GZIP)).isFalse();
+    }
+
+    private static Flux<DataBuffer> chunks(byte[] content, int size) {
+        DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+        return Flux.range(0, (content.length + size - 1) / size)
+                .map(i -> bufferFactory.wrap(Arrays.copyOfRange(content, i * size,
+                        Math.min(content.length, (i + 1) * size))));
+    }
+
+    private static byte[] join(Flux<DataBuffer> buffers) {
+        DataBuffer joined = DataBufferUtils.join(buffers).block();
+        byte[] bytes = new byte[joined.readableByteCount()];
+        joined.read(bytes);
+        DataBufferUtils.release(joined);
+        return bytes;
+    }
+}
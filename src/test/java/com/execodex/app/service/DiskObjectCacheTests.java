@@ -0,0 +1,149 @@
+package com.execodex.app.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DiskObjectCacheTests {
+
+    private static final String BUCKET = "photos";
+    private static final String KEY = "a.jpg";
+
+    @TempDir
+    Path directory;
+
+    private final ObjectDownloadService downloads = mock(ObjectDownloadService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void aMissIsServedFromMinioAndCachedForTheNextRequest() {
+        serve("\"v1\"", "hello");
+        DiskObjectCache cache = cache();
+
+        assertThat(cache.get(BUCKET, KEY, head("\"v1\"", 5)).blockOptional()).isEmpty();
+        DiskObjectCache.Lease lease = awaitLease(cache, head("\"v1\"", 5));
+
+        assertThat(lease.path()).hasContent("hello");
+        assertThat(requests("miss")).isEqualTo(1);
+        assertThat(requests("hit")).isEqualTo(1);
+        lease.release();
+    }
+
+    @Test
+    void aReplacedFileIsDeletedOnceItsLastLeaseIsReleased() throws Exception {
+        serve("\"v1\"", "hello");
+        serve("\"v2\"", "hello again");
+        DiskObjectCache cache = cache();
+        DiskObjectCache.Lease old = awaitLease(cache, head("\"v1\"", 5));
+        Path oldPath = old.path();
+
+        assertThat(cache.get(BUCKET, KEY, head("\"v2\"", 11)).blockOptional()).isEmpty();
+        DiskObjectCache.Lease current = awaitLease(cache, head("\"v2\"", 11));
+
+        assertThat(requests("stale")).isEqualTo(1);
+        assertThat(current.path()).hasContent("hello again");
+        // the replaced file stays readable until its lease is released
+        assertThat(Files.readString(oldPath)).isEqualTo("hello");
+        old.release();
+        // a second release of the same lease does not count again
+        old.release();
+        await(() -> !Files.exists(oldPath));
+        assertThat(current.path()).hasContent("hello again");
+        current.release();
+    }
+
+    @Test
+    void concurrentMissesShareOneFill() {
+        Sinks.Many<ByteBuffer> body = Sinks.many().unicast().onBackpressureBuffer();
+        when(downloads.fetch(eq(BUCKET), eq(KEY), eq("\"v1\""), anyLong(), anyLong())).thenReturn(body.asFlux());
+        DiskObjectCache cache = cache();
+
+        assertThat(cache.get(BUCKET, KEY, head("\"v1\"", 5)).blockOptional()).isEmpty();
+        assertThat(cache.get(BUCKET, KEY, head("\"v1\"", 5)).blockOptional()).isEmpty();
+        assertThat(requests("miss")).isEqualTo(1);
+        assertThat(requests("coalesced")).isEqualTo(1);
+        body.tryEmitNext(ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)));
+        body.tryEmitComplete();
+
+        awaitLease(cache, head("\"v1\"", 5)).release();
+        verify(downloads, times(1)).fetch(eq(BUCKET), eq(KEY), eq("\"v1\""), anyLong(), anyLong());
+    }
+
+    @Test
+    void aFailedFillLeavesTheObjectUncached() {
+        when(downloads.fetch(eq(BUCKET), eq(KEY), eq("\"v1\""), anyLong(), anyLong()))
+                .thenReturn(Flux.error(new IllegalStateException("disk full")));
+        DiskObjectCache cache = cache();
+
+        assertThat(cache.get(BUCKET, KEY, head("\"v1\"", 5)).blockOptional()).isEmpty();
+        assertThat(cache.get(BUCKET, KEY, head("\"v1\"", 5)).blockOptional()).isEmpty();
+        assertThat(requests("hit")).isZero();
+    }
+
+    private DiskObjectCache cache() {
+        return new DiskObjectCache(downloads, meterRegistry, true, directory, DataSize.ofMegabytes(1),
+                DataSize.ofMegabytes(1));
+    }
+
+    private void serve(String eTag, String content) {
+        when(downloads.fetch(eq(BUCKET), eq(KEY), eq(eTag), anyLong(), anyLong()))
+                .thenAnswer(invocation -> Flux.just(ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("minio.cache.disk.requests").tag("result", result).counter().count();
+    }
+
+    private static DiskObjectCache.Lease awaitLease(DiskObjectCache cache, HeadObjectResponse head) {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(5));
+        while (Instant.now().isBefore(deadline)) {
+            DiskObjectCache.Lease lease = cache.get(BUCKET, KEY, head).block();
+            if (lease != null) {
+                return lease;
+            }
+            sleep();
+        }
+        throw new AssertionError("Object " + KEY + " was not cached");
+    }
+
+    private static void await(BooleanSupplier condition) {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(5));
+        while (!condition.getAsBoolean()) {
+            assertThat(Instant.now()).isBefore(deadline);
+            sleep();
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(10);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AssertionError(e);
+        }
+    }
+
+    private static HeadObjectResponse head(String eTag, long size) {
+        return HeadObjectResponse.builder().eTag(eTag).contentLength(size).build();
+    }
+}
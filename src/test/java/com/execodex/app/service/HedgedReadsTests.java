@@ -0,0 +1,150 @@
+package com.execodex.app.service;
+
+import com.execodex.app.configs.MinioReadProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HedgedReadsTests {
+
+    // enough fast reads for the hedge delay to be computed
+    private static final int WARM_UP = 128;
+    private static final HeadObjectRequest REQUEST = HeadObjectRequest.builder().bucket("photos").key("a.jpg").build();
+    private static final HeadObjectResponse RESPONSE = HeadObjectResponse.builder().eTag("\"v1\"").build();
+
+    private final S3AsyncClient s3AsyncClient = mock(S3AsyncClient.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // answers of the calls after the warm-up, in order
+    private final Queue<CompletableFuture<HeadObjectResponse>> answers = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private HedgedReads hedgedReads;
+
+    @BeforeEach
+    void warmUp() {
+        when(s3AsyncClient.headObject(any(HeadObjectRequest.class))).thenAnswer(invocation -> {
+            calls.incrementAndGet();
+            CompletableFuture<HeadObjectResponse> answer = answers.poll();
+            return answer != null ? answer : CompletableFuture.completedFuture(RESPONSE);
+        });
+        hedgedReads = new HedgedReads(s3AsyncClient, new MinioReadProperties(null, true, 0.95,
+                Duration.ofMillis(20), Duration.ofMillis(20), 1.0), meterRegistry);
+        for (int i = 0; i < WARM_UP; i++) {
+            hedgedReads.headObject(REQUEST).block();
+        }
+        calls.set(0);
+    }
+
+    @Test
+    void fastReadsAreNotHedged() {
+        assertThat(hedgedReads.headObject(REQUEST).block()).isSameAs(RESPONSE);
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(hedges("fired")).isZero();
+    }
+
+    @Test
+    void aHedgeThatAnswersFirstWinsAndCancelsTheFirstRequest() throws Exception {
+        CompletableFuture<HeadObjectResponse> first = new CompletableFuture<>();
+        HeadObjectResponse hedged = HeadObjectResponse.builder().eTag("\"v1\"").build();
+        answers.add(first);
+        answers.add(CompletableFuture.completedFuture(hedged));
+
+        assertThat(hedgedReads.headObject(REQUEST).toFuture().get(5, TimeUnit.SECONDS)).isSameAs(hedged);
+        assertThat(first).isCancelled();
+        assertThat(hedges("fired")).isEqualTo(1);
+        assertThat(hedges("won")).isEqualTo(1);
+    }
+
+    @Test
+    void theFirstSuccessWinsOverAFailedHedge() throws Exception {
+        CompletableFuture<HeadObjectResponse> first = new CompletableFuture<>();
+        answers.add(first);
+        answers.add(CompletableFuture.failedFuture(new IllegalStateException("node down")));
+
+        CompletableFuture<HeadObjectResponse> read = hedgedReads.headObject(REQUEST).toFuture();
+        await(() -> calls.get() == 2);
+        assertThat(read).isNotDone();
+        first.complete(RESPONSE);
+
+        assertThat(read.get(5, TimeUnit.SECONDS)).isSameAs(RESPONSE);
+        assertThat(hedges("won")).isZero();
+    }
+
+    @Test
+    void aReadFailsOnceEveryAttemptFailed() {
+        CompletableFuture<HeadObjectResponse> first = new CompletableFuture<>();
+        answers.add(first);
+        answers.add(CompletableFuture.failedFuture(new IllegalStateException("node down")));
+
+        CompletableFuture<HeadObjectResponse> read = hedgedReads.headObject(REQUEST).toFuture();
+        await(() -> calls.get() == 2);
+        first.completeExceptionally(new IllegalStateException("timed out"));
+
+        // with the error of whichever attempt failed last
+        assertThatThrownBy(() -> read.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void cancellingTheReadCancelsEveryAttempt() {
+        CompletableFuture<HeadObjectResponse> first = new CompletableFuture<>();
+        CompletableFuture<HeadObjectResponse> hedge = new CompletableFuture<>();
+        answers.add(first);
+        answers.add(hedge);
+
+        Disposable read = hedgedReads.headObject(REQUEST).subscribe();
+        await(() -> calls.get() == 2);
+        read.dispose();
+
+        await(first::isCancelled);
+        await(hedge::isCancelled);
+    }
+
+    @Test
+    void cancellingBeforeTheHedgeCancelsTheFirstRequest() throws InterruptedException {
+        CompletableFuture<HeadObjectResponse> first = new CompletableFuture<>();
+        answers.add(first);
+
+        hedgedReads.headObject(REQUEST).subscribe().dispose();
+        Thread.sleep(60);
+
+        assertThat(first).isCancelled();
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    private double hedges(String outcome) {
+        return meterRegistry.get("minio.hedge.requests")
+                .tag("operation", "HeadObject")
+                .tag("outcome", outcome)
+                .counter()
+                .count();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        Instant deadline = Instant.now().plus(Duration.ofSeconds(5));
+        while (!condition.getAsBoolean()) {
+            assertThat(Instant.now()).isBefore(deadline);
+            Thread.onSpinWait();
+        }
+    }
+}
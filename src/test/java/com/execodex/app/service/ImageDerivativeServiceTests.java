@@ -0,0 +1,103 @@
+package com.execodex.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageDerivativeServiceTests {
+
+    private static ImageDerivativeService.Spec spec(String width, String height, String fit, String format) {
+        return ImageDerivativeService.Spec.of(width, height, fit, format, null, 80, 4096);
+    }
+
+    @Test
+    void parsesAndValidatesSpecs() {
+        ImageDerivativeService.Spec spec = spec("200", null, null, null);
+        assertThat(spec.width()).isEqualTo(200);
+        assertThat(spec.height()).isNull();
+        assertThat(spec.fit()).isEqualTo(ImageDerivativeService.Fit.CONTAIN);
+        assertThat(spec.quality()).isEqualTo(80);
+        assertThat(spec(null, null, null, "JPG").format()).isEqualTo(ImageDerivativeService.Format.JPEG);
+
+        assertThatThrownBy(() -> spec(null, null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> spec("0", null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> spec("5000", null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> spec("wide", null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> spec("10", "10", "stretch", null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> spec("10", null, null, "webp")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ImageDerivativeService.Spec.of("10", null, null, null, "101", 80, 4096))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fitsWithoutEnlarging() {
+        // 800x400 source
+        assertThat(ImageDerivativeService.geometry(800, 400, spec("200", null, null, null)))
+                .isEqualTo(new ImageDerivativeService.Geometry(200, 100, 200, 100));
+        assertThat(ImageDerivativeService.geometry(800, 400, spec(null, "1000", null, null)))
+                .isEqualTo(new ImageDerivativeService.Geometry(800, 400, 800, 400));
+        assertThat(ImageDerivativeService.geometry(800, 400, spec("200", "200", "contain", null)))
+                .isEqualTo(new ImageDerivativeService.Geometry(200, 100, 200, 100));
+        assertThat(ImageDerivativeService.geometry(800, 400, spec("200", "200", "cover", null)))
+                .isEqualTo(new ImageDerivativeService.Geometry(400, 200, 200, 200));
+        assertThat(ImageDerivativeService.geometry(800, 400, spec("1000", "1000", "cover", null)))
+                .isEqualTo(new ImageDerivativeService.Geometry(800, 400, 800, 400));
+        assertThat(ImageDerivativeService.geometry(800, 400, spec("1000", "50", "fill", null)))
+                .isEqualTo(new ImageDerivativeService.Geometry(1000, 50, 1000, 50));
+    }
+
+    @Test
+    void derivedKeysChangeWithSourceAndSpec() {
+        ImageDerivativeService.Spec spec = spec("200", null, "cover", null);
+        String jpeg = ImageDerivativeService.derivedKey("_derivatives/", "photos/a.png", "\"abc\"", spec,
+                ImageDerivativeService.Format.JPEG);
+        assertThat(jpeg).isEqualTo("_derivatives/photos/a.png/w200-hauto-cover-q80-abc.jpg");
+        assertThat(ImageDerivativeService.derivedKey("_derivatives/", "photos/a.png", "\"abc\"", spec,
+                ImageDerivativeService.Format.PNG)).isEqualTo("_derivatives/photos/a.png/w200-hauto-cover-abc.png");
+        assertThat(ImageDerivativeService.derivedKey("_derivatives/", "photos/a.png", "\"def\"", spec,
+                ImageDerivativeService.Format.JPEG)).isNotEqualTo(jpeg);
+    }
+
+    @Test
+    void rendersScaledAndCroppedImages() throws IOException {
+        byte[] source = png(new BufferedImage(800, 400, BufferedImage.TYPE_INT_ARGB));
+
+        byte[] jpeg = ImageDerivativeService.render(new ByteArrayInputStream(source), spec("200", "200", "cover", "jpeg"),
+                ImageDerivativeService.Format.JPEG, 1_000_000);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(jpeg));
+        assertThat(decoded.getWidth()).isEqualTo(200);
+        assertThat(decoded.getHeight()).isEqualTo(200);
+
+        byte[] png = ImageDerivativeService.render(new ByteArrayInputStream(source), spec("100", null, null, null),
+                ImageDerivativeService.Format.PNG, 1_000_000);
+        decoded = ImageIO.read(new ByteArrayInputStream(png));
+        assertThat(decoded.getWidth()).isEqualTo(100);
+        assertThat(decoded.getHeight()).isEqualTo(50);
+        assertThat(decoded.getColorModel().hasAlpha()).isTrue();
+    }
+
+    @Test
+    void refusesImagesThatAreTooLargeOrUnreadable() throws IOException {
+        byte[] source = png(new BufferedImage(800, 400, BufferedImage.TYPE_INT_RGB));
+        assertThatThrownBy(() -> ImageDerivativeService.render(new ByteArrayInputStream(source),
+                spec("100", null, null, null), ImageDerivativeService.Format.PNG, 100_000))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("800x400");
+        assertThatThrownBy(() -> ImageDerivativeService.render(new ByteArrayInputStream(new byte[]{1, 2, 3}),
+                spec("100", null, null, null), ImageDerivativeService.Format.PNG, 100_000))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,140 @@
+package com.execodex.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MultipartUploadServiceTests {
+
+    private static final int PART_SIZE = 4;
+
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    @Test
+    void keepsABodyOfExactlyOnePartInASinglePart() {
+        MultipartUploadService.PartSplitter splitter = new MultipartUploadService.PartSplitter(PART_SIZE, false);
+
+        assertThat(splitter.write(buffer("abcd"))).isEmpty();
+        MultipartUploadService.Part last = splitter.finish();
+
+        assertThat(last.number()).isEqualTo(1);
+        assertThat(last.length()).isEqualTo(PART_SIZE);
+        assertThat(last.last()).isTrue();
+    }
+
+    @Test
+    void startsASecondPartOneByteAfterTheBoundary() {
+        MultipartUploadService.PartSplitter splitter = new MultipartUploadService.PartSplitter(PART_SIZE, false);
+
+        List<MultipartUploadService.Part> parts = new ArrayList<>(splitter.write(buffer("abcde")));
+        parts.add(splitter.finish());
+
+        assertThat(parts).extracting(MultipartUploadService.Part::number).containsExactly(1, 2);
+        assertThat(parts).extracting(MultipartUploadService.Part::length).containsExactly(PART_SIZE, 1);
+        assertThat(parts).extracting(MultipartUploadService.Part::last).containsExactly(false, true);
+    }
+
+    @Test
+    void emitsAShortLastPartAcrossBuffers() {
+        MultipartUploadService.PartSplitter splitter = new MultipartUploadService.PartSplitter(PART_SIZE, true);
+
+        List<MultipartUploadService.Part> parts = new ArrayList<>();
+        for (String chunk : List.of("ab", "cdefg", "hij")) {
+            parts.addAll(splitter.write(buffer(chunk)));
+        }
+        parts.add(splitter.finish());
+
+        assertThat(parts).extracting(part -> new String(part.data(), 0, part.length(), StandardCharsets.US_ASCII))
+                .containsExactly("abcd", "efgh", "ij");
+        assertThat(parts.getLast().last()).isTrue();
+        assertThat(splitter.size()).isEqualTo(10);
+        assertThat(splitter.sha256()).isEqualTo(sha256("abcdefghij"));
+    }
+
+    @Test
+    void finishesAnEmptyBodyWithOneEmptyPart() {
+        MultipartUploadService.PartSplitter splitter = new MultipartUploadService.PartSplitter(PART_SIZE, false);
+
+        MultipartUploadService.Part last = splitter.finish();
+
+        assertThat(last.number()).isEqualTo(1);
+        assertThat(last.length()).isZero();
+        assertThat(last.last()).isTrue();
+    }
+
+    @Test
+    void failsBeforeTheTenThousandAndFirstPart() {
+        MultipartUploadService.PartSplitter full = new MultipartUploadService.PartSplitter(1, false);
+        byte[] body = new byte[MultipartUploadService.MAX_PARTS];
+        assertThat(full.write(bufferFactory.wrap(body))).hasSize(MultipartUploadService.MAX_PARTS - 1);
+        assertThat(full.finish().number()).isEqualTo(MultipartUploadService.MAX_PARTS);
+
+        MultipartUploadService.PartSplitter tooLarge = new MultipartUploadService.PartSplitter(1, false);
+        assertThatThrownBy(() -> tooLarge.write(bufferFactory.wrap(new byte[MultipartUploadService.MAX_PARTS + 1])))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("10000 parts");
+    }
+
+    @Test
+    void abortsTheUploadWhenAPartFails() {
+        S3AsyncClient s3AsyncClient = mock(S3AsyncClient.class);
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("u1").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenReturn(
+                CompletableFuture.failedFuture(S3Exception.builder().statusCode(500).message("disk full").build()));
+        when(s3AsyncClient.abortMultipartUpload(any(AbortMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(AbortMultipartUploadResponse.builder().build()));
+        MultipartUploadService service = new MultipartUploadService(s3AsyncClient, new MultipartUploads(s3AsyncClient),
+                DataSize.ofBytes(MultipartUploadService.MIN_PART_SIZE), 2);
+
+        // one byte more than a part, so the body goes through a multipart upload
+        byte[] body = new byte[(int) MultipartUploadService.MIN_PART_SIZE + 1];
+        Flux<DataBuffer> content = Flux.just(bufferFactory.wrap(body));
+
+        assertThatThrownBy(() -> service.upload("reports", "big.bin", "application/octet-stream", content).block())
+                .hasMessageContaining("disk full");
+        verify(s3AsyncClient).abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                .bucket("reports").key("big.bin").uploadId("u1").build());
+        verify(s3AsyncClient, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+    }
+
+    private DataBuffer buffer(String text) {
+        return bufferFactory.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(text.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
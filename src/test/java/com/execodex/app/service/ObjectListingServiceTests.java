@@ -0,0 +1,32 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.ObjectEntry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ObjectListingServiceTests {
+
+    private static final ObjectEntry REFERENCE = new ObjectEntry("photos/2024/a.jpg", 10L, "\"etag\"", Instant.EPOCH, false);
+
+    @Test
+    void referencesWithoutDelimiterAreListedAsIs() {
+        assertThat(ObjectListingService.group(REFERENCE, "photos/", null)).isSameAs(REFERENCE);
+        assertThat(ObjectListingService.group(REFERENCE, "photos/", "")).isSameAs(REFERENCE);
+    }
+
+    @Test
+    void referencesBelowTheDelimiterBecomeCommonPrefixes() {
+        assertThat(ObjectListingService.group(REFERENCE, "photos/", "/"))
+                .isEqualTo(new ObjectEntry("photos/2024/", null, null, null, true));
+        assertThat(ObjectListingService.group(REFERENCE, null, "/"))
+                .isEqualTo(new ObjectEntry("photos/", null, null, null, true));
+    }
+
+    @Test
+    void referencesAtTheLevelOfThePrefixStayObjects() {
+        assertThat(ObjectListingService.group(REFERENCE, "photos/2024/", "/")).isSameAs(REFERENCE);
+    }
+}
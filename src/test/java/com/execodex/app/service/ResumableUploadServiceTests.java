@@ -0,0 +1,69 @@
+package com.execodex.app.service;
+
+import com.execodex.app.domain.UploadSessionRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ResumableUploadServiceTests {
+
+    private static final long CHUNK = ResumableUploadService.MIN_CHUNK_SIZE;
+
+    @Test
+    void acceptsFullChunksAndShortLastChunk() {
+        assertThat(ResumableUploadService.validateChunk(CHUNK, null, 0, CHUNK)).isNull();
+        assertThat(ResumableUploadService.validateChunk(CHUNK, null, 3 * CHUNK, 10)).isNull();
+        assertThat(ResumableUploadService.validateChunk(CHUNK, 2 * CHUNK + 10, 2 * CHUNK, 10)).isNull();
+    }
+
+    @Test
+    void rejectsChunksThatDoNotFitTheSession() {
+        // not on a chunk boundary
+        assertThat(ResumableUploadService.validateChunk(CHUNK, null, CHUNK / 2, 10)).isNotNull();
+        assertThat(ResumableUploadService.validateChunk(CHUNK, null, 0, CHUNK + 1)).isNotNull();
+        assertThat(ResumableUploadService.validateChunk(CHUNK, null, 0, 0)).isNotNull();
+        // with a declared size only the last chunk may be short, and nothing may go past it
+        assertThat(ResumableUploadService.validateChunk(CHUNK, 2 * CHUNK + 10, CHUNK, 10)).isNotNull();
+        assertThat(ResumableUploadService.validateChunk(CHUNK, 2 * CHUNK + 10, 2 * CHUNK, 11)).isNotNull();
+        assertThat(ResumableUploadService.validateChunk(CHUNK, 2 * CHUNK, 2 * CHUNK, 1)).isNotNull();
+        assertThat(ResumableUploadService.validateChunk(CHUNK, null,
+                ResumableUploadService.MAX_CHUNKS * CHUNK, 1)).isNotNull();
+    }
+
+    @Test
+    void completesOnlyWithoutGaps() {
+        List<ResumableUploadService.Part> complete = List.of(
+                new ResumableUploadService.Part(1, CHUNK, "a"),
+                new ResumableUploadService.Part(2, CHUNK, "b"),
+                new ResumableUploadService.Part(3, 10, "c"));
+        assertThat(ResumableUploadService.missingChunks(CHUNK, null, complete)).isNull();
+        assertThat(ResumableUploadService.missingChunks(CHUNK, 2 * CHUNK + 10, complete)).isNull();
+
+        assertThat(ResumableUploadService.missingChunks(CHUNK, null, List.of())).isNotNull();
+        assertThat(ResumableUploadService.missingChunks(CHUNK, null,
+                List.of(complete.get(0), complete.get(2)))).contains("offset " + CHUNK);
+        assertThat(ResumableUploadService.missingChunks(CHUNK, 3 * CHUNK, complete)).isNotNull();
+        assertThat(ResumableUploadService.missingChunks(CHUNK, 3 * CHUNK,
+                List.of(complete.get(0), complete.get(1)))).contains("offset " + 2 * CHUNK);
+        // a short chunk before the last one
+        assertThat(ResumableUploadService.missingChunks(CHUNK, null,
+                List.of(new ResumableUploadService.Part(1, 10, "a"), complete.get(1)))).isNotNull();
+    }
+
+    @Test
+    void rejectsEmptyUploads() {
+        ResumableUploadService service = new ResumableUploadService(null, null, null, null, null, null,
+                DataSize.ofMegabytes(8), Duration.ofHours(24), Duration.ofMinutes(15), false);
+
+        // rejected before MinIO is asked for a multipart upload
+        assertThatThrownBy(() -> service.create("reports", new UploadSessionRequest("empty.csv", 0L, null, null),
+                List.of(), null).block())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("between 1 and");
+    }
+}
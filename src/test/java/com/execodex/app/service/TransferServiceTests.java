@@ -0,0 +1,63 @@
+package com.execodex.app.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransferServiceTests {
+
+    private static final long MB = 1024L * 1024;
+
+    @Test
+    void prefixesOfTheSameBucketMustNotContainEachOther() {
+        assertThat(TransferService.overlaps("photos", "2024/", "photos", "2024/")).isTrue();
+        assertThat(TransferService.overlaps("photos", "2024/", "photos", "2024/archive/")).isTrue();
+        assertThat(TransferService.overlaps("photos", "2024/archive/", "photos", "2024/")).isTrue();
+        // the whole bucket contains every prefix
+        assertThat(TransferService.overlaps("photos", "", "photos", "copy/")).isTrue();
+        assertThat(TransferService.overlaps("photos", "2024/", "photos", "")).isTrue();
+    }
+
+    @Test
+    void disjointPrefixesAndOtherBucketsDoNotOverlap() {
+        assertThat(TransferService.overlaps("photos", "2024/", "photos", "2025/")).isFalse();
+        assertThat(TransferService.overlaps("photos", "", "archive", "")).isFalse();
+        assertThat(TransferService.overlaps("photos", "2024/", "archive", "2024/")).isFalse();
+    }
+
+    @Test
+    void usesTheConfiguredPartSizeWhileTheObjectFits() {
+        long size = 6L * 1024 * MB + 1;
+        long partSize = TransferService.copyPartSize(size, 512 * MB);
+
+        assertThat(partSize).isEqualTo(512 * MB);
+        assertThat(TransferService.partCount(size, partSize)).isEqualTo(13);
+        assertThat(TransferService.partCount(12 * 512 * MB, partSize)).isEqualTo(12);
+    }
+
+    @Test
+    void growsPartsSoLargeObjectsStayWithinThePartLimit() {
+        long size = 5L * 1024 * 1024 * MB;
+        long partSize = TransferService.copyPartSize(size, 5 * MB);
+        int parts = TransferService.partCount(size, partSize);
+
+        assertThat(partSize).isGreaterThan(5 * MB);
+        assertThat(parts).isEqualTo(TransferService.MAX_PARTS);
+        assertThat(partSize * parts).isGreaterThanOrEqualTo(size);
+        assertThat(partSize * (parts - 1)).isLessThan(size);
+    }
+
+    @Test
+    void singlePartCopiesKeepTheSourceETag() {
+        assertThat(TransferService.expectedETag("\"9b2cf535f27731c974343645a3985328\"", "\"9b2cf535f27731c974343645a3985328\""))
+                .isEqualTo("\"9b2cf535f27731c974343645a3985328\"");
+        assertThat(TransferService.expectedETag("\"9b2cf535f27731c974343645a3985328\"", "\"0000\""))
+                .isEqualTo("\"9b2cf535f27731c974343645a3985328\"");
+    }
+
+    @Test
+    void copiesOfMultipartSourcesAreCheckedAgainstTheCopyETag() {
+        assertThat(TransferService.expectedETag("\"d41d8cd98f00b204e9800998ecf8427e-3\"", "\"5d41402abc4b2a76b9719d911017c592\""))
+                .isEqualTo("\"5d41402abc4b2a76b9719d911017c592\"");
+    }
+}
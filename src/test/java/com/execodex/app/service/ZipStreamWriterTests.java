@@ -0,0 +1,140 @@
+package com.execodex.app.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZipStreamWriterTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesArchiveReadableByZipFile() throws IOException {
+        Path archive = directory.resolve("bundle.zip");
+        byte[] first = "first entry".repeat(1000).getBytes(StandardCharsets.UTF_8);
+        byte[] second = "zweite Datei ä".getBytes(StandardCharsets.UTF_8);
+
+        ZipStreamWriter zip = new ZipStreamWriter(0);
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(zip.startEntry("docs/first.txt", first.length, Instant.parse("2024-05-06T07:08:10Z")));
+            // data arrives in several chunks
+            channel.write(zip.data(ByteBuffer.wrap(first, 0, 4096)));
+            channel.write(zip.data(ByteBuffer.wrap(first, 4096, first.length - 4096)));
+            channel.write(zip.endEntry());
+            channel.write(zip.startEntry("docs/zweite-ä.txt", second.length, null));
+            channel.write(zip.data(ByteBuffer.wrap(second)));
+            channel.write(zip.endEntry());
+            for (ByteBuffer buffer : zip.finish()) {
+                channel.write(buffer);
+            }
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            assertThat(zipFile.size()).isEqualTo(2);
+            ZipEntry entry = zipFile.getEntry("docs/first.txt");
+            assertThat(entry.getSize()).isEqualTo(first.length);
+            assertThat(zipFile.getInputStream(entry).readAllBytes()).isEqualTo(first);
+            assertThat(zipFile.getInputStream(zipFile.getEntry("docs/zweite-ä.txt")).readAllBytes()).isEqualTo(second);
+        }
+    }
+
+    @Test
+    void takesTheSizeOfEntriesStartedWithoutOne() throws IOException {
+        Path archive = directory.resolve("decoded.zip");
+        byte[] decoded = "decoded line\n".repeat(2000).getBytes(StandardCharsets.UTF_8);
+
+        ZipStreamWriter zip = new ZipStreamWriter(0);
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            channel.write(zip.startEntry("logs/app.log", ZipStreamWriter.UNKNOWN_SIZE, null));
+            channel.write(zip.data(ByteBuffer.wrap(decoded, 0, 1000)));
+            channel.write(zip.data(ByteBuffer.wrap(decoded, 1000, decoded.length - 1000)));
+            channel.write(zip.endEntry());
+            for (ByteBuffer buffer : zip.finish()) {
+                channel.write(buffer);
+            }
+        }
+
+        try (ZipFile zipFile = new ZipFile(archive.toFile())) {
+            ZipEntry entry = zipFile.getEntry("logs/app.log");
+            assertThat(entry.getSize()).isEqualTo(decoded.length);
+            assertThat(zipFile.getInputStream(entry).readAllBytes()).isEqualTo(decoded);
+        }
+    }
+
+    @Test
+    void writesArchiveReadableByZipInputStream() throws IOException {
+        Path archive = directory.resolve("streamed.zip");
+        byte[] report = "quarterly report\n".repeat(5000).getBytes(StandardCharsets.UTF_8);
+        byte[] copy = "another object with the same name".getBytes(StandardCharsets.UTF_8);
+        byte[] empty = new byte[0];
+
+        for (int level : new int[]{Deflater.NO_COMPRESSION, Deflater.BEST_SPEED}) {
+            ZipStreamWriter zip = new ZipStreamWriter(level);
+            try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                write(channel, zip, "docs/report.txt", report);
+                // "docs//report.txt" and "../docs/report.txt" sanitise to the same name
+                write(channel, zip, "docs/report.txt", copy);
+                write(channel, zip, "docs/report.txt", empty);
+                write(channel, zip, "README", copy);
+                write(channel, zip, "README", copy);
+                for (ByteBuffer buffer : zip.finish()) {
+                    channel.write(buffer);
+                }
+            }
+
+            Map<String, byte[]> read = new LinkedHashMap<>();
+            try (ZipInputStream in = new ZipInputStream(Files.newInputStream(archive))) {
+                for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                    read.put(entry.getName(), in.readAllBytes());
+                }
+            }
+            assertThat(read).containsOnlyKeys("docs/report.txt", "docs/report (2).txt", "docs/report (3).txt",
+                    "README", "README (2)");
+            assertThat(read.get("docs/report.txt")).isEqualTo(report);
+            assertThat(read.get("docs/report (2).txt")).isEqualTo(copy);
+            assertThat(read.get("docs/report (3).txt")).isEmpty();
+            assertThat(read.get("README (2)")).isEqualTo(copy);
+        }
+    }
+
+    @Test
+    void rejectsEntryShorterThanDeclared() {
+        ZipStreamWriter zip = new ZipStreamWriter(0);
+        zip.startEntry("short.bin", 10, null);
+        zip.data(ByteBuffer.allocate(4));
+
+        assertThatThrownBy(zip::endEntry).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void keepsEntryNamesInsideArchive() {
+        assertThat(ZipBundleService.entryName("/a/../b/./c.pdf")).isEqualTo("a/b/c.pdf");
+    }
+
+    private static void write(FileChannel channel, ZipStreamWriter zip, String name, byte[] data) throws IOException {
+        channel.write(zip.startEntry(name, data.length, null));
+        // in two chunks, as objects arrive
+        channel.write(zip.data(ByteBuffer.wrap(data, 0, data.length / 2)));
+        channel.write(zip.data(ByteBuffer.wrap(data, data.length / 2, data.length - data.length / 2)));
+        channel.write(zip.endEntry());
+    }
+}